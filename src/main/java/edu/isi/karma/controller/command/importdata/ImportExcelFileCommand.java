@@ -39,13 +39,10 @@ import edu.isi.karma.controller.update.UpdateContainer;
 import edu.isi.karma.controller.update.WorksheetListUpdate;
 import edu.isi.karma.controller.update.WorksheetUpdateFactory;
 import edu.isi.karma.imp.Import;
-import edu.isi.karma.imp.csv.CSVFileImport;
-import edu.isi.karma.imp.excel.ToCSV;
+import edu.isi.karma.imp.excel.ExcelFileImport;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.util.EncodingDetector;
-import edu.isi.karma.webserver.ServletContextParameterMap;
-import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 public class ImportExcelFileCommand extends ImportFileCommand implements IPreviewable {
 	private String encoding = null;
@@ -84,42 +81,25 @@ public class ImportExcelFileCommand extends ImportFileCommand implements IPrevie
     public UpdateContainer doIt(Workspace workspace) throws CommandException {
         UpdateContainer c = new UpdateContainer();
 
-        // Convert the Excel file to a CSV file.
-        ToCSV csvConverter = new ToCSV();
+        // Import each sheet directly into a worksheet
+        List<Worksheet> worksheets;
         try {
-            csvConverter.convertExcelToCSV(getFile().getAbsolutePath(),
-                    ServletContextParameterMap.getParameterValue(ContextParameter.USER_DIRECTORY_PATH) + "publish/CSV");
+            worksheets = new ExcelFileImport(getFile(), workspace, encoding, maxNumLines)
+                    .generateWorksheets();
         } catch (Exception e) {
-            String message = "Error occured while converting the Excel file to CSV file.";
+            String message = "Error occured while importing the Excel file.";
             logger.error(message, e);
             return new UpdateContainer(new ErrorUpdate(message));
         }
 
-        List<File> csvFiles = csvConverter.getCsvFiles();
-
-        // Each sheet is written to a separate CSV file
-        if (!csvFiles.isEmpty()) {
-            for (File csvFile : csvFiles) {
-            	//this.encoding = EncodingDetector.detect(csvFile);
-                Import imp = new CSVFileImport(1, 2, ',', '"', encoding, maxNumLines, csvFile,
-                        workspace);
-
-                try {
-                    Worksheet wsht = imp.generateWorksheet();
-
-                    if (hasRevisionId()) {
-                        Worksheet revisedWorksheet = workspace.getWorksheet(getRevisionId());
-                        wsht.setRevisedWorksheet(revisedWorksheet);
-                    }
-
-                    c.add(new WorksheetListUpdate());
-                    c.append(WorksheetUpdateFactory.createWorksheetHierarchicalAndCleaningResultsUpdates(wsht.getId()));
-                } catch (Exception e) {
-                    logger.error("Error occured while importing CSV file.", e);
-                    return new UpdateContainer(new ErrorUpdate(
-                            "Error occured while importing CSV File."));
-                }
+        for (Worksheet wsht : worksheets) {
+            if (hasRevisionId()) {
+                Worksheet revisedWorksheet = workspace.getWorksheet(getRevisionId());
+                wsht.setRevisedWorksheet(revisedWorksheet);
             }
+
+            c.add(new WorksheetListUpdate());
+            c.append(WorksheetUpdateFactory.createWorksheetHierarchicalAndCleaningResultsUpdates(wsht.getId()));
         }
         return c;
     }
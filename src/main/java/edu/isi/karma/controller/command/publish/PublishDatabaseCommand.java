@@ -21,8 +21,10 @@
 package edu.isi.karma.controller.command.publish;
 
 import java.io.PrintWriter;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -46,6 +48,7 @@ import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.rep.alignment.SemanticType;
 import edu.isi.karma.util.AbstractJDBCUtil;
+import edu.isi.karma.util.BatchInserter;
 import edu.isi.karma.util.JDBCUtilFactory;
 import edu.isi.karma.view.VWorkspace;
 
@@ -98,6 +101,14 @@ public class PublishDatabaseCommand extends Command {
 		this.tableName = tableName;
 	}
 
+	/**
+	 * Sets the number of rows sent to the database at a time, 
+	 * AbstractJDBCUtil.DEFAULT_INSERT_BATCH_SIZE by default.
+	 */
+	public void setInsertBatchSize(int insertBatchSize) {
+		dbUtil.setInsertBatchSize(insertBatchSize);
+	}
+
 	@Override
 	public String getCommandName() {
 		return this.getClass().getSimpleName();
@@ -309,85 +320,79 @@ public class PublishDatabaseCommand extends Command {
 			}
 		}
 		
-		ArrayList<Row> rows = w.getDataTable().getRows(0, w.getDataTable().getNumRows());
-		for(Row r:rows){
-			//insert one row
-			String insertRow = insertInTableRow(r, tableName, addTheseColumns, addTheseTypes);
-			//returns null if that particular row could not be inserted
-			//because there is a number column for which the values are not numbers
-			if(insertRow!=null)
-				dbUtil.executeUpdate(conn, insertRow);
-			else numOfRowsNotInserted++;
+		//the hNodeIds, names and types of the inserted columns, in the same order
+		List<String> hNodeIds = new ArrayList<String>(addTheseColumns.keySet());
+		List<String> columnNames = new ArrayList<String>();
+		int[] columnTypes = new int[hNodeIds.size()];
+		for (int i = 0; i < hNodeIds.size(); i++) {
+			columnNames.add(addTheseColumns.get(hNodeIds.get(i)));
+			columnTypes[i] = isDbTypeString(addTheseTypes.get(hNodeIds.get(i))) ? Types.VARCHAR : Types.NUMERIC;
+		}
+
+		List<Row> rows = w.getDataTable().getRows(0, w.getDataTable().getNumRows());
+		BatchInserter inserter = dbUtil.createBatchInserter(conn, tableName, columnNames, columnTypes);
+		try {
+			Object[] values = new Object[hNodeIds.size()];
+			for(Row r:rows){
+				//returns false if that particular row could not be inserted
+				//because there is a number column for which the values are not numbers
+				if(getRowValues(r, hNodeIds, columnTypes, values))
+					inserter.addRow(values);
+				else numOfRowsNotInserted++;
+			}
+			inserter.finish();
+		} finally {
+			inserter.close();
 		}
 		return numOfRowsNotInserted;
 	}
 	
 	/**
 	 * @param r
-	 * @param tableName
-	 * @param colNamesMap
-	 * 	key=hNodeId; val=column name (same as semantic type for this column)
-	 * @param colTypesMap
-	 * 	key=hNodeId; val=column type 
+	 * @param hNodeIds
+	 * 	the hNodeIds of the inserted columns
+	 * @param columnTypes
+	 * 	the types of the inserted columns
+	 * @param values
+	 * 	filled with the values to insert: a String for string columns, a Number or null 
+	 * 	for number columns
 	 * @return
-	 * 		number of rows not inserted. A row is not inserted if we have a type mismatch.
+	 * 		false if the row cannot be inserted because of a type mismatch.
 	 */
-	private String insertInTableRow(Row r, String tableName,
-			Map<String, String> colNamesMap, Map<String, String> colTypesMap) {
-
-		//add escaping in case we have unusual chars
-		tableName=dbUtil.prepareName(tableName);
-
-		String colNames = "";
-		String colValues = "";
-		boolean firstCol=true;
-		for(Map.Entry<String, Node> node: r.getNodesMap().entrySet()){
-			//get value
-			String val = node.getValue().getValue().asString();
-			String hNodeId = node.getKey();
-			//get column name
-			String colName = colNamesMap.get(hNodeId);
-			if(colName!=null){
-				if(!firstCol){
-					colNames +=",";
-					colValues +=",";
-				}
-				colNames += dbUtil.prepareName(colName);
-				//handle null vaules in worksheets
-				if(val==null)
-					val="";
-				//escape string
-				val = val.replaceAll("'", "''");
-				if (isDbTypeString(colTypesMap.get(hNodeId))) {
-					val = "'" + val + "'";
-				} else {
-					// it's a number
-					if (val.trim().equals(""))
-						val = null;
-					else{
-						//check that it is really a number
-						try{
-							Double.valueOf(val);
-						}catch(NumberFormatException e){
-							logger.error("Row not inserted:" + val + " is not a number as required by the database");
-							return null;
-						}
+	private boolean getRowValues(Row r, List<String> hNodeIds, int[] columnTypes, Object[] values) {
+		for (int i = 0; i < hNodeIds.size(); i++) {
+			Node node = r.getNode(hNodeIds.get(i));
+			String val = node == null ? null : node.getValue().asString();
+			//handle null vaules in worksheets
+			if(val==null)
+				val="";
+			if (columnTypes[i] == Types.VARCHAR) {
+				values[i] = val;
+			} else {
+				// it's a number
+				if (val.trim().equals(""))
+					values[i] = null;
+				else{
+					//check that it is really a number
+					try{
+						values[i] = parseNumber(val.trim());
+					}catch(NumberFormatException e){
+						logger.error("Row not inserted:" + val + " is not a number as required by the database");
+						return false;
 					}
 				}
-
-				colValues += val;
 			}
-			else{
-				//don't insert this column
-			}			
-			firstCol=false;
 		}
+		return true;
+	}
 
-		String insertQ="insert into " + tableName + "(" + colNames + ") values (" + colValues + ")";
-		
-		//logger.info("insertQ=" + insertQ);
-		
-		return insertQ;
+	private Number parseNumber(String val) {
+		try {
+			//keeps all the digits of large numbers
+			return new BigDecimal(val);
+		} catch (NumberFormatException e) {
+			return Double.valueOf(val);
+		}
 	}
 
 	// for now everything is a string
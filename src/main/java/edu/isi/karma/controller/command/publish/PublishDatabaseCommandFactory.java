@@ -33,7 +33,8 @@ public class PublishDatabaseCommandFactory extends CommandFactory {
 	
 	private static Logger logger = LoggerFactory.getLogger(PublishDatabaseCommandFactory.class);
 	private enum Arguments {
-		worksheetId, overwriteTable, insertTable, dbType,hostName,port,dbName,userName,password,tableName
+		worksheetId, overwriteTable, insertTable, dbType,hostName,port,dbName,userName,password,tableName,
+		insertBatchSize
 	}
 
 	@Override
@@ -55,6 +56,11 @@ public class PublishDatabaseCommandFactory extends CommandFactory {
 				request.getParameter(Arguments.overwriteTable.name()),
 				request.getParameter(Arguments.insertTable.name()));
 		
+		// Optional, the default batch size of the database otherwise
+		String insertBatchSize = request.getParameter(Arguments.insertBatchSize.name());
+		if (insertBatchSize != null && !insertBatchSize.trim().isEmpty()) {
+			comm.setInsertBatchSize(Integer.parseInt(insertBatchSize.trim()));
+		}
 		return comm;
 	}
 
@@ -123,13 +123,12 @@ public class PublishRDFCellCommand extends Command {
 					pw, mapping, errorReport, false);
 			
 			// Create empty data structures
-			Set<String> existingTopRowTriples = new HashSet<String>();
 			Set<String> predicatesCovered = new HashSet<String>();
 			Map<String, ReportMessage> predicatesFailed = new HashMap<String, ReportMessage>();
 			Set<String> predicatesSuccessful = new HashSet<String>();
 			
 			Node node = workspace.getFactory().getNode(nodeId);
-			rdfGen.generateTriplesForCell(node, existingTopRowTriples, node.getHNodeId(), 
+			rdfGen.generateTriplesForCell(node, node.getHNodeId(), 
 					predicatesCovered, predicatesFailed, predicatesSuccessful);
 			
 			return new UpdateContainer(new AbstractUpdate() {
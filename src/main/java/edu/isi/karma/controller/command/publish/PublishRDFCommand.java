@@ -20,9 +20,13 @@
  ******************************************************************************/
 package edu.isi.karma.controller.command.publish;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 
 import org.json.JSONException;
@@ -46,6 +50,7 @@ import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLMapping;
 import edu.isi.karma.kr2rml.KR2RMLMappingGenerator;
 import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
+import edu.isi.karma.kr2rml.writer.BinaryRdfSink;
 import edu.isi.karma.modeling.alignment.Alignment;
 import edu.isi.karma.modeling.alignment.AlignmentManager;
 import edu.isi.karma.rep.Worksheet;
@@ -69,6 +74,7 @@ public class PublishRDFCommand extends Command {
 	private String tripleStoreUrl;
 	private String graphUri;
 	private boolean replaceContext;
+	private String outputFormat;
 	
 	public enum JsonKeys {
 		updateType, fileUrl, worksheetId, errorReport
@@ -84,7 +90,7 @@ public class PublishRDFCommand extends Command {
 	protected PublishRDFCommand(String id, String worksheetId,
 			String publicRDFAddress, String rdfSourcePrefix, String rdfSourceNamespace, String addInverseProperties,
 			String saveToStore,String hostName,String dbName,String userName,String password, String modelName, String tripleStoreUrl,
-			String graphUri, boolean replace) {
+			String graphUri, boolean replace, String outputFormat) {
 		super(id);
 		this.worksheetId = worksheetId;
 		this.rdfSourcePrefix = rdfSourcePrefix;
@@ -102,6 +108,7 @@ public class PublishRDFCommand extends Command {
 		this.tripleStoreUrl = tripleStoreUrl;
 		this.graphUri = graphUri;
 		this.replaceContext = replace;
+		this.outputFormat = outputFormat;
 	}
 
 	@Override
@@ -134,7 +141,9 @@ public class PublishRDFCommand extends Command {
 		this.worksheetName = worksheet.getTitle();
 		
 		// Prepare the file path and names
-		final String rdfFileName = workspace.getCommandPreferencesId() + worksheetId + ".ttl"; 
+		final boolean binaryOutput = "binary".equalsIgnoreCase(outputFormat);
+		final String rdfFileName = workspace.getCommandPreferencesId() + worksheetId 
+				+ (binaryOutput ? ".krdf" : ".ttl"); 
 		final String rdfFileLocalPath = ServletContextParameterMap.getParameterValue(ContextParameter.USER_DIRECTORY_PATH) +  
 				"publish/RDF/" + rdfFileName;
 
@@ -157,14 +166,28 @@ public class PublishRDFCommand extends Command {
 		KR2RMLMapping mapping = mappingGen.getKR2RMLMapping();
 		logger.debug(mapping.toString());
 		
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet, 
-				workspace.getFactory(), workspace.getOntologyManager(),
-				rdfFileLocalPath, false, mapping, errorReport);
-		
 		// Generate the RDF using KR2RML data structures
+		OutputStream binaryOut = null;
 		try {
+			KR2RMLWorksheetRDFGenerator rdfGen;
+			if (binaryOutput) {
+				File rdfFile = new File(rdfFileLocalPath);
+				rdfFile.getParentFile().mkdirs();
+				binaryOut = new BufferedOutputStream(new FileOutputStream(rdfFile));
+				rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet, 
+						workspace.getFactory(), workspace.getOntologyManager(),
+						new BinaryRdfSink(binaryOut), mapping, errorReport, false);
+			} else {
+				rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet, 
+						workspace.getFactory(), workspace.getOntologyManager(),
+						rdfFileLocalPath, false, mapping, errorReport);
+			}
 			rdfGen.generateRDF(true);
 			logger.info("RDF written to file: " + rdfFileLocalPath);
+			if (binaryOutput) {
+				// The triple stores only load the text formats
+				return createPublishRDFUpdate(rdfFileName, errorReport);
+			}
 			if(saveToStore){
 				//take the contents of the RDF file and save them to the store
 				logger.info("Using Jena DB:" + hostName + "/"+dbName + " user="+userName);
@@ -173,6 +196,14 @@ public class PublishRDFCommand extends Command {
 		} catch (Exception e1) {
 			logger.error("Error occured while generating RDF!", e1);
 			return new UpdateContainer(new ErrorUpdate("Error occured while generating RDF: " + e1.getMessage()));
+		} finally {
+			if (binaryOut != null) {
+				try {
+					binaryOut.close();
+				} catch (IOException e) {
+					logger.error("Error closing the RDF file", e);
+				}
+			}
 		}
 		try {
 			
@@ -204,6 +235,11 @@ public class PublishRDFCommand extends Command {
 			return new UpdateContainer(new ErrorUpdate("Error occured while generating RDF: " + e.getMessage()));
 		}
 		
+		return createPublishRDFUpdate(rdfFileName, errorReport);
+	}
+	
+	private UpdateContainer createPublishRDFUpdate(final String rdfFileName, 
+			final ErrorReport errorReport) {
 		try {
 			return new UpdateContainer(new AbstractUpdate() {
 				public void generateJson(String prefix, PrintWriter pw,
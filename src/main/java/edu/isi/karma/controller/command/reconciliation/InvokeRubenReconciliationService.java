@@ -161,7 +161,7 @@ public class InvokeRubenReconciliationService extends WorksheetCommand {
 						workspace.getFactory(), workspace.getOntologyManager(),
 						pw, mapping, errorReport, false);
 				
-				rdfGen.generateTriplesForRow(row, new HashSet<String>(), new HashSet<String>(),
+				rdfGen.generateTriplesForRow(row, new HashSet<String>(),
 						new HashMap<String, ReportMessage>(), new HashSet<String>());
 				
 				pw.flush();
@@ -22,7 +22,6 @@
 package edu.isi.karma.controller.command.transformation;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -123,8 +122,6 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 		String transformMethodStmt = pyHelper
 				.getPythonTransformMethodDefinitionState(worksheet,
 						trimmedTransformationCode);
-		String defGetValueStmt = pyHelper
-				.getGetValueDefStatement(normalizedColumnNameMap);
 
 		// Create a map from hNodeId to normalized column name
 		Map<String, String> hNodeIdToNormalizedColumnName = new HashMap<String, String>();
@@ -134,26 +131,21 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 		}
 		logger.info("Executing PyTransform\n" + transformMethodStmt);
 
-		// Prepare the Python interpreter
-		PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.exec(pyHelper.getImportStatements());
-		interpreter.exec(defGetValueStmt);
-		interpreter.exec(transformMethodStmt);
-
-		Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet
-				.getDataTable().getNumRows()));
-		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), nodes);
+		// Prepare the Python interpreter, the imports and getValue are already defined.
+		// Only the compiled code is cached, the interpreter is new unless a history is replayed offline
+		PythonInterpreter interpreter = pyHelper.getInterpreter();
+		interpreter.exec(pyHelper.compile(interpreter, transformMethodStmt));
 
 		Map<String, String> rowToValueMap = new HashMap<String, String>();
 
 		int counter = 0;
 		long starttime = System.currentTimeMillis();
 		// Go through all nodes collected for the column with given hNodeId
-		PyCode py = interpreter.compile("transform(nodeid)");
+		PyCode py = pyHelper.compile(interpreter, "transform(nodeid)");
 
 		int numRowsWithErrors = 0;
 
-		for (Node node : nodes) {
+		for (Node node : worksheet.getDataTable().getColumnNodes(hNode.getHNodePath(f))) {
 			Row row = node.getBelongsToRow();
 
 			interpreter.set("nodeid", node.getId());
@@ -22,7 +22,6 @@
 package edu.isi.karma.controller.command.transformation;
 
 import java.util.ArrayList;
-import java.util.Collection;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -205,9 +204,7 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 		HNode hNode = f.getHNode(pythonNodeId);
 		
 		this.originalColumnValues = new ArrayList<String>();
-		Collection<Node> nodes = new ArrayList<Node>();
-		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), nodes);
-		for(Node node : nodes) {
+		for(Node node : worksheet.getDataTable().getColumnNodes(hNode.getHNodePath(f))) {
 			originalColumnValues.add(node.getValue().asString());
 		}
 	}
@@ -107,6 +107,16 @@ public class CommandHistory {
 		return new CommandHistory(history, redoStack);
 	}
 	
+	/**
+	 * Forgets all the commands, they can not be undone or redone afterwards.
+	 */
+	public void clear() {
+		history.clear();
+		redoStack.clear();
+		lastCommandWasUndo = false;
+		currentCommand = null;
+	}
+	
 	public void setCurrentCommand(Command command) {
 		this.currentCommand = command;
 	}
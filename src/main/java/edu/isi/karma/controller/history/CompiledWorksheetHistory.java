@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.controller.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.controller.command.Command;
+import edu.isi.karma.controller.command.Command.CommandTag;
+import edu.isi.karma.controller.command.CommandFactory;
+import edu.isi.karma.controller.command.JSONInputCommandFactory;
+import edu.isi.karma.controller.history.CommandHistoryWriter.HistoryArguments;
+import edu.isi.karma.controller.history.HistoryJsonUtil.ClientJsonKeys;
+import edu.isi.karma.controller.history.HistoryJsonUtil.ParameterType;
+import edu.isi.karma.controller.update.TrivialErrorUpdate;
+import edu.isi.karma.controller.update.UpdateContainer;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.transformation.PythonTransformationHelper;
+import edu.isi.karma.util.Util;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * A worksheet history prepared once to be applied to many worksheets with the
+ * same columns, e.g. the batches of a source published with the same model. The
+ * commands are filtered by tag, their factories are looked up and the column paths
+ * of their hNode parameters are parsed when the history is compiled, so applying it
+ * only has to resolve the column paths in the new worksheet and run the commands.
+ * It gives the same results as {@link WorksheetCommandHistoryExecutor}.
+ *
+ * A compiled history is not modified after construction and can be applied from
+ * several threads.
+ */
+public class CompiledWorksheetHistory {
+
+	private static Logger logger = LoggerFactory.getLogger(CompiledWorksheetHistory.class);
+
+	private final List<CompiledCommand> commands;
+
+	private CompiledWorksheetHistory(List<CompiledCommand> commands) {
+		this.commands = commands;
+	}
+
+	public static CompiledWorksheetHistory compile(List<CommandTag> tags, JSONArray historyJson,
+			Map<String, CommandFactory> commandFactoryMap) throws JSONException {
+		JSONArray filteredCommands = HistoryJsonUtil.filterCommandsByTag(tags, historyJson);
+		List<CompiledCommand> commands = new ArrayList<CompiledCommand>(filteredCommands.length());
+		for (int i = 0; i < filteredCommands.length(); i++) {
+			JSONObject commObject = filteredCommands.getJSONObject(i);
+			String commandName = commObject.getString(HistoryArguments.commandName.name());
+			CommandFactory cf = commandFactoryMap.get(commandName);
+			if (cf == null || !(cf instanceof JSONInputCommandFactory)) {
+				logger.info("Command in history can not be replayed: " + commandName);
+				continue;
+			}
+			commands.add(new CompiledCommand(commandName, (JSONInputCommandFactory) cf,
+					commObject.getJSONArray(HistoryArguments.inputParameters.name())));
+		}
+		return new CompiledWorksheetHistory(commands);
+	}
+
+	public int getNumCommands() {
+		return commands.size();
+	}
+
+	public UpdateContainer execute(Workspace workspace, String worksheetId)
+			throws JSONException, KarmaException {
+		UpdateContainer uc = new UpdateContainer();
+		// The Python transformations of every worksheet run in the interpreter of the thread
+		boolean reuseInterpreters = PythonTransformationHelper.setReuseInterpreters(true);
+		try {
+			for (CompiledCommand command : commands) {
+				UpdateContainer update = executeCommand(command, workspace, worksheetId);
+				if (update != null)
+					uc.append(update);
+			}
+		} finally {
+			PythonTransformationHelper.setReuseInterpreters(reuseInterpreters);
+		}
+		return uc;
+	}
+
+	private UpdateContainer executeCommand(CompiledCommand command, Workspace workspace,
+			String worksheetId) throws JSONException, KarmaException {
+		String commandName = command.commandName;
+		HTable headers = workspace.getWorksheet(worksheetId).getHeaders();
+
+		// Point the parameters to the columns and the id of this worksheet
+		JSONArray inputParamArr = new JSONArray();
+		for (int i = 0; i < command.parameters.length; i++) {
+			JSONObject inpP = command.parameters[i];
+			JSONObject param = new JSONObject(inpP, JSONObject.getNames(inpP));
+			if (command.hNodePaths[i] != null) {
+				UpdateContainer uc = WorksheetCommandHistoryExecutor.setHNodeIdValue(headers, param,
+						command.hNodePaths[i], commandName);
+				if (uc != null)
+					return uc;
+			} else if (command.isWorksheetId[i]) {
+				param.put(ClientJsonKeys.value.name(), worksheetId);
+			}
+			inputParamArr.put(param);
+		}
+
+		Command comm = command.factory.createCommand(inputParamArr, workspace);
+		if (comm == null) {
+			logger.error("Error occured while creating command (Could not create Command object): " + commandName);
+			return new UpdateContainer(new TrivialErrorUpdate("Error executing command " + commandName + " from history"));
+		}
+		try {
+			logger.info("Executing command: " + commandName);
+			workspace.getCommandHistory().doCommand(comm, workspace);
+		} catch(Exception e) {
+			logger.error("Error executing command: "+ commandName + ". Please notify this error");
+			Util.logException(logger, e);
+			return new UpdateContainer(new TrivialErrorUpdate("Error executing command " + commandName + " from history"));
+		}
+		return null;
+	}
+
+	private static class CompiledCommand {
+		final String commandName;
+		final JSONInputCommandFactory factory;
+		final JSONObject[] parameters;
+		// The column names from the worksheet headers for the hNodeId parameters, null otherwise
+		final String[][] hNodePaths;
+		final boolean[] isWorksheetId;
+
+		CompiledCommand(String commandName, JSONInputCommandFactory factory, JSONArray inputParamArr)
+				throws JSONException {
+			this.commandName = commandName;
+			this.factory = factory;
+			int numParams = inputParamArr.length();
+			this.parameters = new JSONObject[numParams];
+			this.hNodePaths = new String[numParams][];
+			this.isWorksheetId = new boolean[numParams];
+			for (int i = 0; i < numParams; i++) {
+				JSONObject inpP = inputParamArr.getJSONObject(i);
+				parameters[i] = inpP;
+				ParameterType type = HistoryJsonUtil.getParameterType(inpP);
+				if (type == ParameterType.hNodeId) {
+					String[] columnPath = WorksheetCommandHistoryExecutor.getColumnPath(inpP);
+					if (columnPath.length > 0)
+						hNodePaths[i] = columnPath;
+				} else if (type == ParameterType.worksheetId) {
+					isWorksheetId[i] = true;
+				}
+			}
+		}
+	}
+}
@@ -123,7 +123,7 @@ public class WorksheetCommandHistoryExecutor {
 		return uc;
 	}
 	
-	private boolean ignoreIfBeforeColumnDoesntExist(String commandName) {
+	static boolean ignoreIfBeforeColumnDoesntExist(String commandName) {
 		boolean ignore = false;
 		for(String ignoreCom : commandsIgnoreNodeBefore) {
 			if(commandName.equals(ignoreCom)) {
@@ -136,47 +136,68 @@ public class WorksheetCommandHistoryExecutor {
 	
 	private UpdateContainer normalizeCommandHistoryJsonInput(Workspace workspace, String worksheetId, 
 			JSONArray inputArr, String commandName) throws JSONException {
-		HTable hTable = workspace.getWorksheet(worksheetId).getHeaders();
+		HTable headers = workspace.getWorksheet(worksheetId).getHeaders();
 		for (int i = 0; i < inputArr.length(); i++) {
 			JSONObject inpP = inputArr.getJSONObject(i);
 			
 			/*** Check the input parameter type and accordingly make changes ***/
 			if(HistoryJsonUtil.getParameterType(inpP) == ParameterType.hNodeId) {
-				JSONArray hNodeJSONRep = new JSONArray(inpP.get(ClientJsonKeys.value.name()).toString());
-				for (int j=0; j<hNodeJSONRep.length(); j++) {
-					JSONObject cNameObj = (JSONObject) hNodeJSONRep.get(j);
-					if(hTable == null) {
-						return new UpdateContainer(new TrivialErrorUpdate("null HTable while normalizing JSON input for the command " + commandName));
-					}
-					String nameObjColumnName = cNameObj.getString("columnName");
-					logger.debug("Column being normalized: "+ nameObjColumnName);
-					HNode node = hTable.getHNodeFromColumnName(nameObjColumnName);
-					if(node == null && !ignoreIfBeforeColumnDoesntExist(commandName)) { //Because add column can happen even if the column after which it is to be added is not present
-						logger.info("null HNode " + nameObjColumnName + " while normalizing JSON input for the command " + commandName);
-						return new UpdateContainer(new TrivialErrorUpdate("Column " + nameObjColumnName + " does not exist. " +
-								"All commands for this column are being skipped. You can add the column to the data or Worksheet and apply the model again."));
-						//return false;
-					}
-					
-					if (j == hNodeJSONRep.length()-1) {		// Found!
-						if(node != null)
-							inpP.put(ClientJsonKeys.value.name(), node.getId());
-						else {
-							//Get the id of the last node in the table
-							ArrayList<String> allNodeIds = hTable.getOrderedNodeIds();
-							String lastNodeId = allNodeIds.get(allNodeIds.size()-1);
-							inpP.put(ClientJsonKeys.value.name(), lastNodeId);
-						}
-						hTable = workspace.
-								getWorksheet(worksheetId).getHeaders();
-					} else if(node != null) {
-						hTable = node.getNestedTable();
-					}
-				}
+				UpdateContainer uc = setHNodeIdValue(headers, inpP, getColumnPath(inpP), commandName);
+				if(uc != null)
+					return uc;
 			} else if(HistoryJsonUtil.getParameterType(inpP) == ParameterType.worksheetId) {
 				inpP.put(ClientJsonKeys.value.name(), worksheetId);
 			}
 		}
 		return null;
 	}
+	
+	/**
+	 * @return the column names of the path stored in an hNodeId parameter of the history
+	 */
+	static String[] getColumnPath(JSONObject inpP) throws JSONException {
+		JSONArray hNodeJSONRep = new JSONArray(inpP.get(ClientJsonKeys.value.name()).toString());
+		String[] columnPath = new String[hNodeJSONRep.length()];
+		for (int j=0; j<hNodeJSONRep.length(); j++) {
+			columnPath[j] = hNodeJSONRep.getJSONObject(j).getString("columnName");
+		}
+		return columnPath;
+	}
+	
+	/**
+	 * Follows the column path from the worksheet headers and sets the id of the column 
+	 * it points to as the value of the parameter.
+	 * @return an error update if a column of the path does not exist, null otherwise
+	 */
+	static UpdateContainer setHNodeIdValue(HTable headers, JSONObject inpP, 
+			String[] columnPath, String commandName) throws JSONException {
+		HTable hTable = headers;
+		for (int j=0; j<columnPath.length; j++) {
+			if(hTable == null) {
+				return new UpdateContainer(new TrivialErrorUpdate("null HTable while normalizing JSON input for the command " + commandName));
+			}
+			String nameObjColumnName = columnPath[j];
+			logger.debug("Column being normalized: "+ nameObjColumnName);
+			HNode node = hTable.getHNodeFromColumnName(nameObjColumnName);
+			if(node == null && !ignoreIfBeforeColumnDoesntExist(commandName)) { //Because add column can happen even if the column after which it is to be added is not present
+				logger.info("null HNode " + nameObjColumnName + " while normalizing JSON input for the command " + commandName);
+				return new UpdateContainer(new TrivialErrorUpdate("Column " + nameObjColumnName + " does not exist. " +
+						"All commands for this column are being skipped. You can add the column to the data or Worksheet and apply the model again."));
+			}
+			
+			if (j == columnPath.length-1) {		// Found!
+				if(node != null)
+					inpP.put(ClientJsonKeys.value.name(), node.getId());
+				else {
+					//Get the id of the last node in the table
+					ArrayList<String> allNodeIds = hTable.getOrderedNodeIds();
+					String lastNodeId = allNodeIds.get(allNodeIds.size()-1);
+					inpP.put(ClientJsonKeys.value.name(), lastNodeId);
+				}
+			} else if(node != null) {
+				hTable = node.getNestedTable();
+			}
+		}
+		return null;
+	}
 }
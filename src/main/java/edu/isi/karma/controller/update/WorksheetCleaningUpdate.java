@@ -23,7 +23,6 @@ package edu.isi.karma.controller.update;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,15 +78,13 @@ public class WorksheetCleaningUpdate extends
 		
 		for (HNodePath path:columnPaths) {
 			String leafHNodeId = path.getLeaf().getId();
-			Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet.getDataTable().getNumRows()));
-			worksheet.getDataTable().collectNodes(path, nodes);
 			try {
 				// Check if the column metadata doesn't contains the cleaning information
 				if (colMetadata.getColumnHistogramData(leafHNodeId) == null 
 						|| forceUpdates) {
 					// Prepare the input data for the cleaning service
 					JSONArray requestJsonArray = new JSONArray();  
-					for (Node node : nodes) {
+					for (Node node : worksheet.getDataTable().getColumnNodes(path)) {
 						JSONObject jsonRecord = new JSONObject();
 						jsonRecord.put(JsonKeys.id.name(), node.getId());
 						String originalVal = node.getValue().asString();
@@ -170,7 +170,7 @@ public class WorksheetGeospatialContent {
 		}
 	}
 	private void populatePolygons(List<String> coordinateHNodeIds,
-			ArrayList<Row> rows, Map<String, String> columnNameMap) {
+			List<Row> rows, Map<String, String> columnNameMap) {
 		for (Row row : rows) {
 			try {
 				String posList = row.getNode(coordinateHNodeIds.get(0))
@@ -196,7 +196,7 @@ public class WorksheetGeospatialContent {
 		}
 	}
 	private void populateLines(List<String> coordinateHNodeIds,
-			ArrayList<Row> rows, Map<String, String> columnNameMap) {
+			List<Row> rows, Map<String, String> columnNameMap) {
 		for (Row row : rows) {
 			try {
 				String posList = row.getNode(coordinateHNodeIds.get(0))
@@ -235,7 +235,7 @@ public class WorksheetGeospatialContent {
 	}
 
 	private void populatePoints(List<String> coordinateHNodeIds,
-			CoordinateCase currentCase, ArrayList<Row> rows,
+			CoordinateCase currentCase, List<Row> rows,
 			Map<String, String> columnNameMap) {
 		// Extract the latitude, longitude and the other description data
 		String lng = "";
@@ -310,7 +310,7 @@ public class WorksheetGeospatialContent {
 		}
 	}
 
-	private ArrayList<Row> getRows() {
+	private List<Row> getRows() {
 		int numRows = worksheet.getDataTable().getNumRows();
 		return worksheet.getDataTable().getRows(0, numRows);
 	}
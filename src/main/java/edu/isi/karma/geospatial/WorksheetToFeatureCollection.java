@@ -304,7 +304,7 @@ public class WorksheetToFeatureCollection {
 
 	private void populateSimpleFeatures(
 			String geometryHNodeId, String geometry2HNodeId,
-			ArrayList<Row> rows, List<SimpleFeature> features, @SuppressWarnings("rawtypes") Class binding) {
+			List<Row> rows, List<SimpleFeature> features, @SuppressWarnings("rawtypes") Class binding) {
 
 		for (Row row : rows) {
 			try {
@@ -385,7 +385,7 @@ public class WorksheetToFeatureCollection {
 		}
 	}
 
-	private ArrayList<Row> getRows() {
+	private List<Row> getRows() {
 		int numRows = worksheet.getDataTable().getNumRows();
 		return worksheet.getDataTable().getRows(0, numRows);
 	}
@@ -22,18 +22,15 @@
  */
 package edu.isi.karma.imp.csv;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import au.com.bytecode.opencsv.CSVReader;
 import edu.isi.karma.imp.Import;
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.HTable;
@@ -57,6 +54,7 @@ public class CSVFileImport extends Import {
     private final File csvFile;
     private final String encoding;
     private final int maxNumLines;
+    private int numThreads = 1;
     private static Logger logger = LoggerFactory.getLogger(CSVFileImport.class);
 
     public CSVFileImport(int headerRowIndex, int dataStartRowIndex,
@@ -75,73 +73,94 @@ public class CSVFileImport extends Import {
         this.csvFile = csvFile;
     }
 
+    /**
+     * Parses large files on several threads when the whole file is imported. The
+     * rows are still added to the worksheet in file order.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     @Override
     public Worksheet generateWorksheet() throws IOException, KarmaException {
         Table dataTable = getWorksheet().getDataTable();
 
-        // Prepare the reader for reading file line by line
-        
-        InputStreamReader isr = EncodingDetector.getInputStreamReader(csvFile, encoding);
-        
-        BufferedReader br = new BufferedReader(isr);
-
+        // Prepare the tokenizer for reading the file record by record
+        CSVRecordReader tokenizer = createRecordReader();
 
-        // Index for row currently being read
-        int rowCount = 0;
-        ArrayList<String> hNodeIdList = new ArrayList<String>();
+        try {
+            // Index for row currently being read
+            int rowCount = 0;
+            ArrayList<String> hNodeIdList = new ArrayList<String>();
 
-        // If no row is present for the column headers
-        if (headerRowIndex == 0) {
-            hNodeIdList = addEmptyHeaders(getWorksheet(), getFactory());
-            if (hNodeIdList == null || hNodeIdList.size() == 0) {
-                br.close();
-                throw new KarmaException("Error occured while counting header "
-                        + "nodes for the worksheet!");
+            // If no row is present for the column headers
+            if (headerRowIndex == 0) {
+                hNodeIdList = addEmptyHeaders(getWorksheet(), getFactory());
+                if (hNodeIdList == null || hNodeIdList.size() == 0) {
+                    throw new KarmaException("Error occured while counting header "
+                            + "nodes for the worksheet!");
+                }
+                tokenizer.setExpectedNumColumns(hNodeIdList.size());
             }
-        }
 
-        // Populate the worksheet model
-        String line = null;
-        while ((line = br.readLine()) != null) {
-        	logger.debug("Read line: '" + line + "'");
-            // Check for the header row
-            if (rowCount + 1 == headerRowIndex) {
-                hNodeIdList = addHeaders(getWorksheet(), getFactory(), line);
-                rowCount++;
-                continue;
-            }
+            // Populate the worksheet model
+            String[] rowValues = null;
+            while ((rowValues = tokenizer.readNext()) != null) {
+                // Check for the header row
+                if (rowCount + 1 == headerRowIndex) {
+                    hNodeIdList = addHeaders(getWorksheet(), getFactory(), rowValues);
+                    tokenizer.setExpectedNumColumns(hNodeIdList.size());
+                    rowCount++;
+                    continue;
+                }
 
-            // Populate the model with data rows
-            if (rowCount + 1 >= dataStartRowIndex) {
-                boolean added = addRow(getWorksheet(), getFactory(), line, hNodeIdList, dataTable);
-                if(added) {
-	                rowCount++;
-	               
-	                if(maxNumLines > 0 && (rowCount - dataStartRowIndex) >= maxNumLines-1) {
-	                	break;
-	                }
+                // Populate the model with data rows
+                if (rowCount + 1 >= dataStartRowIndex) {
+                    boolean added = addRow(getFactory(), rowValues, hNodeIdList, dataTable);
+                    if(added) {
+                        rowCount++;
+
+                        if(maxNumLines > 0 && (rowCount - dataStartRowIndex) >= maxNumLines-1) {
+                            break;
+                        }
+                    }
+                    continue;
                 }
-                continue;
-            }
 
-            rowCount++;
+                rowCount++;
+            }
+        } finally {
+            // Also stops the threads of a parallel reader
+            tokenizer.close();
         }
-        br.close();
         getWorksheet().getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, SourceTypes.CSV.toString());
         return getWorksheet();
     }
 
+    private CSVRecordReader createRecordReader() throws IOException {
+        if (numThreads > 1 && maxNumLines <= 0
+                && csvFile.length() > 2L * ParallelCSVReader.DEFAULT_CHUNK_SIZE) {
+            Charset charset = Charset.forName(encoding);
+            if (ParallelCSVReader.isSupported(charset, delimiter, quoteCharacter, escapeCharacter)) {
+                logger.info("Parsing " + csvFile.getName() + " with " + numThreads + " threads");
+                return new ParallelCSVReader(csvFile, charset, delimiter,
+                        quoteCharacter, escapeCharacter, numThreads);
+            }
+        }
+        return createTokenizer();
+    }
+
+    private CSVTokenizer createTokenizer() throws IOException {
+        InputStreamReader isr = EncodingDetector.getInputStreamReader(csvFile, encoding);
+        return new CSVTokenizer(isr, delimiter, quoteCharacter, escapeCharacter);
+    }
+
     private ArrayList<String> addHeaders(Worksheet worksheet, RepFactory fac,
-            String line) throws IOException {
+            String[] rowValues) throws IOException {
         HTable headers = worksheet.getHeaders();
         ArrayList<String> headersList = new ArrayList<String>();
-        CSVReader reader = new CSVReader(new StringReader(line), delimiter,
-                quoteCharacter, escapeCharacter);
-        String[] rowValues = null;
-        rowValues = reader.readNext();
 
-        if (rowValues == null || rowValues.length == 0) {
-            reader.close();
+        if (rowValues.length == 0) {
             return addEmptyHeaders(worksheet, fac);
         }
 
@@ -154,18 +173,12 @@ public class CSVFileImport extends Import {
             }
             headersList.add(hNode.getId());
         }
-        reader.close();
         return headersList;
     }
 
-    private boolean addRow(Worksheet worksheet, RepFactory fac, String line,
-            ArrayList<String> hNodeIdList, Table dataTable) throws IOException {
-        CSVReader reader = new CSVReader(new StringReader(line), delimiter,
-                quoteCharacter, escapeCharacter);
-        String[] rowValues = null;
-        rowValues = reader.readNext();
-        if (rowValues == null || rowValues.length == 0) {
-            reader.close();
+    private boolean addRow(RepFactory fac, String[] rowValues,
+            ArrayList<String> hNodeIdList, Table dataTable) {
+        if (rowValues.length == 0) {
             return false;
         }
 
@@ -180,7 +193,6 @@ public class CSVFileImport extends Import {
                 logger.error("More data elements detected in the row than number of headers!");
             }
         }
-        reader.close();
         return true;
     }
 
@@ -189,36 +201,25 @@ public class CSVFileImport extends Import {
         HTable headers = worksheet.getHeaders();
         ArrayList<String> headersList = new ArrayList<String>();
 
-        Scanner scanner = null;
-        scanner = new Scanner(csvFile);
-
         // Use the first data row to count the number of columns we need to add
-        int rowCount = 0;
-        while (scanner.hasNext()) {
-            if (rowCount + 1 == dataStartRowIndex) {
-                String line = scanner.nextLine();
-                CSVReader reader = new CSVReader(new StringReader(line),
-                        delimiter, quoteCharacter, escapeCharacter);
-                String[] rowValues = null;
-                try {
-                    rowValues = reader.readNext();
-                } catch (IOException e) {
-                    logger.error("Error reading Line:" + line, e);
+        CSVTokenizer tokenizer = createTokenizer();
+        try {
+            int rowCount = 0;
+            String[] rowValues = null;
+            while ((rowValues = tokenizer.readNext()) != null) {
+                if (rowCount + 1 == dataStartRowIndex) {
+                    for (int i = 0; i < rowValues.length; i++) {
+                        HNode hNode = headers.addHNode("Column_" + (i + 1),
+                                worksheet, fac);
+                        headersList.add(hNode.getId());
+                    }
+                    break;
                 }
-                for (int i = 0; i < rowValues.length; i++) {
-                    HNode hNode = headers.addHNode("Column_" + (i + 1),
-                            worksheet, fac);
-                    headersList.add(hNode.getId());
-                }
-                reader.close();
-                break;
-            }
-            rowCount++;
-            if (scanner.hasNext()) {
-                scanner.nextLine();
+                rowCount++;
             }
+        } finally {
+            tokenizer.close();
         }
-        scanner.close();
         return headersList;
     }
 
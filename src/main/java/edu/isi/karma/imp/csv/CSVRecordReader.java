@@ -0,0 +1,44 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of a CSV file one at a time, in file order.
+ */
+interface CSVRecordReader extends Closeable {
+
+	/**
+	 * @return the fields of the next record, an empty array for an empty line,
+	 *         or null at the end of the input
+	 */
+	String[] readNext() throws IOException;
+
+	/**
+	 * Sets the number of fields expected in a record to size the lists of
+	 * fields. Records can still have any number of fields.
+	 */
+	void setExpectedNumColumns(int expectedNumColumns);
+}
@@ -0,0 +1,220 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the records of a CSV file in a single pass over a character buffer.
+ * The field separator, quote and escape characters are those of the opencsv
+ * CSVReader. A quoted field can contain separators, line breaks and doubled
+ * quotes; inside a quoted field the escape character makes the next quote or
+ * escape character literal. A quote inside an unquoted field is kept as is.
+ * Lines end with \n, \r\n or \r.
+ *
+ * The tokenizer is not thread-safe.
+ */
+public class CSVTokenizer implements CSVRecordReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String[] EMPTY_RECORD = new String[0];
+
+	private final Reader reader;
+	private final char separator;
+	private final char quoteCharacter;
+	private final char escapeCharacter;
+
+	private final char[] buffer;
+	private int position = 0;
+	private int limit = 0;
+	private boolean endOfInput = false;
+
+	// The characters of the current field
+	private char[] field = new char[256];
+	private int fieldLength = 0;
+	private int expectedNumColumns = 16;
+
+	public CSVTokenizer(Reader reader, char separator, char quoteCharacter,
+			char escapeCharacter) {
+		this.reader = reader;
+		this.separator = separator;
+		this.quoteCharacter = quoteCharacter;
+		this.escapeCharacter = escapeCharacter;
+		this.buffer = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * Splits the records of characters already in memory, e.g. a decoded chunk
+	 * of a file. The characters are read in place.
+	 */
+	public CSVTokenizer(CharBuffer chars, char separator, char quoteCharacter,
+			char escapeCharacter) {
+		this.reader = null;
+		this.separator = separator;
+		this.quoteCharacter = quoteCharacter;
+		this.escapeCharacter = escapeCharacter;
+		if (chars.hasArray()) {
+			this.buffer = chars.array();
+			this.position = chars.arrayOffset() + chars.position();
+			this.limit = chars.arrayOffset() + chars.limit();
+		} else {
+			this.buffer = new char[chars.remaining()];
+			chars.get(buffer);
+			this.limit = buffer.length;
+		}
+		this.endOfInput = true;
+	}
+
+	@Override
+	public void setExpectedNumColumns(int expectedNumColumns) {
+		if (expectedNumColumns > 0) {
+			this.expectedNumColumns = expectedNumColumns;
+		}
+	}
+
+	@Override
+	public String[] readNext() throws IOException {
+		if (!fill()) {
+			return null;
+		}
+		char c = buffer[position];
+		if (isLineBreak(c)) {
+			position++;
+			skipLineFeedAfter(c);
+			return EMPTY_RECORD;
+		}
+
+		List<String> fields = new ArrayList<String>(expectedNumColumns);
+		boolean inQuotes = false;
+		// Whether the current field started with a quote
+		boolean quotedField = false;
+		fieldLength = 0;
+		while (fill()) {
+			c = buffer[position++];
+			if (inQuotes) {
+				if (c == quoteCharacter) {
+					if (fill() && buffer[position] == quoteCharacter) {
+						position++;
+						append(quoteCharacter);
+					} else {
+						inQuotes = false;
+					}
+				} else if (c == escapeCharacter && fill()
+						&& (buffer[position] == quoteCharacter || buffer[position] == escapeCharacter)) {
+					append(buffer[position++]);
+				} else {
+					append(c);
+				}
+			} else if (c == separator) {
+				fields.add(new String(field, 0, fieldLength));
+				fieldLength = 0;
+				quotedField = false;
+			} else if (isLineBreak(c)) {
+				skipLineFeedAfter(c);
+				fields.add(new String(field, 0, fieldLength));
+				return fields.toArray(new String[fields.size()]);
+			} else if (c == quoteCharacter && !quotedField && isBlankField()) {
+				// Leading white space before an opening quote is dropped
+				fieldLength = 0;
+				inQuotes = true;
+				quotedField = true;
+			} else {
+				append(c);
+			}
+		}
+		fields.add(new String(field, 0, fieldLength));
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	/**
+	 * A line break ends the record outside of quotes, \r\n counts as one.
+	 */
+	static boolean isLineBreak(int c) {
+		return c == '\n' || c == '\r';
+	}
+
+	/**
+	 * The white space that may come before the opening quote of a field.
+	 */
+	static boolean isWhitespace(int codePoint) {
+		return Character.isWhitespace(codePoint);
+	}
+
+	private boolean isBlankField() {
+		for (int i = 0; i < fieldLength; i++) {
+			if (!isWhitespace(field[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void append(char c) {
+		if (fieldLength == field.length) {
+			char[] larger = new char[field.length * 2];
+			System.arraycopy(field, 0, larger, 0, fieldLength);
+			field = larger;
+		}
+		field[fieldLength++] = c;
+	}
+
+	private void skipLineFeedAfter(char c) throws IOException {
+		if (c == '\r' && fill() && buffer[position] == '\n') {
+			position++;
+		}
+	}
+
+	/**
+	 * @return true if there is at least one character to read in the buffer
+	 */
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		if (endOfInput) {
+			return false;
+		}
+		int read;
+		do {
+			read = reader.read(buffer, 0, buffer.length);
+		} while (read == 0);
+		if (read < 0) {
+			endOfInput = true;
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+}
@@ -0,0 +1,360 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the records of a large CSV file with several threads. The file is
+ * memory-mapped and cut into chunks of about {@link #DEFAULT_CHUNK_SIZE} bytes that end
+ * after a line break outside of quotes, so that every chunk starts with a new
+ * record. The chunks are decoded and split by a {@link CSVTokenizer} on the
+ * worker threads while the records of the previous chunks are returned, in
+ * file order, by {@link #readNext()}.
+ *
+ * Finding the chunk boundaries needs the bytes of the separator, quote, escape
+ * and line break characters, so only encodings that write ASCII characters as
+ * single bytes are supported, see {@link #isSupported(Charset, char, char, char)}.
+ */
+class ParallelCSVReader implements CSVRecordReader {
+
+	private static Logger logger = LoggerFactory.getLogger(ParallelCSVReader.class);
+
+	static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long size;
+	private final Charset charset;
+	private final byte separator;
+	private final byte quoteCharacter;
+	private final byte escapeCharacter;
+	private final char separatorChar;
+	private final char quoteChar;
+	private final char escapeChar;
+	// Whether each byte is white space in a single byte encoding, null for UTF-8
+	private final boolean[] whitespaceBytes;
+	private final int chunkSize;
+	private final ExecutorService executor;
+	// Parsed or being parsed, in file order
+	private final Deque<Future<List<String[]>>> chunks = new ArrayDeque<Future<List<String[]>>>();
+	private final int maxPendingChunks;
+
+	private long nextChunkStart;
+	private List<String[]> records = new ArrayList<String[]>();
+	private int nextRecord = 0;
+	private volatile int expectedNumColumns = 0;
+
+	ParallelCSVReader(File csvFile, Charset charset, char separator,
+			char quoteCharacter, char escapeCharacter, int numThreads) throws IOException {
+		this(csvFile, charset, separator, quoteCharacter, escapeCharacter, numThreads, DEFAULT_CHUNK_SIZE);
+	}
+
+	ParallelCSVReader(File csvFile, Charset charset, char separator,
+			char quoteCharacter, char escapeCharacter, int numThreads, int chunkSize) throws IOException {
+		this.file = new RandomAccessFile(csvFile, "r");
+		this.channel = file.getChannel();
+		this.size = channel.size();
+		this.charset = charset;
+		this.separator = (byte) separator;
+		this.quoteCharacter = (byte) quoteCharacter;
+		this.escapeCharacter = (byte) escapeCharacter;
+		this.separatorChar = separator;
+		this.quoteChar = quoteCharacter;
+		this.escapeChar = escapeCharacter;
+		this.whitespaceBytes = charset.name().equals("UTF-8") ? null : getWhitespaceBytes(charset);
+		this.chunkSize = Math.max(1, chunkSize);
+		this.executor = Executors.newFixedThreadPool(numThreads);
+		this.maxPendingChunks = numThreads + 1;
+		this.nextChunkStart = hasUTF8BOM() ? UTF8_BOM.length : 0;
+	}
+
+	/**
+	 * The chunks can be cut on bytes if the separator, quote and escape characters
+	 * are ASCII and the encoding writes them, and the line breaks, as single bytes
+	 * that are never part of the encoding of another character.
+	 */
+	static boolean isSupported(Charset charset, char separator, char quoteCharacter,
+			char escapeCharacter) {
+		if (separator > 0x7F || quoteCharacter > 0x7F || escapeCharacter > 0x7F) {
+			return false;
+		}
+		return charset.name().equals("UTF-8")
+				|| (charset.newEncoder().maxBytesPerChar() == 1.0f
+						&& charset.newEncoder().canEncode(new String(new char[] {
+								separator, quoteCharacter, escapeCharacter, '\n', '\r' })));
+	}
+
+	@Override
+	public void setExpectedNumColumns(int expectedNumColumns) {
+		this.expectedNumColumns = expectedNumColumns;
+	}
+
+	@Override
+	public String[] readNext() throws IOException {
+		while (nextRecord == records.size()) {
+			submitChunks();
+			if (chunks.isEmpty()) {
+				return null;
+			}
+			records = getRecords(chunks.removeFirst());
+			nextRecord = 0;
+		}
+		String[] record = records.get(nextRecord);
+		// Lets the parsed values be collected as soon as they are in the worksheet
+		records.set(nextRecord++, null);
+		return record;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<List<String[]>> chunk : chunks) {
+			chunk.cancel(true);
+		}
+		chunks.clear();
+		executor.shutdownNow();
+		channel.close();
+		file.close();
+	}
+
+	private void submitChunks() throws IOException {
+		while (chunks.size() < maxPendingChunks && nextChunkStart < size) {
+			final ByteBuffer chunk = nextChunk();
+			chunks.addLast(executor.submit(new Callable<List<String[]>>() {
+				@Override
+				public List<String[]> call() throws IOException {
+					return parseChunk(chunk);
+				}
+			}));
+		}
+	}
+
+	private List<String[]> getRecords(Future<List<String[]>> chunk) throws IOException {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing the CSV file");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error in parsing the CSV file", e.getCause());
+		}
+	}
+
+	/**
+	 * Maps the bytes from the start of the next chunk up to the last line break
+	 * outside of quotes within the chunk size, or up to the end of the file. The
+	 * mapped region grows if a record is longer than a chunk.
+	 */
+	private ByteBuffer nextChunk() throws IOException {
+		long start = nextChunkStart;
+		long regionSize = chunkSize;
+		while (true) {
+			long length = Math.min(regionSize, size - start);
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("A record of the CSV file is too long: " + start);
+			}
+			ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			int end = (start + length == size) ? (int) length : findLastRecordEnd(region);
+			if (end > 0) {
+				nextChunkStart = start + end;
+				region.limit(end);
+				return region;
+			}
+			regionSize *= 2;
+		}
+	}
+
+	/**
+	 * Follows the quotes of the records like {@link CSVTokenizer} does, with the
+	 * same line breaks and the same white space before an opening quote.
+	 *
+	 * @return the position after the last line break outside of quotes, 0 if there
+	 *         is none
+	 */
+	private int findLastRecordEnd(ByteBuffer region) {
+		int lastEnd = 0;
+		boolean inQuotes = false;
+		// Only white space since the start of the field
+		boolean atFieldStart = true;
+		int limit = region.limit();
+		for (int i = 0; i < limit; i++) {
+			byte b = region.get(i);
+			if (inQuotes) {
+				if (b == quoteCharacter) {
+					if (i + 1 < limit && region.get(i + 1) == quoteCharacter) {
+						i++;
+					} else {
+						inQuotes = false;
+					}
+				} else if (b == escapeCharacter && i + 1 < limit) {
+					byte next = region.get(i + 1);
+					if (next == quoteCharacter || next == escapeCharacter) {
+						i++;
+					}
+				}
+			} else if (b == separator) {
+				atFieldStart = true;
+			} else if (CSVTokenizer.isLineBreak(b)) {
+				if (b == '\r') {
+					if (i + 1 == limit) {
+						// The next chunk would start with the \n of a \r\n
+						break;
+					}
+					if (region.get(i + 1) == '\n') {
+						i++;
+					}
+				}
+				lastEnd = i + 1;
+				atFieldStart = true;
+			} else if (b == quoteCharacter && atFieldStart) {
+				inQuotes = true;
+				atFieldStart = false;
+			} else if (atFieldStart) {
+				int length = getCharLength(b);
+				if (i + length > limit) {
+					// The character is cut at the end of the region
+					break;
+				}
+				atFieldStart = isWhitespace(region, i, length);
+				i += length - 1;
+			}
+		}
+		return lastEnd;
+	}
+
+	/**
+	 * @return the number of bytes of the character that starts with the given byte
+	 */
+	private int getCharLength(byte b) {
+		if (whitespaceBytes != null || b >= 0) {
+			return 1;
+		}
+		if ((b & 0xE0) == 0xC0) {
+			return 2;
+		} else if ((b & 0xF0) == 0xE0) {
+			return 3;
+		} else if ((b & 0xF8) == 0xF0) {
+			return 4;
+		}
+		// Malformed, decoded as a replacement character
+		return 1;
+	}
+
+	/**
+	 * Decodes the character that starts at the given byte to check if it is white
+	 * space.
+	 */
+	private boolean isWhitespace(ByteBuffer region, int i, int length) {
+		byte b = region.get(i);
+		if (whitespaceBytes != null) {
+			return whitespaceBytes[b & 0xFF];
+		}
+		if (b >= 0) {
+			return CSVTokenizer.isWhitespace(b);
+		}
+		if (length == 1) {
+			return false;
+		}
+		// The bits of the first byte after the length prefix
+		int codePoint = b & (0x7F >> length);
+		for (int j = 1; j < length; j++) {
+			byte next = region.get(i + j);
+			if ((next & 0xC0) != 0x80) {
+				return false;
+			}
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+		return CSVTokenizer.isWhitespace(codePoint);
+	}
+
+	private static boolean[] getWhitespaceBytes(Charset charset) {
+		boolean[] whitespace = new boolean[256];
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		for (int b = 0; b < 256; b++) {
+			try {
+				CharBuffer decoded = decoder.decode(ByteBuffer.wrap(new byte[] { (byte) b }));
+				whitespace[b] = decoded.length() == 1 && CSVTokenizer.isWhitespace(decoded.get(0));
+			} catch (CharacterCodingException e) {
+				whitespace[b] = false;
+			}
+		}
+		return whitespace;
+	}
+
+	private List<String[]> parseChunk(ByteBuffer chunk) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer decoded = decoder.decode(chunk);
+		CSVTokenizer tokenizer = new CSVTokenizer(decoded, separatorChar, quoteChar, escapeChar);
+		tokenizer.setExpectedNumColumns(expectedNumColumns);
+		List<String[]> parsed = new ArrayList<String[]>();
+		String[] record;
+		while ((record = tokenizer.readNext()) != null) {
+			parsed.add(record);
+		}
+		logger.debug("Parsed a chunk of " + parsed.size() + " records");
+		return parsed;
+	}
+
+	private boolean hasUTF8BOM() throws IOException {
+		if (!charset.name().equals("UTF-8") || size < UTF8_BOM.length) {
+			return false;
+		}
+		ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, UTF8_BOM.length);
+		for (int i = 0; i < UTF8_BOM.length; i++) {
+			if (start.get(i) != UTF8_BOM[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
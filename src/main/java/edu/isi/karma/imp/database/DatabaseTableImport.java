@@ -22,7 +22,11 @@
  */
 package edu.isi.karma.imp.database;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 
 import edu.isi.karma.imp.Import;
@@ -83,15 +87,50 @@ public class DatabaseTableImport extends Import {
         return generateWorksheet(dbUtil, data);
     }
 
+    /**
+     * Imports all the rows of the table. The rows are read with a forward-only cursor
+     * and added to the worksheet as the cursor advances, so the table is never held
+     * in memory twice.
+     */
     public Worksheet generateWorksheetForAllRows() throws SQLException, ClassNotFoundException {
-        /**
-         * Get the data from the database table *
-         */
         AbstractJDBCUtil dbUtil = JDBCUtilFactory.getInstance(dbType);
+        Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
+        try {
+            Statement stmt = dbUtil.createStreamingStatement(conn);
+            try {
+                ResultSet r = stmt.executeQuery("SELECT * FROM " + tableName);
+                try {
+                    /**
+                     * Add the headers *
+                     */
+                    ResultSetMetaData meta = r.getMetaData();
+                    int numColumns = meta.getColumnCount();
+                    HTable headers = getWorksheet().getHeaders();
+                    String[] hNodeIds = new String[numColumns];
+                    for (int i = 1; i <= numColumns; i++) {
+                        hNodeIds[i - 1] = headers.addHNode(meta.getColumnName(i), getWorksheet(), getFactory()).getId();
+                    }
 
-        ArrayList<ArrayList<String>> data = dbUtil.getDataForTable(dbType, hostname,
-                portnumber, username, password, tableName, dBorSIDName);
-        return generateWorksheet(dbUtil, data);
+                    /**
+                     * Add the data *
+                     */
+                    Table dataTable = getWorksheet().getDataTable();
+                    while (r.next()) {
+                        Row row = dataTable.addRow(getFactory());
+                        for (int i = 1; i <= numColumns; i++) {
+                            row.setValue(hNodeIds[i - 1], dbUtil.getValue(r, i), getFactory());
+                        }
+                    }
+                } finally {
+                    r.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            conn.close();
+        }
+        return setSourceInformation();
     }
 
     private Worksheet generateWorksheet(AbstractJDBCUtil dbUtil, ArrayList<ArrayList<String>> data) {
@@ -118,10 +157,14 @@ public class DatabaseTableImport extends Import {
             }
         }
 
-        /**
-         * Save the db info in the source information part of worksheet's
-         * metadata *
-         */
+        return setSourceInformation();
+    }
+
+    /**
+     * Save the db info in the source information part of worksheet's
+     * metadata *
+     */
+    private Worksheet setSourceInformation() {
         SourceInformation srcInfo = new SourceInformation();
         srcInfo.setAttributeValue(InfoAttribute.dbType, dbType.name());
         srcInfo.setAttributeValue(InfoAttribute.hostname, hostname);
@@ -0,0 +1,175 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.excel;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.POIXMLDocument;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Imports every sheet of an Excel workbook that has rows into a worksheet. The
+ * workbook is read with the event APIs of POI (SAX for .xlsx, the HSSF event
+ * model for .xls), so neither the whole workbook nor an intermediate CSV file is
+ * kept: the rows are added to the worksheet as they are read.
+ *
+ * The worksheets are named after the file and the sheet, the first row of the
+ * sheet gives the column names, and there are as many columns as cells in the
+ * widest row. Formulas get the value cached in the file.
+ */
+public class ExcelFileImport {
+
+	private static Logger logger = LoggerFactory.getLogger(ExcelFileImport.class);
+
+	private final File excelFile;
+	private final Workspace workspace;
+	private final String encoding;
+	private final int maxNumLines;
+	private final List<Worksheet> worksheets = new ArrayList<Worksheet>();
+
+	public ExcelFileImport(File excelFile, Workspace workspace, String encoding,
+			int maxNumLines) {
+		this.excelFile = excelFile;
+		this.workspace = workspace;
+		this.encoding = encoding;
+		this.maxNumLines = maxNumLines;
+	}
+
+	/**
+	 * @return a worksheet for each sheet that has rows, in the order of the sheets
+	 */
+	public List<Worksheet> generateWorksheets() throws IOException, KarmaException {
+		worksheets.clear();
+		SheetImport sheetImport = new SheetImport();
+		InputStream is = new BufferedInputStream(new FileInputStream(excelFile));
+		try {
+			if (POIFSFileSystem.hasPOIFSHeader(is)) {
+				new XLSStreamReader(sheetImport).read(is);
+			} else if (POIXMLDocument.hasOOXMLHeader(is)) {
+				is.close();
+				new XLSXStreamReader(sheetImport).read(excelFile);
+			} else {
+				throw new KarmaException("The file " + excelFile.getName()
+						+ " is not an Excel workbook");
+			}
+		} finally {
+			is.close();
+		}
+		return worksheets;
+	}
+
+	private String getWorksheetName(String sheetName) {
+		String fileName = excelFile.getName();
+		int extension = fileName.lastIndexOf('.');
+		return (extension > 0 ? fileName.substring(0, extension) : fileName)
+				+ "_" + sheetName;
+	}
+
+	/**
+	 * Adds the rows of a sheet to a new worksheet, created with its first row.
+	 */
+	private class SheetImport implements ExcelRowHandler {
+
+		private String sheetName;
+		private Worksheet worksheet;
+		private List<String> hNodeIds;
+		private boolean hasHeaderRow;
+		private int numRows;
+
+		@Override
+		public void startSheet(String sheetName) {
+			this.sheetName = sheetName;
+			this.worksheet = null;
+			this.hNodeIds = new ArrayList<String>();
+			this.numRows = 0;
+		}
+
+		@Override
+		public boolean addRow(int rowIndex, List<String> cells) {
+			RepFactory factory = workspace.getFactory();
+			if (worksheet == null) {
+				logger.info("Importing sheet " + sheetName);
+				worksheet = factory.createWorksheet(getWorksheetName(sheetName),
+						workspace, encoding);
+				worksheet.getMetadataContainer().getWorksheetProperties().setPropertyValue(
+						Property.sourceType, SourceTypes.CSV.toString());
+				worksheets.add(worksheet);
+				hasHeaderRow = rowIndex == 0;
+				if (hasHeaderRow) {
+					addColumns(cells.size(), cells);
+					return true;
+				}
+			}
+
+			addColumns(cells.size(), null);
+			Row row = worksheet.getDataTable().addRow(factory);
+			for (int i = 0; i < cells.size(); i++) {
+				String value = cells.get(i);
+				row.setValue(hNodeIds.get(i), value == null ? "" : value, factory);
+			}
+			numRows++;
+			return maxNumLines <= 0 || numRows < maxNumLines;
+		}
+
+		@Override
+		public void endSheet() {
+			worksheet = null;
+		}
+
+		/**
+		 * Adds columns up to numColumns, named after the cells of the header row or
+		 * Column_1, Column_2... if the sheet has no header row.
+		 */
+		private void addColumns(int numColumns, List<String> names) {
+			HTable headers = worksheet.getHeaders();
+			for (int i = hNodeIds.size(); i < numColumns; i++) {
+				String name;
+				if (names != null) {
+					name = names.get(i) == null ? "" : names.get(i);
+				} else {
+					name = hasHeaderRow ? "" : "Column_" + (i + 1);
+				}
+				HNode hNode = headers.addHNode(name, worksheet, workspace.getFactory());
+				hNodeIds.add(hNode.getId());
+			}
+		}
+	}
+}
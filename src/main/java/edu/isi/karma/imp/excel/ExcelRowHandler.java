@@ -0,0 +1,45 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.excel;
+
+import java.util.List;
+
+/**
+ * Receives the rows of the sheets of a workbook as they are read.
+ */
+interface ExcelRowHandler {
+
+	void startSheet(String sheetName);
+
+	/**
+	 * @param rowIndex
+	 *            the index of the row in the sheet, starting at 0
+	 * @param cells
+	 *            the formatted values of the cells, indexed by column, null for
+	 *            the missing cells
+	 * @return false if the remaining rows of the sheet are not needed
+	 */
+	boolean addRow(int rowIndex, List<String> cells);
+
+	void endSheet();
+}
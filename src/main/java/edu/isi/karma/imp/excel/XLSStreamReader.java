@@ -0,0 +1,220 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.excel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+/**
+ * Reads the sheets of an .xls workbook with the HSSF event model: the records of
+ * the workbook stream are handled one at a time and a row is passed on as soon
+ * as its last cell is read. The sheets follow each other in the stream, so the
+ * reading is aborted once the last sheet has all the rows it needs.
+ */
+class XLSStreamReader implements HSSFListener {
+
+	private final ExcelRowHandler rowHandler;
+	private FormatTrackingHSSFListener formatListener;
+	private SSTRecord sstRecord;
+
+	// The names of the sheets, in the order of their substreams
+	private final List<String> sheetNames = new ArrayList<String>();
+	private int sheetIndex = -1;
+	// Nesting of the BOF and EOF records, the charts of a sheet are nested in it
+	private int depth = 0;
+	private boolean inWorksheet = false;
+	private boolean skipRows = false;
+	// The last sheet has all its rows, the rest of the stream is not needed
+	private boolean done = false;
+
+	private List<String> cells = new ArrayList<String>();
+	// The column of the formula whose string value is in the next StringRecord
+	private int stringFormulaColumn = -1;
+
+	XLSStreamReader(ExcelRowHandler rowHandler) {
+		this.rowHandler = rowHandler;
+	}
+
+	void read(InputStream is) throws IOException {
+		POIFSFileSystem fs = new POIFSFileSystem(is);
+		formatListener = new FormatTrackingHSSFListener(new MissingRecordAwareHSSFListener(this));
+		HSSFRequest request = new HSSFRequest();
+		request.addListenerForAllRecords(formatListener);
+		// Called after the other listener for every record
+		request.addListenerForAllRecords(new AbortableHSSFListener() {
+			@Override
+			public short abortableProcessRecord(Record record) {
+				// A non-zero code aborts the processing
+				return (short) (done ? 1 : 0);
+			}
+		});
+		try {
+			new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+		} catch (HSSFUserException e) {
+			throw new IOException("Error in reading the Excel file: " + e.getMessage());
+		}
+		if (inWorksheet) {
+			// Aborted before the end of the last sheet
+			inWorksheet = false;
+			rowHandler.endSheet();
+		}
+	}
+
+	@Override
+	public void processRecord(Record record) {
+		switch (record.getSid()) {
+		case BoundSheetRecord.sid:
+			sheetNames.add(((BoundSheetRecord) record).getSheetname());
+			break;
+		case BOFRecord.sid:
+			BOFRecord bof = (BOFRecord) record;
+			if (depth == 0 && bof.getType() != BOFRecord.TYPE_WORKBOOK) {
+				// A sheet, chart sheet or macro sheet
+				sheetIndex++;
+				if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+					inWorksheet = true;
+					skipRows = false;
+					rowHandler.startSheet(sheetIndex < sheetNames.size()
+							? sheetNames.get(sheetIndex) : "Sheet" + (sheetIndex + 1));
+				}
+			}
+			depth++;
+			break;
+		case EOFRecord.sid:
+			depth--;
+			if (depth == 0 && inWorksheet) {
+				inWorksheet = false;
+				rowHandler.endSheet();
+			}
+			break;
+		case SSTRecord.sid:
+			sstRecord = (SSTRecord) record;
+			break;
+		default:
+			if (inWorksheet && depth == 1 && !skipRows) {
+				processCellRecord(record);
+			}
+		}
+	}
+
+	private void processCellRecord(Record record) {
+		switch (record.getSid()) {
+		case BlankRecord.sid:
+			BlankRecord blank = (BlankRecord) record;
+			setCell(blank.getColumn(), "");
+			break;
+		case BoolErrRecord.sid:
+			BoolErrRecord boolErr = (BoolErrRecord) record;
+			setCell(boolErr.getColumn(), boolErr.isBoolean()
+					? formatBoolean(boolErr.getBooleanValue())
+					: formatError(boolErr.getErrorValue()));
+			break;
+		case FormulaRecord.sid:
+			FormulaRecord formula = (FormulaRecord) record;
+			if (formula.hasCachedResultString()) {
+				stringFormulaColumn = formula.getColumn();
+				setCell(formula.getColumn(), "");
+			} else if (formula.getCachedResultType() == HSSFCell.CELL_TYPE_BOOLEAN) {
+				setCell(formula.getColumn(), formatBoolean(formula.getCachedBooleanValue()));
+			} else if (formula.getCachedResultType() == HSSFCell.CELL_TYPE_ERROR) {
+				setCell(formula.getColumn(), formatError(formula.getCachedErrorValue()));
+			} else {
+				setCell(formula.getColumn(), formatListener.formatNumberDateCell(formula));
+			}
+			break;
+		case StringRecord.sid:
+			if (stringFormulaColumn >= 0) {
+				setCell(stringFormulaColumn, ((StringRecord) record).getString());
+				stringFormulaColumn = -1;
+			}
+			break;
+		case LabelRecord.sid:
+			LabelRecord label = (LabelRecord) record;
+			setCell(label.getColumn(), label.getValue());
+			break;
+		case LabelSSTRecord.sid:
+			LabelSSTRecord labelSST = (LabelSSTRecord) record;
+			setCell(labelSST.getColumn(), sstRecord == null ? ""
+					: sstRecord.getString(labelSST.getSSTIndex()).toString());
+			break;
+		case NumberRecord.sid:
+			NumberRecord number = (NumberRecord) record;
+			setCell(number.getColumn(), formatListener.formatNumberDateCell(number));
+			break;
+		default:
+			if (record instanceof LastCellOfRowDummyRecord) {
+				if (!cells.isEmpty()) {
+					int row = ((LastCellOfRowDummyRecord) record).getRow();
+					skipRows = !rowHandler.addRow(row, cells);
+					done = skipRows && sheetIndex == sheetNames.size() - 1;
+					cells = new ArrayList<String>();
+				}
+			}
+		}
+	}
+
+	private void setCell(int column, String value) {
+		while (cells.size() <= column) {
+			cells.add(null);
+		}
+		cells.set(column, value);
+	}
+
+	private static String formatBoolean(boolean value) {
+		return value ? "TRUE" : "FALSE";
+	}
+
+	private static String formatError(int errorCode) {
+		try {
+			return FormulaError.forInt((byte) errorCode).getString();
+		} catch (IllegalArgumentException e) {
+			return "#ERR" + errorCode;
+		}
+	}
+}
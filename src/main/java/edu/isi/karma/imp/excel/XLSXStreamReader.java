@@ -0,0 +1,237 @@
+/**
+ * *****************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * This code was developed by the Information Integration Group as part of the
+ * Karma project at the Information Sciences Institute of the University of
+ * Southern California. For more information, publications, and related
+ * projects, please see: http://www.isi.edu/integration
+ * ****************************************************************************
+ */
+package edu.isi.karma.imp.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Reads the sheets of an .xlsx workbook with a SAX parser over their XML parts.
+ * Only the shared strings table and the styles are loaded in memory.
+ */
+class XLSXStreamReader {
+
+	private final ExcelRowHandler rowHandler;
+	private final DataFormatter formatter = new DataFormatter(true);
+
+	XLSXStreamReader(ExcelRowHandler rowHandler) {
+		this.rowHandler = rowHandler;
+	}
+
+	void read(File excelFile) throws IOException, KarmaException {
+		OPCPackage pkg;
+		try {
+			pkg = OPCPackage.open(excelFile.getPath(), PackageAccess.READ);
+		} catch (OpenXML4JException e) {
+			throw new KarmaException("Error in opening the Excel file: " + e.getMessage());
+		}
+		try {
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			StylesTable styles = reader.getStylesTable();
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+			while (sheets.hasNext()) {
+				InputStream sheet = sheets.next();
+				try {
+					rowHandler.startSheet(sheets.getSheetName());
+					readSheet(sheet, new SheetHandler(styles, strings));
+					rowHandler.endSheet();
+				} finally {
+					sheet.close();
+				}
+			}
+		} catch (OpenXML4JException e) {
+			throw new KarmaException("Error in reading the Excel file: " + e.getMessage());
+		} catch (SAXException e) {
+			throw new KarmaException("Error in reading the Excel file: " + e.getMessage());
+		} finally {
+			pkg.revert();
+		}
+	}
+
+	private void readSheet(InputStream sheet, SheetHandler handler)
+			throws IOException, SAXException {
+		try {
+			XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+			parser.setContentHandler(handler);
+			parser.parse(new InputSource(sheet));
+		} catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		} catch (EnoughRowsException e) {
+			// The rest of the sheet is not needed
+		}
+	}
+
+	/**
+	 * Thrown by the handler to stop the parsing of a sheet.
+	 */
+	private static class EnoughRowsException extends SAXException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private enum CellType {
+		BOOLEAN, ERROR, FORMULA_STRING, INLINE_STRING, SHARED_STRING, NUMBER
+	}
+
+	private class SheetHandler extends DefaultHandler {
+
+		private final StylesTable styles;
+		private final ReadOnlySharedStringsTable strings;
+
+		private final StringBuilder value = new StringBuilder();
+		private boolean inValue;
+		private List<String> cells;
+		private int rowIndex;
+		private int column;
+		private CellType cellType;
+		private int formatIndex;
+		private String formatString;
+
+		SheetHandler(StylesTable styles, ReadOnlySharedStringsTable strings) {
+			this.styles = styles;
+			this.strings = strings;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String name,
+				Attributes attributes) throws SAXException {
+			if ("row".equals(name)) {
+				cells = new ArrayList<String>();
+				String r = attributes.getValue("r");
+				rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+			} else if ("c".equals(name)) {
+				String r = attributes.getValue("r");
+				column = r != null ? new CellReference(r).getCol() : cells.size();
+				startCell(attributes.getValue("t"), attributes.getValue("s"));
+			} else if ("v".equals(name) || "t".equals(name)) {
+				// The value of a cell, or the text of an inline string
+				inValue = true;
+				if ("v".equals(name)) {
+					value.setLength(0);
+				}
+			} else if ("is".equals(name)) {
+				value.setLength(0);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String name)
+				throws SAXException {
+			if ("v".equals(name) || "t".equals(name)) {
+				inValue = false;
+			} else if ("c".equals(name)) {
+				while (cells.size() <= column) {
+					cells.add(null);
+				}
+				cells.set(column, formatValue(value.toString()));
+				value.setLength(0);
+			} else if ("row".equals(name)) {
+				if (!rowHandler.addRow(rowIndex, cells)) {
+					throw new EnoughRowsException();
+				}
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (inValue) {
+				value.append(ch, start, length);
+			}
+		}
+
+		private void startCell(String type, String style) {
+			value.setLength(0);
+			formatIndex = -1;
+			formatString = null;
+			if ("b".equals(type)) {
+				cellType = CellType.BOOLEAN;
+			} else if ("e".equals(type)) {
+				cellType = CellType.ERROR;
+			} else if ("inlineStr".equals(type)) {
+				cellType = CellType.INLINE_STRING;
+			} else if ("s".equals(type)) {
+				cellType = CellType.SHARED_STRING;
+			} else if ("str".equals(type)) {
+				cellType = CellType.FORMULA_STRING;
+			} else {
+				cellType = CellType.NUMBER;
+				if (style != null) {
+					XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+					formatIndex = cellStyle.getDataFormat();
+					formatString = cellStyle.getDataFormatString();
+					if (formatString == null) {
+						formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Formats the value like the DataFormatter does for the cells of a workbook.
+		 */
+		private String formatValue(String raw) {
+			if (raw.length() == 0) {
+				return "";
+			}
+			switch (cellType) {
+			case BOOLEAN:
+				return raw.charAt(0) == '0' ? "FALSE" : "TRUE";
+			case SHARED_STRING:
+				return strings.getEntryAt(Integer.parseInt(raw));
+			case NUMBER:
+				if (formatString != null) {
+					return formatter.formatRawCellContents(Double.parseDouble(raw),
+							formatIndex, formatString);
+				}
+				return formatter.formatRawCellContents(Double.parseDouble(raw), 0, "General");
+			default:
+				// Inline strings, errors and the cached results of string formulas
+				return raw;
+			}
+		}
+	}
+}
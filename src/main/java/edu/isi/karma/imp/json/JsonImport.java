@@ -25,10 +25,10 @@
  */
 package edu.isi.karma.imp.json;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -40,6 +40,9 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import edu.isi.karma.imp.Import;
 import edu.isi.karma.rep.ColumnMetadata.DataStructure;
 import edu.isi.karma.rep.HNode;
@@ -52,7 +55,7 @@ import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
 import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
-import edu.isi.karma.util.FileUtil;
+import edu.isi.karma.util.EncodingDetector;
 import edu.isi.karma.util.JSONUtil;
 
 /**
@@ -64,6 +67,11 @@ public class JsonImport extends Import {
 
 	private static Logger logger = LoggerFactory.getLogger(JsonImport.class);
 	private final Object json;
+	private File jsonFile;
+	private String encoding;
+	private JsonReader reader;
+	private int maxNumRecords = -1;
+	private int numRecords;
 	private int maxNumLines;
 	private int numObjects;
 
@@ -74,22 +82,35 @@ public class JsonImport extends Import {
 		this.maxNumLines = maxNumLines;
 	}
 
+	/**
+	 * Streams the file instead of parsing it into JSON objects first. A file with
+	 * several top level values, e.g. JSON lines, is imported as a collection with
+	 * a row for each value.
+	 */
 	public JsonImport(File jsonFile, String worksheetName, Workspace workspace,
 			String encoding, int maxNumLines) {
 		super(worksheetName, workspace, encoding);
-
-		String fileContents = null;
-		try {
-			fileContents = FileUtil
-					.readFileContentsToString(jsonFile, encoding);
-		} catch (IOException ex) {
-			logger.error("Error in reading the JSON file");
-		}
-
-		this.json = JSONUtil.createJson(fileContents);
+		this.json = null;
+		this.jsonFile = jsonFile;
+		this.encoding = encoding;
 		this.maxNumLines = maxNumLines;
 	}
 
+	/**
+	 * Imports the next maxNumRecords values of a reader positioned on a sequence of
+	 * records, i.e. inside a top level array or between the values of a JSON lines
+	 * file. The reader is left after the last record imported, so that the
+	 * following records can be imported into another worksheet.
+	 */
+	public JsonImport(JsonReader reader, String worksheetName, Workspace workspace,
+			String encoding, int maxNumRecords) {
+		super(worksheetName, workspace, encoding);
+		this.json = null;
+		this.reader = reader;
+		this.maxNumRecords = maxNumRecords;
+		this.maxNumLines = -1;
+	}
+
 	public JsonImport(String jsonString, String worksheetName,
 			Workspace workspace, String encoding, int maxNumLines) {
 		this(JSONUtil.createJson(jsonString), worksheetName, workspace,
@@ -111,6 +132,18 @@ public class JsonImport extends Import {
 	@Override
 	public Worksheet generateWorksheet() throws JSONException {
 		numObjects = 0;
+		numRecords = 0;
+		try {
+			if (jsonFile != null) {
+				streamFile();
+			} else if (reader != null) {
+				getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.COLLECTION);
+				streamRecords(reader, maxNumRecords);
+			}
+		} catch (IOException e) {
+			logger.error("Error in reading the JSON", e);
+			throw new JSONException(e);
+		}
 		boolean importJson = false;
 		if (json instanceof JSONArray) {
 			getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.COLLECTION);
@@ -140,7 +173,207 @@ public class JsonImport extends Import {
 		JSONUtil.writeJsonFile(o, "lastJsonImport.json");
 	}
 
-	private void addObjectElement(String key, Object value, HTable headers,
+	/**
+	 * @return the number of top level values imported from the file or the reader
+	 */
+	public int getNumRecords() {
+		return numRecords;
+	}
+
+	private void streamFile() throws IOException {
+		JsonReader fileReader = new JsonReader(new BufferedReader(
+				EncodingDetector.getInputStreamReader(jsonFile, encoding)));
+		// Allows several top level values
+		fileReader.setLenient(true);
+		try {
+			JsonToken token;
+			try {
+				token = fileReader.peek();
+			} catch (EOFException e) {
+				logger.error("The JSON file is empty: " + jsonFile.getName());
+				return;
+			}
+			if (token == JsonToken.BEGIN_ARRAY) {
+				getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.COLLECTION);
+				fileReader.beginArray();
+				streamRecords(fileReader, -1);
+				return;
+			}
+
+			if (token == JsonToken.BEGIN_OBJECT) {
+				getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.OBJECT);
+				streamKeysAndValues(fileReader, getWorksheet().getHeaders(),
+						getWorksheet().getDataTable());
+			} else {
+				streamListElement(fileReader, getWorksheet().getHeaders(),
+						getWorksheet().getDataTable());
+			}
+			numRecords++;
+			if (fileReader.peek() != JsonToken.END_DOCUMENT) {
+				getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.COLLECTION);
+				streamRecords(fileReader, -1);
+			}
+		} finally {
+			fileReader.close();
+		}
+	}
+
+	private void streamRecords(JsonReader reader, int maxNumRecords) throws IOException {
+		HTable headers = getWorksheet().getHeaders();
+		Table dataTable = getWorksheet().getDataTable();
+		while (maxNumRecords <= 0 || numRecords < maxNumRecords) {
+			JsonToken token = reader.peek();
+			if (token == JsonToken.END_ARRAY || token == JsonToken.END_DOCUMENT
+					|| isMaxNumLinesReached())
+				break;
+			streamListElement(reader, headers, dataTable);
+			numRecords++;
+		}
+	}
+
+	/*
+	 * The stream* methods import the next value of the reader in the same way as
+	 * the methods for the JSON objects, except that the columns are added in the
+	 * order of the keys in the file instead of the sorted order.
+	 */
+
+	private void streamObjectElement(String key, JsonReader reader, HTable headers,
+			Row row) throws IOException {
+		HNode hNode = addHNode(headers, key, DataStructure.OBJECT);
+		String hNodeId = hNode.getId();
+
+		switch (reader.peek()) {
+		case STRING:
+			String value = reader.nextString();
+			if (value.isEmpty() && hNode.hasNestedTable()) {
+				addEmptyRow(row.getNode(hNodeId).getNestedTable(), hNode);
+			}
+			row.setValue(hNodeId, value, getFactory());
+			break;
+		case NUMBER:
+		case BOOLEAN:
+			row.setValue(hNodeId, nextPrimitiveValue(reader), getFactory());
+			break;
+		case BEGIN_OBJECT:
+			if (!isMaxNumLinesReached()) {
+				HTable nestedHTable = addNestedHTable(hNode, key, row);
+				Table nestedTable = row.getNode(hNodeId).getNestedTable();
+				streamKeysAndValues(reader, nestedHTable, nestedTable);
+			} else {
+				reader.skipValue();
+			}
+			break;
+		case BEGIN_ARRAY:
+			if (!isMaxNumLinesReached()) {
+				HTable nestedHTable = addNestedHTable(hNode, key, row);
+				Table nestedTable = row.getNode(hNodeId).getNestedTable();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					streamListElement(reader, nestedHTable, nestedTable);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+			break;
+		case NULL:
+			reader.nextNull();
+			break;
+		default:
+			throw new IOException("Unexpected " + reader.peek() + " for " + key);
+		}
+	}
+
+	private void streamKeysAndValues(JsonReader reader, HTable nestedHTable,
+			Table nestedTable) throws IOException {
+		if (isMaxNumLinesReached()) {
+			reader.skipValue();
+			return;
+		}
+
+		Row nestedRow = nestedTable.addRow(getFactory());
+		numObjects++;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String nestedKey = reader.nextName();
+			streamObjectElement(nestedKey, reader, nestedHTable, nestedRow);
+		}
+		reader.endObject();
+	}
+
+	private void streamListElement(JsonReader reader, HTable headers,
+			Table dataTable) throws IOException {
+		switch (reader.peek()) {
+		case BEGIN_OBJECT:
+			streamKeysAndValues(reader, headers, dataTable);
+			break;
+		case STRING:
+		case NUMBER:
+		case BOOLEAN:
+			HNode valuesHNode = addHNode(headers, HTable.VALUES_COLUMN, DataStructure.PRIMITIVE);
+			Row valuesRow = dataTable.addRow(getFactory());
+			numObjects++;
+			valuesRow.setValue(valuesHNode.getId(), nextPrimitiveValue(reader), getFactory());
+			break;
+		case BEGIN_ARRAY:
+			if (isMaxNumLinesReached()) {
+				reader.skipValue();
+				break;
+			}
+			HNode hNode = addHNode(headers, "nested array", DataStructure.COLLECTION);
+			String hNodeId = hNode.getId();
+			Row row = dataTable.addRow(getFactory());
+			numObjects++;
+			if (isMaxNumLinesReached()) {
+				reader.skipValue();
+				break;
+			}
+			HTable nestedHTable = addNestedHTable(hNode,
+					"nested array values", row);
+			Table nestedTable = row.getNode(hNodeId).getNestedTable();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				streamListElement(reader, nestedHTable, nestedTable);
+			}
+			reader.endArray();
+			break;
+		default:
+			logger.error("Cannot handle " + reader.peek() + " in a JSON array");
+			reader.skipValue();
+		}
+	}
+
+	/**
+	 * Numbers are formatted as org.json does, e.g. 1e3 becomes 1000.0.
+	 */
+	private static String nextPrimitiveValue(JsonReader reader) throws IOException {
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BOOLEAN) {
+			return Boolean.toString(reader.nextBoolean());
+		}
+		String value = reader.nextString();
+		if (token == JsonToken.NUMBER) {
+			return JSONObject.stringToValue(value).toString();
+		}
+		return value;
+	}
+
+	/**
+	 * Adds a row for an object to the table, used by the importers that build the
+	 * worksheet piece by piece such as {@link XMLImport}.
+	 */
+	Row addObjectRow(Table table) {
+		Row row = table.addRow(getFactory());
+		numObjects++;
+		return row;
+	}
+
+	boolean isMaxNumLinesReached() {
+		return maxNumLines > 0 && numObjects >= maxNumLines;
+	}
+
+	void addObjectElement(String key, Object value, HTable headers,
 			Row row) throws JSONException {
 		HNode hNode = addHNode(headers, key, DataStructure.OBJECT);
 
@@ -226,7 +459,7 @@ public class JsonImport extends Import {
 		return it;
 	}
 
-	private void addListElement(Object listValue, HTable headers,
+	void addListElement(Object listValue, HTable headers,
 			Table dataTable) throws JSONException {
 		if (listValue instanceof JSONObject) {
 			if (maxNumLines <= 0 || numObjects < maxNumLines) {
@@ -248,7 +481,7 @@ public class JsonImport extends Import {
 			// TODO, conserve the types of the primitive types.
 			String value = "";
 			if (listValue instanceof String || listValue instanceof Boolean) {
-				value = (String) listValue;
+				value = listValue.toString();
 			} else if (listValue instanceof Double) {
 				value = Double.toString((Double) listValue);
 			} else if (listValue instanceof Integer) {
@@ -290,17 +523,15 @@ public class JsonImport extends Import {
 				|| value instanceof Long;
 	}
 
-	private HTable addNestedHTable(HNode hNode, String key, Row row) {
+	HTable addNestedHTable(HNode hNode, String key, Row row) {
 		HTable ht = hNode.getNestedTable();
 		if (ht == null) {
 			ht = hNode.addNestedTable(createNestedTableName(key),
 					getWorksheet(), getFactory());
 
 			// Check for all the nodes that have value and nested tables
-			Collection<Node> nodes = new ArrayList<Node>();
-			getWorksheet().getDataTable().collectNodes(
-					hNode.getHNodePath(getFactory()), nodes);
-			for (Node node : nodes) {
+			for (Node node : getWorksheet().getDataTable().getColumnNodes(
+					hNode.getHNodePath(getFactory()))) {
 				if (node.getBelongsToRow() == row)
 					break;
 
@@ -314,7 +545,7 @@ public class JsonImport extends Import {
 		return ht;
 	}
 
-	private HNode addHNode(HTable headers, String key, DataStructure dataStructure) {
+	HNode addHNode(HTable headers, String key, DataStructure dataStructure) {
 		HNode hn = headers.getHNodeFromColumnName(key);
 		if (hn == null) {
 			hn = headers.addHNode(key, getWorksheet(), getFactory());
@@ -6,52 +6,296 @@ package edu.isi.karma.imp.json;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.json.XML;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.imp.Import;
+import edu.isi.karma.rep.ColumnMetadata.DataStructure;
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.Row;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
 import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
-import edu.isi.karma.util.FileUtil;
+import edu.isi.karma.util.EncodingDetector;
 import edu.isi.karma.webserver.KarmaException;
 
 /**
+ * Imports an XML file with a StAX parser. The worksheet has the structure of the
+ * JSON produced by {@link XML#toJSONObject(String)}, but the document is never
+ * held in memory: the rows and nested tables are added as the elements are read,
+ * and the reading stops as soon as maxNumLines objects have been imported.
  *
  * @author mielvandersande
  */
 public class XMLImport extends Import {
 
-    Import jsonImport;
     private static Logger logger = LoggerFactory.getLogger(XMLImport.class);
+    private static final String CONTENT_KEY = "content";
+
+    private final File xmlFile;
+    private final String encoding;
+    private final JsonImport jsonImport;
 
     public XMLImport(File xmlFile, String worksheetName, Workspace workspace, String encoding, int maxNumLines) {
         super(worksheetName, workspace, encoding);
-
-        try {
-            String fileContents = FileUtil.readFileContentsToString(xmlFile, encoding);
-
-            // Converting the XML to JSON
-            JSONObject json = XML.toJSONObject(fileContents);
-            jsonImport = new JsonImport(json, this.getFactory(), this.getWorksheet(), maxNumLines);
-        } catch (JSONException ex) {
-            logger.error("Error in populating the worksheet with XML", ex);
-        } catch (IOException ex) {
-            logger.error("Error in reading the XML file", ex);
-        }
+        this.xmlFile = xmlFile;
+        this.encoding = encoding;
+        // Adds the rows and the columns to the worksheet
+        this.jsonImport = new JsonImport((Object) null, this.getFactory(), this.getWorksheet(), maxNumLines);
     }
 
 
     @Override
     public Worksheet generateWorksheet() throws JSONException, IOException, KarmaException, ClassNotFoundException {
-        jsonImport.generateWorksheet();
+        getWorksheet().getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.OBJECT);
+        Reader reader = EncodingDetector.getInputStreamReader(xmlFile, encoding);
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader xml = factory.createXMLStreamReader(reader);
+            try {
+                importDocument(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            logger.error("Error in populating the worksheet with XML", ex);
+            throw new KarmaException("Error in parsing the XML file: " + ex.getMessage());
+        } finally {
+            reader.close();
+        }
         getWorksheet().getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, SourceTypes.XML.toString());
         return getWorksheet();
     }
 
+    private void importDocument(XMLStreamReader xml) throws XMLStreamException, JSONException {
+        // The elements that are not complete yet, the innermost first
+        Deque<Element> elements = new ArrayDeque<Element>();
+        Element document = null;
+        StringBuilder text = new StringBuilder();
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    Element parent = elements.peek();
+                    if (parent == null) {
+                        // The document is an object with the root element as its only key
+                        document = new Element(getWorksheet().getHeaders(),
+                                jsonImport.addObjectRow(getWorksheet().getDataTable()));
+                        parent = document;
+                    } else {
+                        addText(text, parent);
+                        if (jsonImport.isMaxNumLinesReached()) {
+                            endAfterMaxNumLines(elements);
+                            return;
+                        }
+                    }
+                    Element element = new Element(getQualifiedName(xml.getPrefix(), xml.getLocalName()), parent);
+                    addAttributes(xml, element);
+                    elements.push(element);
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    // Text outside of the root element is ignored
+                    if (!elements.isEmpty()) {
+                        text.append(xml.getText());
+                    }
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (!elements.isEmpty()) {
+                        text.append('&').append(xml.getLocalName()).append(';');
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    if (!elements.isEmpty()) {
+                        addText(text, elements.peek());
+                        if (xml.getText().length() > 0) {
+                            elements.peek().addValue(CONTENT_KEY, xml.getText());
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    // Ends the current text like the JSON conversion does
+                    if (!elements.isEmpty()) {
+                        addText(text, elements.peek());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT: {
+                    Element element = elements.pop();
+                    addText(text, element);
+                    element.end();
+                    if (elements.isEmpty()) {
+                        document.end();
+                        return;
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Completes the rows added so far and leaves out the rest of the document.
+     */
+    private void endAfterMaxNumLines(Deque<Element> elements) throws JSONException {
+        for (Element element : elements) {
+            if (element.row != null) {
+                element.addPendingValues();
+            }
+        }
+    }
+
+    /**
+     * Adds the text read since the last tag as content of the current element.
+     */
+    private void addText(StringBuilder text, Element element) throws JSONException {
+        String content = text.toString().trim();
+        text.setLength(0);
+        if (content.length() > 0) {
+            element.addValue(CONTENT_KEY, XML.stringToValue(content));
+        }
+    }
+
+    private void addAttributes(XMLStreamReader xml, Element element) throws JSONException {
+        for (int i = 0; i < xml.getNamespaceCount(); i++) {
+            element.addValue(getQualifiedName("xmlns", xml.getNamespacePrefix(i)),
+                    XML.stringToValue(xml.getNamespaceURI(i)));
+        }
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            element.addValue(getQualifiedName(xml.getAttributePrefix(i), xml.getAttributeLocalName(i)),
+                    XML.stringToValue(xml.getAttributeValue(i)));
+        }
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        if (localName == null || localName.isEmpty()) {
+            return prefix;
+        }
+        return prefix + ":" + localName;
+    }
+
+    /**
+     * An element that is being read. The JSON conversion turns an element into an
+     * object, unless it has no attributes and no children, in which case it is its
+     * text or an empty string. So the row of an element is only added once it has a
+     * child element, a repeated key or a second key, and the text values are kept
+     * until then.
+     *
+     * A key is a list if it is repeated, which is only known once a second value is
+     * read, so the first text value of every key is kept until then or until the end
+     * of the element. Objects are added right away as they give the same rows
+     * whether they are in a list or not.
+     */
+    private class Element {
+        final String name;
+        final Element parent;
+        final Set<String> childNames = new HashSet<String>();
+        final Map<String, Object> pendingValues = new LinkedHashMap<String, Object>();
+        HTable headers;
+        Row row;
+
+        Element(String name, Element parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /**
+         * The document itself, whose row is the top row of the worksheet.
+         */
+        Element(HTable headers, Row row) {
+            this.name = null;
+            this.parent = null;
+            this.headers = headers;
+            this.row = row;
+        }
+
+        void addValue(String key, Object value) throws JSONException {
+            if (childNames.add(key)) {
+                pendingValues.put(key, value);
+            } else {
+                HNode hNode = addNestedTable(key);
+                jsonImport.addListElement(value, hNode.getNestedTable(),
+                        getRow().getNode(hNode.getId()).getNestedTable());
+            }
+        }
+
+        /**
+         * Adds the column of the key with its nested table, which gets the first value
+         * of the key if the key turns out to be a list.
+         */
+        HNode addNestedTable(String key) throws JSONException {
+            childNames.add(key);
+            HNode hNode = jsonImport.addHNode(getHeaders(), key, DataStructure.OBJECT);
+            HTable nestedHeaders = jsonImport.addNestedHTable(hNode, key, getRow());
+            Object pending = pendingValues.remove(key);
+            if (pending != null) {
+                jsonImport.addListElement(pending, nestedHeaders,
+                        getRow().getNode(hNode.getId()).getNestedTable());
+            }
+            return hNode;
+        }
+
+        void end() throws JSONException {
+            if (row == null && parent != null) {
+                // The element has text only or is empty
+                if (pendingValues.isEmpty()) {
+                    parent.addValue(name, "");
+                    return;
+                }
+                if (pendingValues.size() == 1 && pendingValues.containsKey(CONTENT_KEY)) {
+                    parent.addValue(name, pendingValues.get(CONTENT_KEY));
+                    return;
+                }
+            }
+            addPendingValues();
+        }
+
+        void addPendingValues() throws JSONException {
+            for (Entry<String, Object> pending : pendingValues.entrySet()) {
+                jsonImport.addObjectElement(pending.getKey(), pending.getValue(), getHeaders(), getRow());
+            }
+            pendingValues.clear();
+        }
+
+        private HTable getHeaders() throws JSONException {
+            getRow();
+            return headers;
+        }
+
+        private Row getRow() throws JSONException {
+            if (row == null) {
+                HNode hNode = parent.addNestedTable(name);
+                headers = hNode.getNestedTable();
+                row = jsonImport.addObjectRow(parent.getRow().getNode(hNode.getId()).getNestedTable());
+            }
+            return row;
+        }
+    }
 }
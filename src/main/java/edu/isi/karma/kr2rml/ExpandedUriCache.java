@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.kr2rml;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Expanded and normalized URIs by their unexpanded value, the least recently used
+ * are evicted. Not thread-safe: the rows processed in parallel each get their own
+ * cache, so that the workers do not contend on a lock.
+ */
+class ExpandedUriCache {
+
+	private final Map<String, String> expandedUris;
+	private long hits = 0;
+	private long misses = 0;
+
+	ExpandedUriCache(final int maxSize) {
+		this.expandedUris = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the expanded URI, or null if it is not in the cache
+	 */
+	String get(String uri) {
+		String expandedUri = expandedUris.get(uri);
+		if (expandedUri != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return expandedUri;
+	}
+
+	void put(String uri, String expandedUri) {
+		expandedUris.put(uri, expandedUri);
+	}
+
+	int size() {
+		return expandedUris.size();
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+}
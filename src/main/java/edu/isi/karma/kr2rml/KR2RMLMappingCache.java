@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.kr2rml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Keeps the parsed {@link KR2RMLMapping} of every model, so that the model is loaded 
+ * into Jena and parsed once instead of once per worksheet or batch. Models stored in 
+ * files are checked for changes before a cached mapping is returned: if the size or the 
+ * modification time of the file changed and its content hash is different, the model is 
+ * parsed again. Models at other locations are assumed not to change until 
+ * {@link #invalidate(R2RMLMappingIdentifier)} is called.
+ * 
+ * The returned mappings are shared between all the callers, including concurrent ones, 
+ * and must not be modified.
+ */
+public class KR2RMLMappingCache {
+
+	private static Logger logger = LoggerFactory.getLogger(KR2RMLMappingCache.class);
+	
+	private static KR2RMLMappingCache instance = new KR2RMLMappingCache();
+	
+	private final ConcurrentHashMap<R2RMLMappingIdentifier, CachedMapping> mappings = 
+			new ConcurrentHashMap<R2RMLMappingIdentifier, CachedMapping>();
+	
+	public static KR2RMLMappingCache getInstance() {
+		return instance;
+	}
+	
+	public KR2RMLMapping getMapping(R2RMLMappingIdentifier id) 
+			throws IOException, KarmaException, JSONException {
+		CachedMapping cached = mappings.get(id);
+		if (cached != null && !hasFileChanged(id, cached)) {
+			return cached.mapping;
+		}
+		synchronized (this) {
+			// Another thread may have loaded the model in the meantime
+			cached = mappings.get(id);
+			if (cached != null && !hasFileChanged(id, cached)) {
+				return cached.mapping;
+			}
+			
+			File file = getFile(id);
+			long lastModified = file != null ? file.lastModified() : 0;
+			long length = file != null ? file.length() : 0;
+			byte[] content = readModel(id);
+			byte[] contentHash = computeHash(content);
+			
+			if (cached != null && Arrays.equals(cached.contentHash, contentHash)) {
+				// Touched but not modified
+				cached = new CachedMapping(cached.mapping, contentHash, lastModified, length);
+			} else {
+				logger.info("Parsing model " + id.getName() + " from " + id.getLocation());
+				WorksheetR2RMLJenaModelParser parser = new WorksheetR2RMLJenaModelParser(id, 
+						WorksheetR2RMLJenaModelParser.loadSourceModelIntoJenaModel(
+								new ByteArrayInputStream(content)));
+				cached = new CachedMapping(parser.parse(), contentHash, lastModified, length);
+			}
+			mappings.put(id, cached);
+			return cached.mapping;
+		}
+	}
+	
+	public void invalidate(R2RMLMappingIdentifier id) {
+		mappings.remove(id);
+	}
+	
+	public void clear() {
+		mappings.clear();
+	}
+	
+	private boolean hasFileChanged(R2RMLMappingIdentifier id, CachedMapping cached) {
+		File file = getFile(id);
+		if (file == null) {
+			return false;
+		}
+		return file.lastModified() != cached.lastModified || file.length() != cached.length;
+	}
+	
+	/**
+	 * @return the file of the model, or null if the model is not stored in a local file.
+	 */
+	private File getFile(R2RMLMappingIdentifier id) {
+		if (id.getLocation() == null || !"file".equals(id.getLocation().getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(id.getLocation().toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	private byte[] readModel(R2RMLMappingIdentifier id) throws IOException {
+		InputStream in = id.getLocation().openStream();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+	private byte[] computeHash(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static class CachedMapping {
+		private final KR2RMLMapping mapping;
+		private final byte[] contentHash;
+		private final long lastModified;
+		private final long length;
+		
+		CachedMapping(KR2RMLMapping mapping, byte[] contentHash, long lastModified, long length) {
+			this.mapping = mapping;
+			this.contentHash = contentHash;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
@@ -30,7 +30,7 @@ public class KR2RMLMappingColumnNameHNodeTranslator {
 		this.populateHNodeIdAndColumnNameMaps();
 	}
 	
-	public String getColumnNameForHNodeId(String hNodeId)
+	public synchronized String getColumnNameForHNodeId(String hNodeId)
 	{
 		if(!this.hNodeIdToColumnName.containsKey(hNodeId))
 		{
@@ -89,7 +89,7 @@ public class KR2RMLMappingColumnNameHNodeTranslator {
 			}
 		}
 	}
-	public String getHNodeIdForColumnName(String templateTermValue) throws HNodeNotFoundKarmaException {
+	public synchronized String getHNodeIdForColumnName(String templateTermValue) throws HNodeNotFoundKarmaException {
 		if(!this.columnNameToHNodeId.containsKey(templateTermValue))
 		{
 			try {
@@ -129,6 +129,10 @@ public class KR2RMLMappingColumnNameHNodeTranslator {
     	} else {
     		HNode hNode = hTable.getHNodeFromColumnName(colTermVal);
     		logger.debug("Column" +colTermVal);
+    		if(hNode == null) {
+    			logger.error("Error retrieving column: " + colTermVal);
+    			return null;
+    		}
     		return hNode.getId();
     	}
     	return null;
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.kr2rml;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Worksheet;
+
+/**
+ * Precomputed form of a {@link KR2RMLMapping} for the columns of one worksheet.
+ * Everything the RDF generator needs to know per cell that depends only on the
+ * hNode id (the triples maps to start the traversal from, the neighboring links
+ * of each triples map, and the hNode ids behind the column terms of every template)
+ * is resolved once when the plan is created, so the row loop only has to
+ * read the cell values. The plan is not modified after construction and can be
+ * shared by the threads generating the RDF.
+ */
+public class KR2RMLMappingExecutionPlan {
+
+	private final Map<String, TriplesMapPlan[]> hNodeIdToTriplesMapPlans;
+	private final Map<String, TriplesMapPlan> triplesMapPlans;
+	private final Map<String, SubjectMapPlan> subjectMapPlans;
+
+	private final KR2RMLMapping kr2rmlMapping;
+	private final KR2RMLMappingColumnNameHNodeTranslator translator;
+	private final RepFactory factory;
+
+	public KR2RMLMappingExecutionPlan(KR2RMLMapping kr2rmlMapping, Worksheet worksheet,
+			RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator) {
+		this.kr2rmlMapping = kr2rmlMapping;
+		this.translator = translator;
+		this.factory = factory;
+		this.hNodeIdToTriplesMapPlans = new HashMap<String, TriplesMapPlan[]>();
+		this.triplesMapPlans = new HashMap<String, TriplesMapPlan>();
+		this.subjectMapPlans = new HashMap<String, SubjectMapPlan>();
+		compileColumns(worksheet.getHeaders());
+	}
+
+	/**
+	 * @return the triples maps from which the traversal starts for the cells of the
+	 * given column, or null if the column is not used in the mapping
+	 */
+	TriplesMapPlan[] getTriplesMapPlansForHNodeId(String hNodeId) {
+		return hNodeIdToTriplesMapPlans.get(hNodeId);
+	}
+
+	private void compileColumns(HTable hTable) {
+		for (HNode hNode : hTable.getHNodes()) {
+			if (hNode.hasNestedTable()) {
+				compileColumns(hNode.getNestedTable());
+				continue;
+			}
+			String columnName = translator.getColumnNameForHNodeId(hNode.getId());
+			List<PredicateObjectMap> pomList = kr2rmlMapping.getAuxInfo()
+					.getColumnNameToPredObjLinks().get(columnName);
+			if (pomList == null || pomList.isEmpty())
+				continue;
+
+			TriplesMapPlan[] startingPlans = new TriplesMapPlan[pomList.size()];
+			for (int i = 0; i < pomList.size(); i++) {
+				startingPlans[i] = getTriplesMapPlan(pomList.get(i).getTriplesMap());
+			}
+			hNodeIdToTriplesMapPlans.put(hNode.getId(), startingPlans);
+		}
+	}
+
+	private TriplesMapPlan getTriplesMapPlan(TriplesMap trMap) {
+		TriplesMapPlan plan = triplesMapPlans.get(trMap.getId());
+		if (plan != null)
+			return plan;
+
+		plan = new TriplesMapPlan(trMap);
+		// Register before compiling the links as the graph has cycles
+		triplesMapPlans.put(trMap.getId(), plan);
+
+		List<PredicateObjectMap> poms = trMap.getPredicateObjectMaps();
+		plan.predicateObjectMaps = new PredicateObjectMapPlan[poms.size()];
+		for (int i = 0; i < poms.size(); i++) {
+			plan.predicateObjectMaps[i] = new PredicateObjectMapPlan(poms.get(i));
+		}
+
+		List<TriplesMapLink> links = kr2rmlMapping.getAuxInfo().getTriplesMapGraph()
+				.getAllNeighboringTriplesMap(trMap.getId());
+		plan.links = new TriplesMapLinkPlan[links.size()];
+		for (int i = 0; i < links.size(); i++) {
+			TriplesMapLink link = links.get(i);
+			plan.links[i] = new TriplesMapLinkPlan(
+					link.getPredicateObjectMapLink().getPredicate().getId(),
+					getTriplesMapPlan(link.getSourceMap()),
+					getTriplesMapPlan(link.getTargetMap()));
+		}
+		return plan;
+	}
+
+	private SubjectMapPlan getSubjectMapPlan(SubjectMap subjMap) {
+		SubjectMapPlan plan = subjectMapPlans.get(subjMap.getId());
+		if (plan == null) {
+			plan = new SubjectMapPlan(subjMap);
+			subjectMapPlans.put(subjMap.getId(), plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the hNode id of the column or null if the column can not be found
+	 * in the worksheet.
+	 */
+	private String resolveHNodeId(String columnName) {
+		try {
+			return translator.getHNodeIdForColumnName(columnName);
+		} catch (HNodeNotFoundKarmaException e) {
+			return null;
+		}
+	}
+
+	class TriplesMapPlan {
+		final String id;
+		final boolean isSteinerTreeRootNode;
+		PredicateObjectMapPlan[] predicateObjectMaps;
+		TriplesMapLinkPlan[] links;
+
+		TriplesMapPlan(TriplesMap trMap) {
+			this.id = trMap.getId();
+			this.isSteinerTreeRootNode = trMap.getSubject().isSteinerTreeRootNode();
+		}
+	}
+
+	static class TriplesMapLinkPlan {
+		final String predicateId;
+		final TriplesMapPlan sourceMap;
+		final TriplesMapPlan targetMap;
+
+		TriplesMapLinkPlan(String predicateId, TriplesMapPlan sourceMap, TriplesMapPlan targetMap) {
+			this.predicateId = predicateId;
+			this.sourceMap = sourceMap;
+			this.targetMap = targetMap;
+		}
+	}
+
+	class PredicateObjectMapPlan {
+		final PredicateObjectMap pom;
+		final String predicateId;
+		final SubjectMapPlan subject;
+		final TemplateTermSetPlan predicate;
+
+		// Set for object properties
+		final SubjectMapPlan refObjectSubject;
+
+		// Set for data properties
+		final TemplateTermSetPlan object;
+		final String rdfLiteralType;
+		final String objectValueHNodeId;
+		final boolean isSingleColumnObject;
+
+		PredicateObjectMapPlan(PredicateObjectMap pom) {
+			this.pom = pom;
+			this.predicateId = pom.getPredicate().getId();
+			this.subject = getSubjectMapPlan(pom.getTriplesMap().getSubject());
+			this.predicate = new TemplateTermSetPlan(pom.getPredicate().getTemplate(), translator);
+
+			ObjectMap objMap = pom.getObject();
+			if (objMap.hasRefObjectMap()) {
+				this.refObjectSubject = getSubjectMapPlan(
+						objMap.getRefObjectMap().getParentTriplesMap().getSubject());
+				this.object = null;
+				this.rdfLiteralType = "";
+				this.objectValueHNodeId = null;
+				this.isSingleColumnObject = false;
+			} else {
+				this.refObjectSubject = null;
+				TemplateTermSet objTemplate = objMap.getTemplate();
+				this.object = new TemplateTermSetPlan(objTemplate, translator);
+				TemplateTermSet rdfLiteralTypeTermSet = objMap.getRdfLiteralType();
+				this.rdfLiteralType = rdfLiteralTypeTermSet != null ?
+						rdfLiteralTypeTermSet.getR2rmlTemplateString(factory) : "";
+				this.isSingleColumnObject = objTemplate.isSingleColumnTerm();
+				this.objectValueHNodeId = isSingleColumnObject ?
+						resolveHNodeId(objTemplate.getAllTerms().get(0).getTemplateTermValue()) : null;
+			}
+		}
+	}
+
+	class SubjectMapPlan {
+		final String id;
+		final boolean isBlankNode;
+		final TemplateTermSetPlan template;
+		final TemplateTermSetPlan[] rdfsTypes;
+
+		// Set for blank nodes
+		final String blankNodeUriPrefix;
+		final String[] blankNodeColumnNames;
+		final String[] blankNodeHNodeIds;
+
+		SubjectMapPlan(SubjectMap subjMap) {
+			this.id = subjMap.getId();
+			this.isBlankNode = subjMap.isBlankNode();
+			// The published models have no template for the blank nodes
+			this.template = isBlankNode ? null : new TemplateTermSetPlan(subjMap.getTemplate(), translator);
+
+			List<TemplateTermSet> types = subjMap.getRdfsType();
+			this.rdfsTypes = new TemplateTermSetPlan[types.size()];
+			for (int i = 0; i < types.size(); i++) {
+				rdfsTypes[i] = new TemplateTermSetPlan(types.get(i), translator);
+			}
+
+			if (isBlankNode) {
+				String prefix = kr2rmlMapping.getAuxInfo().getBlankNodesUriPrefixMap().get(id);
+				this.blankNodeUriPrefix = KR2RMLWorksheetRDFGenerator.BLANK_NODE_PREFIX
+						+ (prefix != null ? prefix.replaceAll(":", "_") : prefix);
+				List<String> columnsCovered = kr2rmlMapping.getAuxInfo().getBlankNodesColumnCoverage().get(id);
+				int numColumns = columnsCovered != null ? columnsCovered.size() : 0;
+				this.blankNodeColumnNames = new String[numColumns];
+				this.blankNodeHNodeIds = new String[numColumns];
+				for (int i = 0; i < numColumns; i++) {
+					blankNodeColumnNames[i] = columnsCovered.get(i);
+					blankNodeHNodeIds[i] = resolveHNodeId(columnsCovered.get(i));
+				}
+			} else {
+				this.blankNodeUriPrefix = null;
+				this.blankNodeColumnNames = null;
+				this.blankNodeHNodeIds = null;
+			}
+		}
+	}
+
+	/**
+	 * A template with the column terms resolved to hNode ids.
+	 */
+	static class TemplateTermSetPlan {
+		// The string value for string terms and the column name for column terms
+		final String[] termValues;
+		// The hNode id for column terms, null for string terms and unknown columns
+		final String[] hNodeIds;
+		final boolean[] isColumnTerm;
+		// The populated value if the template has no column terms
+		final String constantValue;
+
+		TemplateTermSetPlan(TemplateTermSet termSet, KR2RMLMappingColumnNameHNodeTranslator translator) {
+			List<TemplateTerm> terms = termSet.getAllTerms();
+			int numTerms = terms.size();
+			this.termValues = new String[numTerms];
+			this.hNodeIds = new String[numTerms];
+			this.isColumnTerm = new boolean[numTerms];
+
+			boolean hasColumnTerms = false;
+			StringBuilder constant = new StringBuilder();
+			int i = 0;
+			for (TemplateTerm term : terms) {
+				termValues[i] = term.getTemplateTermValue();
+				if (term instanceof ColumnTemplateTerm) {
+					isColumnTerm[i] = true;
+					hasColumnTerms = true;
+					try {
+						hNodeIds[i] = translator.getHNodeIdForColumnName(term.getTemplateTermValue());
+					} catch (HNodeNotFoundKarmaException e) {
+						hNodeIds[i] = null;
+					}
+				} else if (term instanceof StringTemplateTerm) {
+					constant.append(term.getTemplateTermValue());
+				} else {
+					// Neither a string nor a column, ignored when populating the template
+					termValues[i] = null;
+				}
+				i++;
+			}
+			this.constantValue = hasColumnTerms ? null : constant.toString();
+		}
+	}
+}
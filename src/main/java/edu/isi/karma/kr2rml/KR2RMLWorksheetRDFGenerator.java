@@ -27,20 +27,31 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.lang3.RandomStringUtils;
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.ErrorReport.Priority;
+import edu.isi.karma.kr2rml.KR2RMLMappingExecutionPlan.PredicateObjectMapPlan;
+import edu.isi.karma.kr2rml.KR2RMLMappingExecutionPlan.SubjectMapPlan;
+import edu.isi.karma.kr2rml.KR2RMLMappingExecutionPlan.TemplateTermSetPlan;
+import edu.isi.karma.kr2rml.KR2RMLMappingExecutionPlan.TriplesMapLinkPlan;
+import edu.isi.karma.kr2rml.KR2RMLMappingExecutionPlan.TriplesMapPlan;
+import edu.isi.karma.kr2rml.writer.BufferedRdfSink;
+import edu.isi.karma.kr2rml.writer.NTriplesRdfSink;
+import edu.isi.karma.kr2rml.writer.RdfSink;
 import edu.isi.karma.modeling.Namespaces;
 import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.modeling.ontology.OntologyManager;
@@ -59,21 +70,35 @@ public class KR2RMLWorksheetRDFGenerator {
 	private OntologyManager ontMgr;
 	private ErrorReport errorReport;
 	private boolean addColumnContextInformation;
-	private KR2RMLMapping kr2rmlMapping;
 	private KR2RMLMappingColumnNameHNodeTranslator translator;
+	private KR2RMLMappingExecutionPlan executionPlan;
 	private Map<String, String> prefixToNamespaceMap;
 	private Map<String, String> hNodeToContextUriMap;
 	private PrintWriter outWriter;
+	private RdfSink sink;
+	private String rdfTypePredicate;
+	private int numThreads = 1;
+	private int rowChunkSize = DEFAULT_ROW_CHUNK_SIZE;
+	private boolean preserveRowOrder = true;
+	private String blankNodeLabelPrefix = "";
+	private int uriCacheSize = DEFAULT_URI_CACHE_SIZE;
+	// Used by the rows processed on the calling thread, the row chunks processed in 
+	// parallel have their own
+	private ExpandedUriCache uriCache = new ExpandedUriCache(DEFAULT_URI_CACHE_SIZE);
+	private long chunkUriCacheHits = 0;
+	private long chunkUriCacheMisses = 0;
 	
 	private Logger logger = LoggerFactory.getLogger(KR2RMLWorksheetRDFGenerator.class);
 	public static String BLANK_NODE_PREFIX = "_:";
+	public static final int DEFAULT_ROW_CHUNK_SIZE = 1000;
+	public static final int DEFAULT_URI_CACHE_SIZE = 10000;
+	private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 4;
 
 	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
 			OntologyManager ontMgr, String outputFileName, boolean addColumnContextInformation, 
 			KR2RMLMapping kr2rmlMapping, ErrorReport errorReport) {
 		super();
 		this.ontMgr = ontMgr;
-		this.kr2rmlMapping = kr2rmlMapping;
 		this.factory = factory;
 		this.worksheet = worksheet;
 		this.outputFileName = outputFileName;
@@ -82,7 +107,9 @@ public class KR2RMLWorksheetRDFGenerator {
 		this.hNodeToContextUriMap = new HashMap<String, String>();
 		this.addColumnContextInformation = addColumnContextInformation;
 		this.translator = new KR2RMLMappingColumnNameHNodeTranslator(factory, worksheet);
+		this.executionPlan = new KR2RMLMappingExecutionPlan(kr2rmlMapping, worksheet, factory, translator);
 		populatePrefixToNamespaceMap();
+		this.rdfTypePredicate = getExpandedAndNormalizedUri(Uris.RDF_TYPE_URI);
 	}
 	
 	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
@@ -90,52 +117,120 @@ public class KR2RMLWorksheetRDFGenerator {
 			ErrorReport errorReport, boolean addColumnContextInformation) {
 		super();
 		this.ontMgr = ontMgr;
-		this.kr2rmlMapping = kr2rmlMapping;
 		this.factory = factory;
 		this.worksheet = worksheet;
-		this.outWriter = writer;;
+		this.outWriter = writer;
+		this.sink = new NTriplesRdfSink(writer);
 		this.errorReport = errorReport;
 		this.prefixToNamespaceMap = new HashMap<String, String>();
 		this.hNodeToContextUriMap = new HashMap<String, String>();
 		this.addColumnContextInformation = addColumnContextInformation;
 		this.translator = new KR2RMLMappingColumnNameHNodeTranslator(factory, worksheet);
+		this.executionPlan = new KR2RMLMappingExecutionPlan(kr2rmlMapping, worksheet, factory, translator);
 		populatePrefixToNamespaceMap();
+		this.rdfTypePredicate = getExpandedAndNormalizedUri(Uris.RDF_TYPE_URI);
 	
 	}
 	
+	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
+			OntologyManager ontMgr, RdfSink sink, KR2RMLMapping kr2rmlMapping,  
+			ErrorReport errorReport, boolean addColumnContextInformation) {
+		super();
+		this.ontMgr = ontMgr;
+		this.factory = factory;
+		this.worksheet = worksheet;
+		this.sink = sink;
+		this.errorReport = errorReport;
+		this.prefixToNamespaceMap = new HashMap<String, String>();
+		this.hNodeToContextUriMap = new HashMap<String, String>();
+		this.addColumnContextInformation = addColumnContextInformation;
+		this.translator = new KR2RMLMappingColumnNameHNodeTranslator(factory, worksheet);
+		this.executionPlan = new KR2RMLMappingExecutionPlan(kr2rmlMapping, worksheet, factory, translator);
+		populatePrefixToNamespaceMap();
+		this.rdfTypePredicate = getExpandedAndNormalizedUri(Uris.RDF_TYPE_URI);
+	}
+	
+	
 	
+	/**
+	 * Sets the number of threads used to generate the triples of the top level rows. 
+	 * With more than one thread the rows are processed in chunks on a fork-join pool.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	/**
+	 * Adds a prefix to the labels of the blank nodes, e.g. to keep them distinct 
+	 * between outputs generated separately and loaded into the same graph.
+	 */
+	public void setBlankNodeLabelPrefix(String blankNodeLabelPrefix) {
+		this.blankNodeLabelPrefix = blankNodeLabelPrefix;
+	}
+	
+	public void setRowChunkSize(int rowChunkSize) {
+		this.rowChunkSize = Math.max(1, rowChunkSize);
+	}
+	
+	/**
+	 * If false, the output of the row chunks processed in parallel is written as 
+	 * soon as each chunk is done, so the rows may appear out of order in the output.
+	 */
+	public void setPreserveRowOrder(boolean preserveRowOrder) {
+		this.preserveRowOrder = preserveRowOrder;
+	}
+	
+	/**
+	 * Sets the maximum number of expanded and normalized URIs remembered by the generator.
+	 */
+	public void setUriCacheSize(int uriCacheSize) {
+		this.uriCacheSize = Math.max(0, uriCacheSize);
+		this.uriCache = new ExpandedUriCache(this.uriCacheSize);
+	}
+	
+	/**
+	 * @return the number of URIs found in the caches, including those of the row chunks
+	 */
+	public long getUriCacheHits() {
+		return uriCache.getHits() + chunkUriCacheHits;
+	}
+	
+	public long getUriCacheMisses() {
+		return uriCache.getMisses() + chunkUriCacheMisses;
+	}
 	
 	public void generateRDF(boolean closeWriterAfterGeneration) throws IOException {
 		// Prepare the output writer
 		BufferedWriter bw = null;
 		try {
-			if(this.outWriter == null && this.outputFileName != null){
-				File f = new File(this.outputFileName);
-				File parentDir = f.getParentFile();
-				parentDir.mkdirs();
-				bw = new BufferedWriter(
-						new OutputStreamWriter(new FileOutputStream(f),"UTF-8"));
-				outWriter = new PrintWriter (bw);
-			} else if (this.outWriter == null && this.outputFileName == null) {
-				outWriter = new PrintWriter (System.out);			
+			if (this.sink == null) {
+				if(this.outWriter == null && this.outputFileName != null){
+					File f = new File(this.outputFileName);
+					File parentDir = f.getParentFile();
+					parentDir.mkdirs();
+					bw = new BufferedWriter(
+							new OutputStreamWriter(new FileOutputStream(f),"UTF-8"));
+					outWriter = new PrintWriter (bw);
+				} else if (this.outWriter == null && this.outputFileName == null) {
+					outWriter = new PrintWriter (System.out);			
+				}
+				sink = new NTriplesRdfSink(outWriter);
 			}
 			
 			// RDF Generation starts at the top level rows
-			ArrayList<Row> rows = this.worksheet.getDataTable().getRows(0, 
+			List<Row> rows = this.worksheet.getDataTable().getRows(0, 
 					this.worksheet.getDataTable().getNumRows());
-			int i=1;
-			for (Row row:rows) {
-				Set<String> rowTriplesSet = new HashSet<String>();
-				Set<String> rowPredicatesCovered = new HashSet<String>();
-				Set<String> predicatesSuccessful = new HashSet<String>();
-				Map<String, ReportMessage> predicatesFailed = new HashMap<String,ReportMessage>();
-				generateTriplesForRow(row, rowTriplesSet, rowPredicatesCovered, predicatesFailed, predicatesSuccessful);
-
-				outWriter.println();
-				if (i++%2000 == 0)
-					logger.info("Done processing " + i + " rows");
-				for (ReportMessage errMsg:predicatesFailed.values()){
-					this.errorReport.addReportMessage(errMsg);
+			if (numThreads > 1 && rows.size() > rowChunkSize) {
+				generateRDFForRowsInParallel(rows);
+			} else {
+				int i=1;
+				for (Row row:rows) {
+					List<ReportMessage> rowErrors = generateTriplesForTopLevelRow(row, sink, uriCache);
+					if (i++%2000 == 0)
+						logger.info("Done processing " + i + " rows");
+					for (ReportMessage errMsg:rowErrors){
+						this.errorReport.addReportMessage(errMsg);
+					}
 				}
 			}
 			
@@ -143,6 +238,7 @@ public class KR2RMLWorksheetRDFGenerator {
 			if (addColumnContextInformation) {
 				generateColumnProvenanceInformation();
 			}
+			logger.debug("URI cache hits: " + getUriCacheHits() + ", misses: " + getUriCacheMisses());
 				
 		} catch (Exception e)
 		{
@@ -150,10 +246,11 @@ public class KR2RMLWorksheetRDFGenerator {
 		}
 		finally {
 			if (closeWriterAfterGeneration) {
-				outWriter.flush();
-				outWriter.close();
+				sink.close();
 				if(bw != null)
 					bw.close();
+			} else {
+				sink.flush();
 			}
 		}
 		// An attempt to prevent an occasional error that occurs on Windows platform
@@ -161,9 +258,120 @@ public class KR2RMLWorksheetRDFGenerator {
 		System.gc();
 	}
 	
-	public void generateTriplesForRow(Row row, Set<String> existingTopRowTriples, 
+	/**
+	 * Generates the triples of a single top level row (including its nested tables) 
+	 * and marks the end of the row in the sink.
+	 * @return the report messages of the predicates that could not be generated for the row
+	 */
+	private List<ReportMessage> generateTriplesForTopLevelRow(Row row, RdfSink out, 
+			ExpandedUriCache cache) {
+		Set<TripleKey> rowTriplesSet = new HashSet<TripleKey>();
+		Set<String> rowPredicatesCovered = new HashSet<String>();
+		Set<String> predicatesSuccessful = new HashSet<String>();
+		Map<String, ReportMessage> predicatesFailed = new HashMap<String,ReportMessage>();
+		generateTriplesForRow(row, rowTriplesSet, rowPredicatesCovered, predicatesFailed, 
+				predicatesSuccessful, out, cache);
+		out.finishRow();
+		return new ArrayList<ReportMessage>(predicatesFailed.values());
+	}
+	
+	/**
+	 * Splits the top level rows into chunks of <code>rowChunkSize</code> rows and generates 
+	 * the triples of each chunk on a fork-join pool. Every chunk writes into its own buffer. 
+	 * The buffers are replayed into the sink either in the row order of the worksheet or, 
+	 * if <code>preserveRowOrder</code> is false, as soon as a chunk is done. The report 
+	 * messages are always merged in row order so that the error report does not depend 
+	 * on the scheduling of the chunks.
+	 */
+	private void generateRDFForRowsInParallel(List<Row> rows) {
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			// Limit the number of chunks in flight so that the buffered output stays bounded
+			int maxChunksInFlight = numThreads * CHUNKS_IN_FLIGHT_PER_THREAD;
+			LinkedList<RowChunkTask> chunksInFlight = new LinkedList<RowChunkTask>();
+			int nextRowIndex = 0;
+			int rowsDone = 0;
+			while (nextRowIndex < rows.size() || !chunksInFlight.isEmpty()) {
+				while (nextRowIndex < rows.size() && chunksInFlight.size() < maxChunksInFlight) {
+					int endIndex = Math.min(nextRowIndex + rowChunkSize, rows.size());
+					RowChunkTask chunk = new RowChunkTask(rows.subList(nextRowIndex, endIndex));
+					pool.execute(chunk);
+					chunksInFlight.add(chunk);
+					nextRowIndex = endIndex;
+				}
+				RowChunkTask chunk = chunksInFlight.removeFirst();
+				chunk.join();
+				if (preserveRowOrder) {
+					chunk.getOutput().replayTo(sink);
+				}
+				for (ReportMessage errMsg:chunk.getReportMessages()) {
+					this.errorReport.addReportMessage(errMsg);
+				}
+				chunkUriCacheHits += chunk.getUriCache().getHits();
+				chunkUriCacheMisses += chunk.getUriCache().getMisses();
+				rowsDone += chunk.getNumRows();
+				logger.info("Done processing " + rowsDone + " rows");
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Generates the triples for a contiguous range of top level rows into a private buffer.
+	 */
+	private class RowChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Row> rows;
+		private final List<ReportMessage> reportMessages = new ArrayList<ReportMessage>();
+		private final BufferedRdfSink output = new BufferedRdfSink();
+		private final ExpandedUriCache chunkUriCache = new ExpandedUriCache(uriCacheSize);
+		
+		RowChunkTask(List<Row> rows) {
+			this.rows = rows;
+		}
+		
+		@Override
+		protected void compute() {
+			for (Row row:rows) {
+				reportMessages.addAll(generateTriplesForTopLevelRow(row, output, chunkUriCache));
+			}
+			if (!preserveRowOrder) {
+				synchronized (sink) {
+					output.replayTo(sink);
+				}
+			}
+		}
+		
+		BufferedRdfSink getOutput() {
+			return output;
+		}
+		
+		ExpandedUriCache getUriCache() {
+			return chunkUriCache;
+		}
+		
+		List<ReportMessage> getReportMessages() {
+			return reportMessages;
+		}
+		
+		int getNumRows() {
+			return rows.size();
+		}
+	}
+	
+	public void generateTriplesForRow(Row row, Set<String> predicatesCovered, 
+			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful) 
+					throws IOException {
+		generateTriplesForRow(row, new HashSet<TripleKey>(), predicatesCovered, predicatesFailed, 
+				predicatesSuccessful, sink, uriCache);
+		sink.flush();
+	}
+	
+	private void generateTriplesForRow(Row row, Set<TripleKey> existingTopRowTriples, 
 			Set<String> predicatesCovered, Map<String, ReportMessage> predicatesFailed, 
-			Set<String> predicatesSuccessful) {
+			Set<String> predicatesSuccessful, RdfSink out, ExpandedUriCache cache) {
 		Map<String, Node> rowNodes = row.getNodesMap();
 		for (String hNodeId:rowNodes.keySet()) {
 			Node rowNode = rowNodes.get(hNodeId);
@@ -173,87 +381,91 @@ public class KR2RMLWorksheetRDFGenerator {
 					for (Row nestedTableRow:rowNodeTable.getRows(0, rowNodeTable.getNumRows())) {
 						Set<String> rowPredicatesCovered = new HashSet<String>();
 						generateTriplesForRow(nestedTableRow, existingTopRowTriples, 
-								rowPredicatesCovered, predicatesFailed, predicatesSuccessful);
+								rowPredicatesCovered, predicatesFailed, predicatesSuccessful, out, cache);
 					}
 				}
 			} else {
 				generateTriplesForCell(rowNode, existingTopRowTriples, hNodeId, 
-						predicatesCovered, predicatesFailed, predicatesSuccessful);
+						predicatesCovered, predicatesFailed, predicatesSuccessful, out, cache);
 			}
 		}
 	}
 	
-	public void generateTriplesForCell(Node node, Set<String> existingTopRowTriples, 
+	public void generateTriplesForCell(Node node, String hNodeId, Set<String> predicatesCovered, 
+			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful) 
+					throws IOException {
+		generateTriplesForCell(node, new HashSet<TripleKey>(), hNodeId, predicatesCovered, 
+				predicatesFailed, predicatesSuccessful, sink, uriCache);
+		sink.flush();
+	}
+	
+	private void generateTriplesForCell(Node node, Set<TripleKey> existingTopRowTriples, 
 			String hNodeId, Set<String> predicatesCovered, 
-			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful) {
+			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful, 
+			RdfSink out, ExpandedUriCache cache) {
 		
-		String columnName = translator.getColumnNameForHNodeId(hNodeId);
-		List<PredicateObjectMap> pomList = this.kr2rmlMapping.getAuxInfo().getColumnNameToPredObjLinks().get(columnName);
-		if (pomList == null || pomList.isEmpty())
+		TriplesMapPlan[] startingTriplesMaps = executionPlan.getTriplesMapPlansForHNodeId(hNodeId);
+		if (startingTriplesMaps == null)
 			return;
 		
-		List<TriplesMap> toBeProcessedTriplesMap = new LinkedList<TriplesMap>();
-		for (PredicateObjectMap pom:pomList) {
-			toBeProcessedTriplesMap.add(pom.getTriplesMap());
+		Deque<TriplesMapPlan> toBeProcessedTriplesMap = new ArrayDeque<TriplesMapPlan>();
+		for (TriplesMapPlan trMap:startingTriplesMaps) {
+			toBeProcessedTriplesMap.add(trMap);
 		}
 		
 		Set<String> alreadyProcessedTriplesMapIds = new HashSet<String>();
 		while (!toBeProcessedTriplesMap.isEmpty()) {
-			TriplesMap trMap = toBeProcessedTriplesMap.remove(0);
-			boolean dontAddNeighboringMaps = false;
+			TriplesMapPlan trMap = toBeProcessedTriplesMap.removeFirst();
+			// A triples map can be queued more than once before it is processed
+			if (!alreadyProcessedTriplesMapIds.add(trMap.id))
+				continue;
 			
 			// Generate properties for the triple maps
-			for (PredicateObjectMap pom:trMap.getPredicateObjectMaps()) {
-				if (!predicatesCovered.contains(pom.getPredicate().getId())) {
+			for (PredicateObjectMapPlan pom:trMap.predicateObjectMaps) {
+				if (!predicatesCovered.contains(pom.predicateId)) {
 					generatePropertyForPredObjMap(pom, predicatesCovered, 
-							existingTopRowTriples, node, predicatesFailed, predicatesSuccessful);
+							existingTopRowTriples, node, predicatesFailed, predicatesSuccessful, out, cache);
 				}
 			}
 			
 			// Need to stop at the root
-			if (trMap.getSubject().isSteinerTreeRootNode()) {
-				dontAddNeighboringMaps = true;
+			if (trMap.isSteinerTreeRootNode) {
+				continue;
 			}
 			
-			List<TriplesMapLink> neighboringLinks = this.kr2rmlMapping.getAuxInfo().getTriplesMapGraph()
-					.getAllNeighboringTriplesMap(trMap.getId());
-			
-			for (TriplesMapLink trMapLink:neighboringLinks) {
-				if (predicatesCovered.contains(trMapLink.getPredicateObjectMapLink().getPredicate().getId()))
+			for (TriplesMapLinkPlan trMapLink:trMap.links) {
+				if (predicatesCovered.contains(trMapLink.predicateId))
 					continue;
 				
 				// Add the other triplesMap in queue to be processed later
-				if (!alreadyProcessedTriplesMapIds.contains(trMapLink.getSourceMap().getId())
-						&& !dontAddNeighboringMaps) {
-					toBeProcessedTriplesMap.add(trMapLink.getSourceMap());	
+				if (!alreadyProcessedTriplesMapIds.contains(trMapLink.sourceMap.id)) {
+					toBeProcessedTriplesMap.add(trMapLink.sourceMap);	
 				}
 					
-				if (!alreadyProcessedTriplesMapIds.contains(trMapLink.getTargetMap().getId())
-						&& !dontAddNeighboringMaps) {
-					toBeProcessedTriplesMap.add(trMapLink.getTargetMap());
+				if (!alreadyProcessedTriplesMapIds.contains(trMapLink.targetMap.id)) {
+					toBeProcessedTriplesMap.add(trMapLink.targetMap);
 				}
 			}
-			alreadyProcessedTriplesMapIds.add(trMap.getId());
 		}
 	}
 	
 
-	private void generatePropertyForPredObjMap(PredicateObjectMap pom, Set<String> predicatesCovered, 
-			Set<String> existingTopRowTriples, Node node, 
-			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful) {
-		SubjectMap subjMap = pom.getTriplesMap().getSubject();
+	private void generatePropertyForPredObjMap(PredicateObjectMapPlan pom, Set<String> predicatesCovered, 
+			Set<TripleKey> existingTopRowTriples, Node node, 
+			Map<String, ReportMessage> predicatesFailed, Set<String> predicatesSuccessful, 
+			RdfSink out, ExpandedUriCache cache) {
+		SubjectMapPlan subjMap = pom.subject;
 		
 		// Generate subject RDF
 		String subjUri = "";
 		try {
-			subjUri = generateSubjectMapRDF(subjMap, existingTopRowTriples, node);
+			subjUri = generateSubjectMapRDF(subjMap, existingTopRowTriples, node, out, cache);
 		} catch (ValueNotFoundKarmaException ve) {
 			ReportMessage msg = createReportMessage("Could not generate subject's RDF and URI for <i>predicate:" + 
-					 pom.getPredicate().getTemplate().toString().replaceAll("<", "{").replaceAll(">", "}") +
-					 ", subject node: " + subjMap.getId()+"</i>", ve, 
+					 getPredicateTemplateString(pom) + ", subject node: " + subjMap.id+"</i>", ve, 
 					 this.factory.getHNode(node.getHNodeId()).getColumnName());
-			if (!predicatesSuccessful.contains(pom.getPredicate().getId()))
-				predicatesFailed.put(pom.getPredicate().getId(), msg);
+			if (!predicatesSuccessful.contains(pom.predicateId))
+				predicatesFailed.put(pom.predicateId, msg);
 			return;
 		} catch (NoValueFoundInNodeException e) {
 			logger.debug("No value found in a node required to generate subject's RDF or URI.");
@@ -266,8 +478,7 @@ public class KR2RMLWorksheetRDFGenerator {
 		// Generate the predicate RDF
 		String predicateUri = "";
 		try {
-			predicateUri = normalizeUri(getTemplateTermSetPopulatedWithValues(node,  
-					pom.getPredicate().getTemplate()));
+			predicateUri = normalizeUri(getTemplateTermSetPopulatedWithValues(node, pom.predicate));
 			if (predicateUri.equals(Uris.CLASS_INSTANCE_LINK_URI) 
 					|| predicateUri.equals(Uris.COLUMN_SUBCLASS_LINK_URI)) {
 				return;
@@ -275,11 +486,10 @@ public class KR2RMLWorksheetRDFGenerator {
 			
 		} catch (ValueNotFoundKarmaException ve) {
 			ReportMessage msg = createReportMessage("Could not generate predicate's URI for <i>predicate:" + 
-					pom.getPredicate().getTemplate().toString().replaceAll("<", "{").replaceAll(">", "}") + 
-					", subject node: " + subjMap.getId() + "</i>",  ve, 
+					getPredicateTemplateString(pom) + ", subject node: " + subjMap.id + "</i>",  ve, 
 					this.factory.getHNode(node.getHNodeId()).getColumnName());
-			if (!predicatesSuccessful.contains(pom.getPredicate().getId()))
-				predicatesFailed.put(pom.getPredicate().getId(), msg);
+			if (!predicatesSuccessful.contains(pom.predicateId))
+				predicatesFailed.put(pom.predicateId, msg);
 			return;
 		} catch (NoValueFoundInNodeException e) {
 			logger.debug("No value found in a node required to generate predicate's URI.");
@@ -288,25 +498,21 @@ public class KR2RMLWorksheetRDFGenerator {
 			logger.debug("No hnode found fir a node required to generate predicate's URI.");
 			return;
 		}
-		
+		String predicate = getExpandedAndNormalizedUri(predicateUri, cache);
 		
 		// Object property
-		if (pom.getObject().hasRefObjectMap()) {
+		if (pom.refObjectSubject != null) {
 			// Generate the object URI
-			TriplesMap objPropertyObjectTriplesMap = pom.getObject().getRefObjectMap().
-					getParentTriplesMap();
 			String objUri = "";
 			try {
-				objUri = generateSubjectMapRDF(objPropertyObjectTriplesMap.getSubject(), 
-						existingTopRowTriples, node);
+				objUri = generateSubjectMapRDF(pom.refObjectSubject, existingTopRowTriples, node, 
+						out, cache);
 			} catch (ValueNotFoundKarmaException ve) {
 				ReportMessage msg = createReportMessage("Could not generate object's URI for <i>predicate:" + 
-						pom.getPredicate().getTemplate().toString()
-						.replaceAll("<", "{").replaceAll(">", "}") + 
-						", subject node: " + pom.getTriplesMap().getSubject().getId()+"</i>", ve
+						getPredicateTemplateString(pom) + ", subject node: " + subjMap.id+"</i>", ve
 						, this.factory.getHNode(node.getHNodeId()).getColumnName());
-				if (!predicatesSuccessful.contains(pom.getPredicate().getId()))
-					predicatesFailed.put(pom.getPredicate().getId(), msg);
+				if (!predicatesSuccessful.contains(pom.predicateId))
+					predicatesFailed.put(pom.predicateId, msg);
 				return;
 			} catch (NoValueFoundInNodeException e) {
 				logger.debug("No value found in a node required to generate object's URI for a predicate.");
@@ -316,32 +522,24 @@ public class KR2RMLWorksheetRDFGenerator {
 				return;
 			}
 			
-			String triple = constructTripleWithURIObject(subjUri, predicateUri, objUri);
-			if (!existingTopRowTriples.contains(triple)) {
-				outWriter.println(triple);
-				existingTopRowTriples.add(triple);
+			if (existingTopRowTriples.add(new TripleKey(subjUri, predicate, objUri, null, null))) {
+				out.outputTripleWithURIObject(subjUri, predicate, objUri);
 			}
 		} 
 		// Data Property
 		else {
 			// Get the value
 			String value = "";
-			String rdfLiteralType = "";
 			try {
-				value = getTemplateTermSetPopulatedWithValues(node, pom.getObject().getTemplate());
+				value = getTemplateTermSetPopulatedWithValues(node, pom.object);
 				if (value == null || value.trim().equals(""))
 					return;
-				TemplateTermSet rdfLiteralTypeTermSet = pom.getObject().getRdfLiteralType();
-				if (rdfLiteralTypeTermSet != null) {
-					rdfLiteralType = rdfLiteralTypeTermSet.getR2rmlTemplateString(factory);
-				}
 			} catch (ValueNotFoundKarmaException ve) {
 				ReportMessage msg = createReportMessage("Could not retrieve value for the <i>predicate:" + 
-						pom.getPredicate().getTemplate().toString().replaceAll("<", "{").replaceAll(">", "}") +
-						", subject node: " + subjMap.getId()+"</i>", ve, 
+						getPredicateTemplateString(pom) + ", subject node: " + subjMap.id+"</i>", ve, 
 						this.factory.getHNode(node.getHNodeId()).getColumnName());
-				if (!predicatesSuccessful.contains(pom.getPredicate().getId()))
-					predicatesFailed.put(pom.getPredicate().getId(), msg);
+				if (!predicatesSuccessful.contains(pom.predicateId))
+					predicatesFailed.put(pom.predicateId, msg);
 				return;
 			} catch (NoValueFoundInNodeException e) {
 				logger.debug("No value found in a node required to generate value for a predicate.");
@@ -351,36 +549,33 @@ public class KR2RMLWorksheetRDFGenerator {
 				return;
 			}
 			if (addColumnContextInformation) {
-				TemplateTermSet templ = pom.getObject().getTemplate();
-				if (templ.isSingleColumnTerm()) {
-					try
-					{
-						String hNodeId_val = translator.getHNodeIdForColumnName(templ.getAllTerms().get(0).getTemplateTermValue());
-						String quad = constructQuadWithLiteralObject(subjUri, predicateUri, value,
-								rdfLiteralType, hNodeId_val);
-						if (!existingTopRowTriples.contains(quad)) {
-							existingTopRowTriples.add(quad);
-							outWriter.println(quad);
-						}
-					}
-					catch(HNodeNotFoundKarmaException he)
-					{
+				if (pom.isSingleColumnObject) {
+					if (pom.objectValueHNodeId == null) {
 						logger.error("No hnode id found to generate quad for");
 						return;
 					}
+					String columnContextUri = getColumnContextUri(pom.objectValueHNodeId);
+					if (existingTopRowTriples.add(new TripleKey(subjUri, predicate, value, 
+							pom.rdfLiteralType, columnContextUri))) {
+						out.outputQuadWithLiteralObject(subjUri, predicate, value, 
+								pom.rdfLiteralType, columnContextUri);
+					}
 				}
 			} else {
-				String triple = constructTripleWithLiteralObject(subjUri, predicateUri, value, rdfLiteralType);
-				if (!existingTopRowTriples.contains(triple)) {
-					existingTopRowTriples.add(triple);
-					outWriter.println(triple);
+				if (existingTopRowTriples.add(new TripleKey(subjUri, predicate, value, 
+						pom.rdfLiteralType, null))) {
+					out.outputTripleWithLiteralObject(subjUri, predicate, value, pom.rdfLiteralType);
 				}
 			}
 		}
-		predicatesCovered.add(pom.getPredicate().getId());
-		predicatesSuccessful.add(pom.getPredicate().getId());
-		if (predicatesFailed.containsKey(pom.getPredicate().getId()))
-			predicatesFailed.remove(pom.getPredicate().getId());
+		predicatesCovered.add(pom.predicateId);
+		predicatesSuccessful.add(pom.predicateId);
+		if (predicatesFailed.containsKey(pom.predicateId))
+			predicatesFailed.remove(pom.predicateId);
+	}
+	
+	private String getPredicateTemplateString(PredicateObjectMapPlan pom) {
+		return pom.pom.getPredicate().getTemplate().toString().replaceAll("<", "{").replaceAll(">", "}");
 	}
 
 	private ReportMessage createReportMessage(String title, ValueNotFoundKarmaException ve, 
@@ -390,83 +585,50 @@ public class KR2RMLWorksheetRDFGenerator {
 		return msg;
 	}
 
-	private String generateSubjectMapRDF(SubjectMap subjMap, Set<String> existingTopRowTriples, Node node) throws ValueNotFoundKarmaException, NoValueFoundInNodeException, HNodeNotFoundKarmaException {
+	private String generateSubjectMapRDF(SubjectMapPlan subjMap, Set<TripleKey> existingTopRowTriples, Node node, 
+			RdfSink out, ExpandedUriCache cache) throws ValueNotFoundKarmaException, NoValueFoundInNodeException, HNodeNotFoundKarmaException {
 		// Generate URI for subject
 		String uri = "";
-		if (subjMap.isBlankNode()) {
-			uri = getExpandedAndNormalizedUri(getBlankNodeUri(subjMap.getId(), node));
+		if (subjMap.isBlankNode) {
+			uri = getExpandedAndNormalizedUri(getBlankNodeUri(subjMap, node), cache);
 		} else {
 			uri = getExpandedAndNormalizedUri(getTemplateTermSetPopulatedWithValues(node,
-					subjMap.getTemplate()));
+					subjMap.template), cache);
 		}
 		
 		// Generate triples for specifying the types
-		for (TemplateTermSet typeTerm:subjMap.getRdfsType()) {
+		for (TemplateTermSetPlan typeTerm:subjMap.rdfsTypes) {
 			String typeUri = getExpandedAndNormalizedUri(getTemplateTermSetPopulatedWithValues(
-					node, typeTerm));
-			String triple = constructTripleWithURIObject(uri, Uris.RDF_TYPE_URI, typeUri);
-			if (!existingTopRowTriples.contains(triple)) {
-				existingTopRowTriples.add(triple);
-				outWriter.println(triple);
+					node, typeTerm), cache);
+			if (existingTopRowTriples.add(new TripleKey(uri, rdfTypePredicate, typeUri, null, null))) {
+				out.outputTripleWithURIObject(uri, rdfTypePredicate, typeUri);
 			}
 		}
 		return uri;
 	}
 	
-	private String constructTripleWithURIObject(String subjUri, String predicateUri, String objectUri) {
-		return subjUri + " " 
-				+ getExpandedAndNormalizedUri(predicateUri) + " " 
-				+ objectUri + " .";
-	}
-	
-	private String constructTripleWithLiteralObject(String subjUri, String predicateUri, String value, 
-			String literalType) {
-		// Use Apache Commons to escape the value
-		value = StringEscapeUtils.escapeJava(value);
-		
-		// Add the RDF literal type to the literal if present
-		if (literalType != null && !literalType.equals("")) {
-			return subjUri + " " + getExpandedAndNormalizedUri(predicateUri) + " \"" + value + 
-					"\"" + "^^<" + literalType + "> .";
-		}
-		return subjUri + " " + getExpandedAndNormalizedUri(predicateUri) + " \"" + value + "\" .";
-	}
-	
-	private String constructQuadWithLiteralObject(String subjUri, String predicateUri, 
-			String value, String literalType, String valueHNodeId) {
-		String triple = constructTripleWithLiteralObject(subjUri, predicateUri, value, literalType);
-		String columnContextUri = getColumnContextUri(valueHNodeId);
-		if (triple.length() > 2)
-			return triple.substring(0, triple.length()-1) + "<" + columnContextUri + "> ." ;
-		else
-			return "";
-	}
-
-	
-
-	private String getBlankNodeUri(String subjMapid, Node node) 
+	private String getBlankNodeUri(SubjectMapPlan subjMap, Node node) 
 			throws ValueNotFoundKarmaException, HNodeNotFoundKarmaException {
 
-		StringBuilder output = new StringBuilder();
-		// Add the blank namespace
-		output.append(BLANK_NODE_PREFIX);
-		
-		// Add the class node prefix
-		output.append(this.kr2rmlMapping.getAuxInfo().getBlankNodesUriPrefixMap().get(subjMapid).replaceAll(":", "_"));
+		// Add the blank namespace and the class node prefix
+		StringBuilder output = new StringBuilder(subjMap.blankNodeUriPrefix);
+		if (!blankNodeLabelPrefix.isEmpty()) {
+			output.insert(BLANK_NODE_PREFIX.length(), blankNodeLabelPrefix);
+		}
 		
 		// Add the node ids for tha columns covered
-		List<String> columnsCovered = this.kr2rmlMapping.getAuxInfo().getBlankNodesColumnCoverage().get(subjMapid);
-
-		if (columnsCovered != null && !columnsCovered.isEmpty()) {
-			for (int i=0; i<columnsCovered.size(); i++) {
-				String hNodeId = translator.getHNodeIdForColumnName(columnsCovered.get(i));
-				if (node.canReachNeighbor(hNodeId)) {
-					output.append("_" + node.getNeighbor(hNodeId).getId());
-				} else {
-					String columnName = this.factory.getHNode(hNodeId).getColumnName();
-					throw new ValueNotFoundKarmaException("Could not retrieve value while constructing " +
-							"blank URI of column:" + columnName + ". ", hNodeId);
-				}
+		for (int i=0; i<subjMap.blankNodeHNodeIds.length; i++) {
+			String hNodeId = subjMap.blankNodeHNodeIds[i];
+			if (hNodeId == null) {
+				throw new HNodeNotFoundKarmaException("Unable to find HNodeId for column name", 
+						subjMap.blankNodeColumnNames[i]);
+			}
+			if (node.canReachNeighbor(hNodeId)) {
+				output.append("_" + node.getNeighbor(hNodeId).getId());
+			} else {
+				String columnName = this.factory.getHNode(hNodeId).getColumnName();
+				throw new ValueNotFoundKarmaException("Could not retrieve value while constructing " +
+						"blank URI of column:" + columnName + ". ", hNodeId);
 			}
 		}
 		return output.toString();
@@ -474,23 +636,36 @@ public class KR2RMLWorksheetRDFGenerator {
 
 	public String getTemplateTermSetPopulatedWithValues(Node node, 
 			TemplateTermSet termSet) throws ValueNotFoundKarmaException, NoValueFoundInNodeException, HNodeNotFoundKarmaException {
+		return getTemplateTermSetPopulatedWithValues(node, new TemplateTermSetPlan(termSet, translator));
+	}
+	
+	private String getTemplateTermSetPopulatedWithValues(Node node, 
+			TemplateTermSetPlan termSet) throws ValueNotFoundKarmaException, NoValueFoundInNodeException, HNodeNotFoundKarmaException {
+		if (termSet.constantValue != null)
+			return termSet.constantValue;
+		
 		StringBuilder output = new StringBuilder();
-		for (TemplateTerm term:termSet.getAllTerms()) {
+		for (int i=0; i<termSet.termValues.length; i++) {
 			// String template term
-			if (term instanceof StringTemplateTerm) {
-				output.append(term.getTemplateTermValue());
+			if (!termSet.isColumnTerm[i]) {
+				if (termSet.termValues[i] != null)
+					output.append(termSet.termValues[i]);
 			} 
 			// Column template term
-			else if (term instanceof ColumnTemplateTerm) {
-				String hNodeId = translator.getHNodeIdForColumnName(term.getTemplateTermValue());
+			else {
+				String hNodeId = termSet.hNodeIds[i];
+				if (hNodeId == null) {
+					throw new HNodeNotFoundKarmaException("Unable to find HNodeId for column name", 
+							termSet.termValues[i]);
+				}
 				if (node.canReachNeighbor(hNodeId)) {
 					Node neighborNode = node.getNeighbor(hNodeId);
 					if (neighborNode != null) {
-						if (neighborNode.getValue().asString() == null 
-								|| neighborNode.getValue().asString().equals("")) {
+						String value = neighborNode.getValue().asString();
+						if (value == null || value.equals("")) {
 							throw new NoValueFoundInNodeException();
 						}
-						output.append(neighborNode.getValue().asString());
+						output.append(value);
 					}
 				} else {
 					String columnName = this.factory.getHNode(hNodeId).getColumnName();
@@ -503,6 +678,20 @@ public class KR2RMLWorksheetRDFGenerator {
 	}
 	
 	private String getExpandedAndNormalizedUri(String uri) {
+		return getExpandedAndNormalizedUri(uri, uriCache);
+	}
+	
+	private String getExpandedAndNormalizedUri(String uri, ExpandedUriCache cache) {
+		// The same subjects, predicates and types come up many times in a worksheet
+		String expandedUri = cache.get(uri);
+		if (expandedUri == null) {
+			expandedUri = expandAndNormalizeUri(uri);
+			cache.put(uri, expandedUri);
+		}
+		return expandedUri;
+	}
+	
+	private String expandAndNormalizeUri(String uri) {
 		// Check if the predicate contains a predicate.
 		if (!uri.startsWith("http:") && uri.contains(":")) {
 			// Replace the prefix with proper namespace by looking into the ontology manager
@@ -587,7 +776,7 @@ public class KR2RMLWorksheetRDFGenerator {
 		}
 	}
 	
-	private String getColumnContextUri (String hNodeId) {
+	private synchronized String getColumnContextUri (String hNodeId) {
 		if (hNodeToContextUriMap.containsKey(hNodeId))
 			return hNodeToContextUriMap.get(hNodeId);
 		else {
@@ -600,46 +789,83 @@ public class KR2RMLWorksheetRDFGenerator {
 	
 	private void generateColumnProvenanceInformation() {
 		for (String hNodeId:hNodeToContextUriMap.keySet()) {
-			List<String> columnTriples = getColumnContextTriples(hNodeId);
-			for (String triple:columnTriples) {
-				outWriter.println(triple);
-			}
+			generateColumnContextTriples(hNodeId);
 			
 			// Generate wasDerivedFrom property if required
 			HNode hNode = factory.getHNode(hNodeId);
 			if (hNode.isDerivedFromAnotherColumn()) {
 				HNode originalHNode = factory.getHNode(hNode.getOriginalColumnHNodeId());
 				if (originalHNode != null) {
-					columnTriples = getColumnContextTriples(originalHNode.getId());
-					for (String triple:columnTriples) {
-						outWriter.println(triple);
-					}
+					generateColumnContextTriples(originalHNode.getId());
 					
-					String derivedFromTriple = constructTripleWithURIObject(
-							hNodeToContextUriMap.get(hNodeId), Uris.PROV_WAS_DERIVED_FROM_URI, 
+					sink.outputTripleWithURIObject(hNodeToContextUriMap.get(hNodeId), 
+							getExpandedAndNormalizedUri(Uris.PROV_WAS_DERIVED_FROM_URI), 
 							getColumnContextUri(originalHNode.getId()));
-					outWriter.println(derivedFromTriple);
 				}
 			}
 		}
 	}
 	
-	private List<String> getColumnContextTriples(String hNodeId) {
-		List<String> colContextTriples = new ArrayList<String>();
-		String colUri = getColumnContextUri(hNodeId);
+	private void generateColumnContextTriples(String hNodeId) {
+		String colUri = "<" + getColumnContextUri(hNodeId) + ">";
 		
 		// Generate the type
-		String typeTriple = constructTripleWithURIObject("<" + colUri + ">", Uris.RDF_TYPE_URI, 
-				"<" + Uris.PROV_ENTITY_URI + ">");
-		colContextTriples.add(typeTriple);
+		sink.outputTripleWithURIObject(colUri, rdfTypePredicate, "<" + Uris.PROV_ENTITY_URI + ">");
 		
 		// Generate the label
 		HNode hNode = factory.getHNode(hNodeId);
-		String labelTriple = constructTripleWithLiteralObject("<" + colUri + ">", Uris.RDFS_LABEL_URI, 
+		sink.outputTripleWithLiteralObject(colUri, getExpandedAndNormalizedUri(Uris.RDFS_LABEL_URI), 
 				hNode.getColumnName(), "");
-		colContextTriples.add(labelTriple);
+	}
+	
+	/**
+	 * Identifies a triple (or a quad) of a top level row for removing the duplicates, 
+	 * without concatenating its components into a single string.
+	 */
+	private static class TripleKey {
+		private final String subject;
+		private final String predicate;
+		private final String object;
+		private final String literalType;
+		private final String graph;
+		private final int hash;
 		
-		return colContextTriples;
+		TripleKey(String subject, String predicate, String object, String literalType, 
+				String graph) {
+			this.subject = subject;
+			this.predicate = predicate;
+			this.object = object;
+			this.literalType = literalType;
+			this.graph = graph;
+			int h = subject.hashCode();
+			h = 31 * h + predicate.hashCode();
+			h = 31 * h + object.hashCode();
+			h = 31 * h + (literalType == null ? 0 : literalType.hashCode());
+			h = 31 * h + (graph == null ? 0 : graph.hashCode());
+			this.hash = h;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof TripleKey))
+				return false;
+			TripleKey other = (TripleKey) obj;
+			return hash == other.hash && subject.equals(other.subject) 
+					&& predicate.equals(other.predicate) && object.equals(other.object) 
+					&& equalsOrBothNull(literalType, other.literalType) 
+					&& equalsOrBothNull(graph, other.graph);
+		}
+		
+		private static boolean equalsOrBothNull(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
 	}
 }
 
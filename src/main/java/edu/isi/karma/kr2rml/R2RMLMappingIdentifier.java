@@ -20,4 +20,26 @@ public class R2RMLMappingIdentifier {
 		return location;
 	}
 	
+	// URL.equals resolves the host names, compare the locations as strings instead
+	@Override
+	public int hashCode() {
+		int result = name == null ? 0 : name.hashCode();
+		return 31 * result + (location == null ? 0 : location.toExternalForm().hashCode());
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof R2RMLMappingIdentifier))
+			return false;
+		R2RMLMappingIdentifier other = (R2RMLMappingIdentifier) obj;
+		if (name == null ? other.name != null : !name.equals(other.name))
+			return false;
+		if (location == null)
+			return other.location == null;
+		return other.location != null 
+				&& location.toExternalForm().equals(other.location.toExternalForm());
+	}
+	
 }
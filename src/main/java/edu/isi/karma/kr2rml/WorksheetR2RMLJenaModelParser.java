@@ -61,6 +61,15 @@ public class WorksheetR2RMLJenaModelParser {
 	{
 		this.id = id;
 	}
+	
+	/**
+	 * Creates a parser for a model that was already loaded from the location of the identifier.
+	 */
+	WorksheetR2RMLJenaModelParser(R2RMLMappingIdentifier id, Model model)
+	{
+		this.id = id;
+		this.model = model;
+	}
 
 	public KR2RMLMapping parse() throws IOException, KarmaException, JSONException
 	{
@@ -130,9 +139,13 @@ public class WorksheetR2RMLJenaModelParser {
 		
 	}
     private Model loadSourceModelIntoJenaModel(URL modelURL) throws IOException {
+        InputStream s = modelURL.openStream();
+        return loadSourceModelIntoJenaModel(s);
+    }
+    
+    static Model loadSourceModelIntoJenaModel(InputStream s) {
         // Create an empty Model
         Model model = ModelFactory.createDefaultModel();
-        InputStream s = modelURL.openStream();
         model.read(s, null, "TURTLE");
         return model;
     }
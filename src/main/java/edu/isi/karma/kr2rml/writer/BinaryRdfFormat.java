@@ -0,0 +1,37 @@
+package edu.isi.karma.kr2rml.writer;
+
+/**
+ * Constants of the binary RDF stream written by {@link BinaryRdfSink} and read by 
+ * {@link BinaryRdfReader}. The stream is a sequence of records encoded with the Thrift 
+ * compact protocol. It starts with {@link #MAGIC} and {@link #VERSION}, and every record 
+ * starts with one of the tags below:
+ * <ul>
+ * <li>TERM: a string, the next entry of the term table. Ids start at 1, 0 means no term.</li>
+ * <li>URI_TRIPLE: the term ids of the subject, predicate and object.</li>
+ * <li>LITERAL_TRIPLE: the term ids of the subject, predicate, value and literal type.</li>
+ * <li>LITERAL_QUAD: same as LITERAL_TRIPLE followed by the term id of the graph.</li>
+ * <li>ROW_END: the end of a top level worksheet row.</li>
+ * <li>RESET: the term table is emptied and the ids start again at 1.</li>
+ * <li>END: the end of the stream.</li>
+ * </ul>
+ * Subjects, predicates and URI objects are stored in their N-Triples form, as they are 
+ * given to the {@link RdfSink}.
+ */
+final class BinaryRdfFormat {
+
+	static final String MAGIC = "KarmaBinaryRDF";
+	static final int VERSION = 1;
+	
+	static final byte END = 0;
+	static final byte TERM = 1;
+	static final byte URI_TRIPLE = 2;
+	static final byte LITERAL_TRIPLE = 3;
+	static final byte LITERAL_QUAD = 4;
+	static final byte ROW_END = 5;
+	static final byte RESET = 6;
+	
+	static final int NO_TERM = 0;
+	
+	private BinaryRdfFormat() {
+	}
+}
@@ -0,0 +1,86 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+/**
+ * Reads a stream written by {@link BinaryRdfSink} and outputs its statements to another 
+ * {@link RdfSink}, e.g. a {@link NTriplesRdfSink} to convert it back to N-Triples.
+ */
+public class BinaryRdfReader {
+
+	private final TProtocol protocol;
+	
+	public BinaryRdfReader(InputStream in) {
+		this.protocol = new TCompactProtocol(new TIOStreamTransport(in));
+	}
+	
+	/**
+	 * @return the number of statements read
+	 */
+	public long read(RdfSink sink) throws IOException {
+		List<String> terms = new ArrayList<String>();
+		// Ids start at 1
+		terms.add(null);
+		long numStatements = 0;
+		try {
+			String magic = protocol.readString();
+			int version = protocol.readI32();
+			if (!BinaryRdfFormat.MAGIC.equals(magic) || version != BinaryRdfFormat.VERSION) {
+				throw new IOException("Not a binary RDF stream of version " + BinaryRdfFormat.VERSION);
+			}
+			
+			while (true) {
+				byte tag = protocol.readByte();
+				switch (tag) {
+				case BinaryRdfFormat.TERM:
+					terms.add(protocol.readString());
+					break;
+				case BinaryRdfFormat.URI_TRIPLE:
+					sink.outputTripleWithURIObject(getTerm(terms), getTerm(terms), getTerm(terms));
+					numStatements++;
+					break;
+				case BinaryRdfFormat.LITERAL_TRIPLE:
+					sink.outputTripleWithLiteralObject(getTerm(terms), getTerm(terms), 
+							getTerm(terms), getTerm(terms));
+					numStatements++;
+					break;
+				case BinaryRdfFormat.LITERAL_QUAD:
+					sink.outputQuadWithLiteralObject(getTerm(terms), getTerm(terms), 
+							getTerm(terms), getTerm(terms), getTerm(terms));
+					numStatements++;
+					break;
+				case BinaryRdfFormat.ROW_END:
+					sink.finishRow();
+					break;
+				case BinaryRdfFormat.RESET:
+					terms.subList(1, terms.size()).clear();
+					break;
+				case BinaryRdfFormat.END:
+					sink.flush();
+					return numStatements;
+				default:
+					throw new IOException("Unknown record type in the binary RDF stream: " + tag);
+				}
+			}
+		} catch (TException e) {
+			throw new IOException("Unable to read the binary RDF stream", e);
+		}
+	}
+	
+	private String getTerm(List<String> terms) throws TException, IOException {
+		int id = protocol.readI32();
+		if (id == BinaryRdfFormat.NO_TERM)
+			return null;
+		if (id >= terms.size())
+			throw new IOException("Undefined term id in the binary RDF stream: " + id);
+		return terms.get(id);
+	}
+}
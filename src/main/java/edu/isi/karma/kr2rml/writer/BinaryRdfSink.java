@@ -0,0 +1,166 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * Writes the statements as a compact binary stream (see {@link BinaryRdfFormat}). Every 
+ * distinct term is written once to the term table and the statements refer to it by id. 
+ * The term table is reset when it holds <code>maxTermTableSize</code> terms, so the memory 
+ * used by the writer and the reader stays bounded.
+ */
+public class BinaryRdfSink implements RdfSink {
+
+	public static int DEFAULT_MAX_TERM_TABLE_SIZE = 1000000;
+	// Maximum number of terms a single statement adds to the term table
+	private static final int MAX_TERMS_PER_STATEMENT = 5;
+	
+	private final TTransport transport;
+	private final TProtocol protocol;
+	private final Map<String, Integer> termIds = new HashMap<String, Integer>();
+	private final int maxTermTableSize;
+	private int lastTermId = 0;
+	private boolean closed = false;
+	
+	public BinaryRdfSink(OutputStream out) throws IOException {
+		this(out, DEFAULT_MAX_TERM_TABLE_SIZE);
+	}
+	
+	public BinaryRdfSink(OutputStream out, int maxTermTableSize) throws IOException {
+		this.transport = new TIOStreamTransport(out);
+		this.protocol = new TCompactProtocol(transport);
+		this.maxTermTableSize = Math.max(MAX_TERMS_PER_STATEMENT, maxTermTableSize);
+		try {
+			protocol.writeString(BinaryRdfFormat.MAGIC);
+			protocol.writeI32(BinaryRdfFormat.VERSION);
+		} catch (TException e) {
+			throw new IOException("Unable to write the binary RDF header", e);
+		}
+	}
+	
+	@Override
+	public void outputTripleWithURIObject(String subject, String predicate, String object) {
+		try {
+			ensureTermTableCapacity();
+			int s = getTermId(subject);
+			int p = getTermId(predicate);
+			int o = getTermId(object);
+			protocol.writeByte(BinaryRdfFormat.URI_TRIPLE);
+			protocol.writeI32(s);
+			protocol.writeI32(p);
+			protocol.writeI32(o);
+		} catch (TException e) {
+			throw new RuntimeException("Unable to write the RDF", e);
+		}
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subject, String predicate, String value, 
+			String literalType) {
+		try {
+			ensureTermTableCapacity();
+			int s = getTermId(subject);
+			int p = getTermId(predicate);
+			int v = getTermId(value);
+			int t = getLiteralTypeId(literalType);
+			protocol.writeByte(BinaryRdfFormat.LITERAL_TRIPLE);
+			protocol.writeI32(s);
+			protocol.writeI32(p);
+			protocol.writeI32(v);
+			protocol.writeI32(t);
+		} catch (TException e) {
+			throw new RuntimeException("Unable to write the RDF", e);
+		}
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subject, String predicate, String value, 
+			String literalType, String graph) {
+		try {
+			ensureTermTableCapacity();
+			int s = getTermId(subject);
+			int p = getTermId(predicate);
+			int v = getTermId(value);
+			int t = getLiteralTypeId(literalType);
+			int g = getTermId(graph);
+			protocol.writeByte(BinaryRdfFormat.LITERAL_QUAD);
+			protocol.writeI32(s);
+			protocol.writeI32(p);
+			protocol.writeI32(v);
+			protocol.writeI32(t);
+			protocol.writeI32(g);
+		} catch (TException e) {
+			throw new RuntimeException("Unable to write the RDF", e);
+		}
+	}
+
+	@Override
+	public void finishRow() {
+		try {
+			protocol.writeByte(BinaryRdfFormat.ROW_END);
+		} catch (TException e) {
+			throw new RuntimeException("Unable to write the RDF", e);
+		}
+	}
+	
+	/**
+	 * Resets the term table before a statement if it could grow beyond its maximum size, 
+	 * so that all the ids of the statement refer to the same table.
+	 */
+	private void ensureTermTableCapacity() throws TException {
+		if (termIds.size() + MAX_TERMS_PER_STATEMENT > maxTermTableSize) {
+			protocol.writeByte(BinaryRdfFormat.RESET);
+			termIds.clear();
+			lastTermId = 0;
+		}
+	}
+	
+	private int getLiteralTypeId(String literalType) throws TException {
+		if (literalType == null || literalType.equals(""))
+			return BinaryRdfFormat.NO_TERM;
+		return getTermId(literalType);
+	}
+	
+	private int getTermId(String term) throws TException {
+		Integer id = termIds.get(term);
+		if (id == null) {
+			id = ++lastTermId;
+			termIds.put(term, id);
+			protocol.writeByte(BinaryRdfFormat.TERM);
+			protocol.writeString(term);
+		}
+		return id;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		try {
+			transport.flush();
+		} catch (TException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			protocol.writeByte(BinaryRdfFormat.END);
+			transport.flush();
+		} catch (TException e) {
+			throw new IOException(e);
+		} finally {
+			closed = true;
+			transport.close();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the statements in memory until they are replayed into another sink. Used to 
+ * generate parts of the output independently and emit them later in a fixed order.
+ */
+public class BufferedRdfSink implements RdfSink {
+
+	private enum StatementType {
+		uriTriple, literalTriple, literalQuad, rowEnd
+	}
+	
+	private final List<StatementType> types = new ArrayList<StatementType>();
+	private final List<String> components = new ArrayList<String>();
+	
+	@Override
+	public void outputTripleWithURIObject(String subject, String predicate, String object) {
+		types.add(StatementType.uriTriple);
+		components.add(subject);
+		components.add(predicate);
+		components.add(object);
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subject, String predicate, String value, 
+			String literalType) {
+		types.add(StatementType.literalTriple);
+		components.add(subject);
+		components.add(predicate);
+		components.add(value);
+		components.add(literalType);
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subject, String predicate, String value, 
+			String literalType, String graph) {
+		types.add(StatementType.literalQuad);
+		components.add(subject);
+		components.add(predicate);
+		components.add(value);
+		components.add(literalType);
+		components.add(graph);
+	}
+
+	@Override
+	public void finishRow() {
+		types.add(StatementType.rowEnd);
+	}
+	
+	/**
+	 * Outputs all the buffered statements to the given sink and empties the buffer.
+	 */
+	public void replayTo(RdfSink sink) {
+		int i = 0;
+		for (StatementType type : types) {
+			switch (type) {
+			case uriTriple:
+				sink.outputTripleWithURIObject(components.get(i), components.get(i+1), 
+						components.get(i+2));
+				i += 3;
+				break;
+			case literalTriple:
+				sink.outputTripleWithLiteralObject(components.get(i), components.get(i+1), 
+						components.get(i+2), components.get(i+3));
+				i += 4;
+				break;
+			case literalQuad:
+				sink.outputQuadWithLiteralObject(components.get(i), components.get(i+1), 
+						components.get(i+2), components.get(i+3), components.get(i+4));
+				i += 5;
+				break;
+			case rowEnd:
+				sink.finishRow();
+				break;
+			}
+		}
+		types.clear();
+		components.clear();
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,489 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Removes the statements that were already output to the wrapped sink, across all rows
+ * and worksheets written to it, using a bounded amount of memory.
+ *
+ * Every statement is identified by a 128-bit hash of its components. The hashes seen so
+ * far are kept in a Bloom filter and in an in-memory hash table, which is sorted and spilled
+ * to a temporary file when it is full. A statement is new if the Bloom filter says so,
+ * otherwise the table and the spilled files are searched for its hash. Half of the memory
+ * budget goes to the Bloom filter and half to the table. The first hash of every block of
+ * a spilled file is kept in memory, so that looking up a hash reads one block of the file.
+ */
+public class DeduplicatingRdfSink implements RdfSink {
+
+	public static long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	private static final int NUM_BLOOM_FILTER_HASHES = 5;
+	// The spilled files are merged into one when there are more than this
+	private static final int MAX_SPILLED_RUNS = 8;
+	// A lookup in a spilled file reads one block of this many hashes
+	private static final int PAIRS_PER_BLOCK = 256;
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+	private static final byte URI_TRIPLE = 1;
+	private static final byte LITERAL_TRIPLE = 2;
+	private static final byte LITERAL_QUAD = 3;
+
+	private static Logger logger = LoggerFactory.getLogger(DeduplicatingRdfSink.class);
+
+	private final RdfSink sink;
+	private final File spillDirectory;
+
+	private final long[] bloomFilter;
+	private final long bloomFilterMask;
+
+	// Pairs of (high, low) hash values, (0, 0) marks an empty slot
+	private final long[] table;
+	private final int tableMask;
+	private final int maxTableEntries;
+	private int numTableEntries = 0;
+
+	private final List<Run> runs = new ArrayList<Run>();
+	private final ByteBuffer block = ByteBuffer.allocate(PAIRS_PER_BLOCK * 16);
+
+	private long numStatements = 0;
+	private long numDuplicates = 0;
+
+	public DeduplicatingRdfSink(RdfSink sink) {
+		this(sink, DEFAULT_MEMORY_BUDGET, null);
+	}
+
+	/**
+	 * @param memoryBudget approximate number of bytes used to remember the statements
+	 * @param spillDirectory where the temporary files are created, or null for the
+	 * default temporary directory
+	 */
+	public DeduplicatingRdfSink(RdfSink sink, long memoryBudget, File spillDirectory) {
+		this.sink = sink;
+		this.spillDirectory = spillDirectory;
+		long halfBudget = Math.max(1024, memoryBudget / 2);
+
+		long numBloomFilterBits = Long.highestOneBit(Math.min(halfBudget * 8, 1L << 36));
+		this.bloomFilter = new long[(int) (numBloomFilterBits / 64)];
+		this.bloomFilterMask = numBloomFilterBits - 1;
+
+		int numSlots = (int) Long.highestOneBit(Math.min(halfBudget / 16, 1 << 29));
+		this.table = new long[numSlots * 2];
+		this.tableMask = numSlots - 1;
+		this.maxTableEntries = numSlots / 4 * 3;
+	}
+
+	@Override
+	public void outputTripleWithURIObject(String subject, String predicate, String object) {
+		if (isNewStatement(URI_TRIPLE, subject, predicate, object, null, null)) {
+			sink.outputTripleWithURIObject(subject, predicate, object);
+		}
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subject, String predicate, String value,
+			String literalType) {
+		if (isNewStatement(LITERAL_TRIPLE, subject, predicate, value, literalType, null)) {
+			sink.outputTripleWithLiteralObject(subject, predicate, value, literalType);
+		}
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subject, String predicate, String value,
+			String literalType, String graph) {
+		if (isNewStatement(LITERAL_QUAD, subject, predicate, value, literalType, graph)) {
+			sink.outputQuadWithLiteralObject(subject, predicate, value, literalType, graph);
+		}
+	}
+
+	@Override
+	public void finishRow() {
+		sink.finishRow();
+	}
+
+	public long getNumStatements() {
+		return numStatements;
+	}
+
+	/**
+	 * @return the number of statements that were not output because they were duplicates
+	 */
+	public long getNumDuplicates() {
+		return numDuplicates;
+	}
+
+	private boolean isNewStatement(byte type, String subject, String predicate, String object,
+			String literalType, String graph) {
+		numStatements++;
+		Hasher hasher = HASH_FUNCTION.newHasher();
+		hasher.putByte(type);
+		putTerm(hasher, subject);
+		putTerm(hasher, predicate);
+		putTerm(hasher, object);
+		putTerm(hasher, literalType);
+		putTerm(hasher, graph);
+		byte[] hash = hasher.hash().asBytes();
+		long low = toLong(hash, 0);
+		long high = toLong(hash, 8);
+		if (low == 0 && high == 0) {
+			// Reserved for the empty slots of the table
+			low = 1;
+		}
+
+		try {
+			if (addToBloomFilter(high, low) || !contains(high, low)) {
+				addToTable(high, low);
+				return true;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to access the spilled statement hashes", e);
+		}
+		numDuplicates++;
+		return false;
+	}
+
+	private static void putTerm(Hasher hasher, String term) {
+		if (term == null) {
+			hasher.putInt(-1);
+		} else {
+			hasher.putInt(term.length());
+			hasher.putString(term);
+		}
+	}
+
+	private static long toLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset + 7; i >= offset; i--) {
+			value = (value << 8) | (bytes[i] & 0xff);
+		}
+		return value;
+	}
+
+	/**
+	 * @return true if the hash was definitely not in the filter before
+	 */
+	private boolean addToBloomFilter(long high, long low) {
+		boolean added = false;
+		for (int i = 0; i < NUM_BLOOM_FILTER_HASHES; i++) {
+			long bit = (low + i * high) & bloomFilterMask;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << (bit & 63);
+			if ((bloomFilter[word] & mask) == 0) {
+				bloomFilter[word] |= mask;
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	private boolean contains(long high, long low) throws IOException {
+		int slot = (int) (low ^ (low >>> 32)) & tableMask;
+		while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+			if (table[slot * 2] == high && table[slot * 2 + 1] == low)
+				return true;
+			slot = (slot + 1) & tableMask;
+		}
+		for (Run run : runs) {
+			if (run.contains(high, low, block))
+				return true;
+		}
+		return false;
+	}
+
+	private void addToTable(long high, long low) {
+		int slot = (int) (low ^ (low >>> 32)) & tableMask;
+		while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+			slot = (slot + 1) & tableMask;
+		}
+		table[slot * 2] = high;
+		table[slot * 2 + 1] = low;
+		numTableEntries++;
+		if (numTableEntries >= maxTableEntries) {
+			try {
+				spill();
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to spill the statement hashes to disk", e);
+			}
+		}
+	}
+
+	private static int compare(long high1, long low1, long high2, long low2) {
+		if (high1 != high2)
+			return high1 < high2 ? -1 : 1;
+		if (low1 != low2)
+			return low1 < low2 ? -1 : 1;
+		return 0;
+	}
+
+	private void spill() throws IOException {
+		// Compact the entries at the start of the table and sort them
+		int numEntries = 0;
+		for (int slot = 0; slot <= tableMask; slot++) {
+			if (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+				table[numEntries * 2] = table[slot * 2];
+				table[numEntries * 2 + 1] = table[slot * 2 + 1];
+				numEntries++;
+			}
+		}
+		sortPairs(table, 0, numEntries - 1);
+
+		RunWriter out = new RunWriter(createRunFile());
+		try {
+			for (int i = 0; i < numEntries; i++) {
+				out.write(table[i * 2], table[i * 2 + 1]);
+			}
+		} finally {
+			out.close();
+		}
+		Run run = out.open();
+		runs.add(run);
+
+		Arrays.fill(table, 0);
+		numTableEntries = 0;
+		logger.debug("Spilled " + numEntries + " statement hashes to " + run.file.getAbsolutePath());
+
+		if (runs.size() > MAX_SPILLED_RUNS) {
+			mergeRuns();
+		}
+	}
+
+	private static void sortPairs(long[] pairs, int from, int to) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			long pivotHigh = pairs[middle * 2];
+			long pivotLow = pairs[middle * 2 + 1];
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (compare(pairs[i * 2], pairs[i * 2 + 1], pivotHigh, pivotLow) < 0)
+					i++;
+				while (compare(pairs[j * 2], pairs[j * 2 + 1], pivotHigh, pivotLow) > 0)
+					j--;
+				if (i <= j) {
+					swapPairs(pairs, i, j);
+					i++;
+					j--;
+				}
+			}
+			// Recurse into the smaller part to bound the stack depth
+			if (j - from < to - i) {
+				sortPairs(pairs, from, j);
+				from = i;
+			} else {
+				sortPairs(pairs, i, to);
+				to = j;
+			}
+		}
+	}
+
+	private static void swapPairs(long[] pairs, int i, int j) {
+		long high = pairs[i * 2];
+		long low = pairs[i * 2 + 1];
+		pairs[i * 2] = pairs[j * 2];
+		pairs[i * 2 + 1] = pairs[j * 2 + 1];
+		pairs[j * 2] = high;
+		pairs[j * 2 + 1] = low;
+	}
+
+	/**
+	 * Merges all the sorted runs into a single one. The runs never contain the same hash
+	 * as a hash is only added once.
+	 */
+	private void mergeRuns() throws IOException {
+		int numRuns = runs.size();
+		DataInputStream[] inputs = new DataInputStream[numRuns];
+		long[] highs = new long[numRuns];
+		long[] lows = new long[numRuns];
+		boolean[] hasMore = new boolean[numRuns];
+
+		RunWriter out = new RunWriter(createRunFile());
+		try {
+			for (int i = 0; i < numRuns; i++) {
+				inputs[i] = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(runs.get(i).file)));
+				hasMore[i] = readPair(inputs[i], highs, lows, i);
+			}
+			while (true) {
+				int min = -1;
+				for (int i = 0; i < numRuns; i++) {
+					if (hasMore[i] && (min == -1
+							|| compare(highs[i], lows[i], highs[min], lows[min]) < 0)) {
+						min = i;
+					}
+				}
+				if (min == -1)
+					break;
+				out.write(highs[min], lows[min]);
+				hasMore[min] = readPair(inputs[min], highs, lows, min);
+			}
+		} finally {
+			out.close();
+			for (DataInputStream input : inputs) {
+				if (input != null)
+					input.close();
+			}
+		}
+
+		deleteRuns();
+		runs.add(out.open());
+	}
+
+	private static boolean readPair(DataInputStream in, long[] highs, long[] lows, int index)
+			throws IOException {
+		try {
+			highs[index] = in.readLong();
+			lows[index] = in.readLong();
+			return true;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	private File createRunFile() throws IOException {
+		File runFile = File.createTempFile("karma-rdf-dedup", ".bin", spillDirectory);
+		runFile.deleteOnExit();
+		return runFile;
+	}
+
+	private void deleteRuns() throws IOException {
+		for (Run run : runs) {
+			run.input.close();
+		}
+		for (Run run : runs) {
+			if (!run.file.delete())
+				logger.warn("Unable to delete " + run.file.getAbsolutePath());
+		}
+		runs.clear();
+	}
+
+	/**
+	 * Writes the sorted pairs of a run and keeps the first pair of every block.
+	 */
+	private static class RunWriter {
+		private final File file;
+		private final DataOutputStream out;
+		private long[] blockIndex = new long[64];
+		private int numBlocks = 0;
+		private long numPairs = 0;
+
+		RunWriter(File file) throws IOException {
+			this.file = file;
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		}
+
+		void write(long high, long low) throws IOException {
+			if (numPairs % PAIRS_PER_BLOCK == 0) {
+				if (numBlocks * 2 == blockIndex.length) {
+					blockIndex = Arrays.copyOf(blockIndex, blockIndex.length * 2);
+				}
+				blockIndex[numBlocks * 2] = high;
+				blockIndex[numBlocks * 2 + 1] = low;
+				numBlocks++;
+			}
+			out.writeLong(high);
+			out.writeLong(low);
+			numPairs++;
+		}
+
+		void close() throws IOException {
+			out.close();
+		}
+
+		Run open() throws IOException {
+			return new Run(file, Arrays.copyOf(blockIndex, numBlocks * 2), numBlocks, numPairs);
+		}
+	}
+
+	/**
+	 * A spilled file of pairs sorted by the high part and then the low part.
+	 */
+	private static class Run {
+		final File file;
+		final RandomAccessFile input;
+		// The first pair of every block
+		private final long[] blockIndex;
+		private final int numBlocks;
+		private final long numPairs;
+
+		Run(File file, long[] blockIndex, int numBlocks, long numPairs) throws IOException {
+			this.file = file;
+			this.input = new RandomAccessFile(file, "r");
+			this.blockIndex = blockIndex;
+			this.numBlocks = numBlocks;
+			this.numPairs = numPairs;
+		}
+
+		/**
+		 * Finds the block that may contain the pair in memory, and searches the block.
+		 */
+		boolean contains(long high, long low, ByteBuffer block) throws IOException {
+			// The last block whose first pair is not greater than the pair
+			int blockNumber = -1;
+			int from = 0;
+			int to = numBlocks - 1;
+			while (from <= to) {
+				int middle = (from + to) >>> 1;
+				if (compare(blockIndex[middle * 2], blockIndex[middle * 2 + 1], high, low) <= 0) {
+					blockNumber = middle;
+					from = middle + 1;
+				} else {
+					to = middle - 1;
+				}
+			}
+			if (blockNumber < 0)
+				return false;
+
+			long firstPair = (long) blockNumber * PAIRS_PER_BLOCK;
+			int numPairsInBlock = (int) Math.min(PAIRS_PER_BLOCK, numPairs - firstPair);
+			input.seek(firstPair * 16);
+			input.readFully(block.array(), 0, numPairsInBlock * 16);
+
+			from = 0;
+			to = numPairsInBlock - 1;
+			while (from <= to) {
+				int middle = (from + to) >>> 1;
+				int comparison = compare(block.getLong(middle * 16), block.getLong(middle * 16 + 8),
+						high, low);
+				if (comparison == 0)
+					return true;
+				else if (comparison < 0)
+					from = middle + 1;
+				else
+					to = middle - 1;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		sink.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sink.close();
+		} finally {
+			deleteRuns();
+		}
+	}
+}
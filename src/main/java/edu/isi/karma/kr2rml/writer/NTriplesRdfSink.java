@@ -0,0 +1,97 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Writes the triples as N-Triples, and the quads as N-Quads. The statements are 
+ * encoded into a reusable character buffer that is copied to the underlying writer 
+ * whenever it grows beyond {@link #FLUSH_THRESHOLD} characters, so no intermediate 
+ * String is built for a statement. Each top level row is followed by an empty line.
+ */
+public class NTriplesRdfSink implements RdfSink {
+
+	public static final int FLUSH_THRESHOLD = 8192;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	
+	private final Writer out;
+	private final CharArrayWriter buffer;
+	
+	public NTriplesRdfSink(Writer out) {
+		this.out = out;
+		this.buffer = new CharArrayWriter(FLUSH_THRESHOLD + 1024);
+	}
+	
+	@Override
+	public void outputTripleWithURIObject(String subject, String predicate, String object) {
+		buffer.append(subject).append(' ').append(predicate).append(' ').append(object);
+		endStatement();
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subject, String predicate, String value, 
+			String literalType) {
+		appendLiteralStatement(subject, predicate, value, literalType);
+		endStatement();
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subject, String predicate, String value, 
+			String literalType, String graph) {
+		appendLiteralStatement(subject, predicate, value, literalType);
+		buffer.append(" <").append(graph).append('>');
+		endStatement();
+	}
+	
+	private void appendLiteralStatement(String subject, String predicate, String value, 
+			String literalType) {
+		buffer.append(subject).append(' ').append(predicate).append(" \"");
+		try {
+			// Use Apache Commons to escape the value
+			StringEscapeUtils.ESCAPE_JAVA.translate(value, buffer);
+		} catch (IOException e) {
+			// Never thrown by a CharArrayWriter
+		}
+		buffer.append('"');
+		// Add the RDF literal type to the literal if present
+		if (literalType != null && !literalType.equals("")) {
+			buffer.append("^^<").append(literalType).append('>');
+		}
+	}
+	
+	private void endStatement() {
+		buffer.append(" .").append(LINE_SEPARATOR);
+		if (buffer.size() > FLUSH_THRESHOLD) {
+			writeBuffer();
+		}
+	}
+
+	@Override
+	public void finishRow() {
+		buffer.append(LINE_SEPARATOR);
+	}
+	
+	private void writeBuffer() {
+		try {
+			buffer.writeTo(out);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write the RDF", e);
+		}
+		buffer.reset();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writeBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		out.close();
+	}
+}
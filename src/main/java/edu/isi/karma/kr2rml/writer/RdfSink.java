@@ -0,0 +1,34 @@
+package edu.isi.karma.kr2rml.writer;
+
+import java.io.IOException;
+
+/**
+ * Receives the triples produced by the KR2RML RDF generator one component at a time, 
+ * so that implementations can encode them without building the whole statement first.
+ * 
+ * Subjects, predicates and URI objects are given in their N-Triples form, i.e. 
+ * IRIs enclosed in angle brackets and blank nodes starting with <code>_:</code>. 
+ * Literal values are given unescaped, literal types and graphs as plain IRIs.
+ */
+public interface RdfSink {
+
+	public void outputTripleWithURIObject(String subject, String predicate, String object);
+	
+	/**
+	 * @param literalType the datatype IRI of the literal, or null/empty for a plain literal
+	 */
+	public void outputTripleWithLiteralObject(String subject, String predicate, String value, 
+			String literalType);
+	
+	public void outputQuadWithLiteralObject(String subject, String predicate, String value, 
+			String literalType, String graph);
+	
+	/**
+	 * Called after all the triples of a top level worksheet row have been output.
+	 */
+	public void finishRow();
+	
+	public void flush() throws IOException;
+	
+	public void close() throws IOException;
+}
@@ -266,16 +266,13 @@ public class SemanticTypeUtil {
 	 */
 	public static void identifyOutliers(Worksheet worksheet, String predictedType, HNodePath path, Tag outlierTag,
 			Map<ColumnFeature, Collection<String>> columnFeatures, CRFModelHandler crfModelHandler) {
-		Collection<Node> nodes = new ArrayList<Node>();
-		worksheet.getDataTable().collectNodes(path, nodes);
-
 		// Identify the top semantic type for each node
 		// It it does not matches the predicted type, it is a outlier.
 		Set<String> allNodeIds = new HashSet<String>();
 		Set<String> outlierNodeIds = new HashSet<String>();
 
 		int outlierCounter = 0;
-		for (Node node : nodes) {
+		for (Node node : worksheet.getDataTable().getColumnNodes(path)) {
 			allNodeIds.add(node.getId());
 
 			// Compute the semantic type for the node value
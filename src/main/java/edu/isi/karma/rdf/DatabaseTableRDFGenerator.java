@@ -34,11 +34,9 @@ import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLMapping;
-import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
-import edu.isi.karma.kr2rml.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.KR2RMLMappingCache;
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.HTable;
 import edu.isi.karma.rep.RepFactory;
@@ -78,103 +76,107 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		this.encoding = encoding;
 	}
 	
-	/*
-	 * Only warn about SQL exception once. //Pedro //TODO: this whole code is copy-pasted
-	 */
-	private static boolean warnedSqlException = false;
 	public void generateRDF(PrintWriter pw, R2RMLMappingIdentifier id) 
 			throws IOException, JSONException, KarmaException, SQLException, ClassNotFoundException {
+		AbstractJDBCUtil dbUtil = JDBCUtilFactory.getInstance(dbType);
+		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
+		try {
+			generateRDF(pw, id, conn, null);
+		} finally {
+			conn.close();
+			removeIdleWorkspaces();
+		}
+	}
+	
+	/**
+	 * Generates the RDF for the rows of the table that satisfy the condition, or for 
+	 * all the rows if the condition is null, using the given connection. The connection 
+	 * is left open, with its auto-commit setting restored, so it can be used for the 
+	 * next partition.
+	 * 
+	 * @return the number of rows read from the table
+	 */
+	public long generateRDF(PrintWriter pw, R2RMLMappingIdentifier id, Connection conn, 
+			String condition) throws IOException, JSONException, KarmaException, SQLException {
 		logger.debug("Generating RDF...");
 
-		WorksheetR2RMLJenaModelParser parserTest = new WorksheetR2RMLJenaModelParser(id);
-		KR2RMLMapping mapping = parserTest.parse();
+		KR2RMLMapping mapping = KR2RMLMappingCache.getInstance().getMapping(id);
 		
 		AbstractJDBCUtil dbUtil = JDBCUtilFactory.getInstance(dbType);
-		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
-		conn.setAutoCommit(false);
 		String query = "Select * FROM " + tablename;
-		java.sql.Statement stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY,
-				java.sql.ResultSet.CONCUR_READ_ONLY);
-		stmt.setFetchSize(DATABASE_TABLE_FETCH_SIZE);
-		
-		ResultSet r = stmt.executeQuery(query);
-		ResultSetMetaData meta = r.getMetaData();;
-		
-		// Get the column names
-		
-		List<String> columnNames = dbUtil.getColumnNames(dBorSIDName, tablename, conn);
-		
-		// Prepare required Karma objects
-	     Workspace workspace = initializeWorkspace();
- 	
-		RepFactory factory = workspace.getFactory();
-		Worksheet wk = factory.createWorksheet(tablename, workspace, encoding);
-		List<String> headersList = addHeaders(wk, columnNames, factory);
-		
+		if (condition != null) {
+			query += " WHERE " + condition;
+		}
+		// The streaming statement turns off auto-commit
+		boolean autoCommit = conn.getAutoCommit();
+		java.sql.Statement stmt = dbUtil.createStreamingStatement(conn);
+		ResultSet r = null;
+		Workspace workspace = null;
 		int counter = 0;
-		
-		while (r.next()) {
-			// Generate RDF and create a new worksheet for every DATABASE_TABLE_FETCH_SIZE rows
-			if(counter%DATABASE_TABLE_FETCH_SIZE == 0 && counter != 0) {
-				generateRDFFromWorksheet(wk, workspace, mapping, pw);
-				logger.debug("Done for " + counter + " rows ..." );
-			    removeWorkspace(workspace);
-			    
-			    parserTest = new WorksheetR2RMLJenaModelParser(id);
-				mapping = parserTest.parse();
-			    workspace = initializeWorkspace();
-			    factory = workspace.getFactory();
-				wk = factory.createWorksheet(tablename, workspace, encoding);
-				headersList = addHeaders(wk, columnNames, factory);
+		try {
+			r = stmt.executeQuery(query);
+			ResultSetMetaData meta = r.getMetaData();
+			
+			// Get the column names from the result set: no other statement can run 
+			// on the connection while a MySQL result set is streamed
+			List<String> columnNames = new ArrayList<String>();
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				columnNames.add(meta.getColumnName(i));
+			}
+			
+			// Prepare required Karma objects
+			workspace = initializeWorkspace();
+			
+			RepFactory factory = workspace.getFactory();
+			Worksheet wk = factory.createWorksheet(tablename, workspace, encoding);
+			List<String> headersList = addHeaders(wk, columnNames, factory);
+			
+			while (r.next()) {
+				// Generate RDF and create a new worksheet for every DATABASE_TABLE_FETCH_SIZE rows
+				if(counter%DATABASE_TABLE_FETCH_SIZE == 0 && counter != 0) {
+					generateRDFFromWorksheet(wk, workspace, mapping, pw);
+					logger.debug("Done for " + counter + " rows ..." );
+					releaseWorkspace(workspace);
+					workspace = null;
+					
+					workspace = initializeWorkspace();
+					factory = workspace.getFactory();
+					wk = factory.createWorksheet(tablename, workspace, encoding);
+					headersList = addHeaders(wk, columnNames, factory);
+					
+				}
 				
+				/** Add the data **/
+				Table dataTable = wk.getDataTable();
+				Row row = dataTable.addRow(factory);
+				for (int i = 1; i <= meta.getColumnCount(); i++) {
+					row.setValue(headersList.get(i-1), dbUtil.getValue(r, i), factory);
+				}
+				counter++;
 			}
 			
-			/** Add the data **/
-	        Table dataTable = wk.getDataTable();
-	        Row row = dataTable.addRow(factory);
-			for (int i = 1; i <= meta.getColumnCount(); i++) {
-				String val;
-				try {
-					val = r.getString(i);
-				} catch (SQLException e) {
-					if (!warnedSqlException) {
-						//logger.warn(e.getMessage());
-						warnedSqlException = true;
-					}
-					val = "SQLException";
+			generateRDFFromWorksheet(wk, workspace, mapping, pw);
+		} finally {
+			// Releasing all the resources
+			if (workspace != null)
+				releaseWorkspace(workspace);
+			try {
+				if (r != null)
+					r.close();
+				stmt.close();
+			} finally {
+				// End the read-only transaction, so that a connection reused for the next 
+				// partition does not keep its snapshot open
+				if (autoCommit) {
+					conn.rollback();
+					conn.setAutoCommit(true);
 				}
-				row.setValue(headersList.get(i-1), val, factory);
 			}
-			counter++;
 		}
-		
-		generateRDFFromWorksheet(wk, workspace, mapping, pw);
-		
-		// Releasing all the resources
-		r.close();
-		conn.close();
-		stmt.close();
 		logger.debug("done");
+		return counter;
 	}
 
-	private void generateRDFFromWorksheet(Worksheet wk, 
-			Workspace workspace, KR2RMLMapping mapping, PrintWriter pw) 
-					throws IOException, JSONException, KarmaException {
-		// Generate RDF for the remaining rows
-		// Gets all the errors generated during the RDF generation
-		ErrorReport errorReport = new ErrorReport();
-		
-		this.applyHistoryToWorksheet(workspace, wk, mapping);
-
-		// RDF generation object initialization
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(wk, 
-				workspace.getFactory(), workspace.getOntologyManager(), pw, 
-				mapping, errorReport, false);
-
-		// Generate the rdf
-		rdfGen.generateRDF(false);
-	}
-	
 	private List<String> addHeaders (Worksheet wk, List<String> columnNames,
 			RepFactory factory) {
 		HTable headers = wk.getHeaders();
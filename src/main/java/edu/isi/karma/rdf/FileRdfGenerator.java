@@ -21,29 +21,38 @@
 
 package edu.isi.karma.rdf;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.XML;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import edu.isi.karma.imp.Import;
 import edu.isi.karma.imp.csv.CSVFileImport;
+import edu.isi.karma.imp.csv.CSVTokenizer;
 import edu.isi.karma.imp.json.JsonImport;
-import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.imp.json.XMLImport;
 import edu.isi.karma.kr2rml.KR2RMLMapping;
-import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
-import edu.isi.karma.kr2rml.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.KR2RMLMappingCache;
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
-import edu.isi.karma.util.FileUtil;
-import edu.isi.karma.util.JSONUtil;
+import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+import edu.isi.karma.util.EncodingDetector;
 import edu.isi.karma.webserver.KarmaException;
 
 public class FileRdfGenerator extends RdfGenerator {
@@ -55,17 +64,14 @@ public class FileRdfGenerator extends RdfGenerator {
         Worksheet worksheet = null;
 
         if (inputType.equalsIgnoreCase("JSON")) {
-            FileReader reader = new FileReader(inputFile);
-            Object json = JSONUtil.createJson(reader);
-            JsonImport imp = new JsonImport(json, inputFile.getName(), workspace, encoding, maxNumLines);
+            JsonImport imp = new JsonImport(inputFile, inputFile.getName(), workspace, encoding, maxNumLines);
             worksheet = imp.generateWorksheet();
         } else if (inputType.equalsIgnoreCase("XML")) {
-            String fileContents = FileUtil.readFileContentsToString(inputFile, encoding);
-            JSONObject json = XML.toJSONObject(fileContents);
-            JsonImport imp = new JsonImport(json, inputFile.getName(), workspace, encoding, maxNumLines);
+            Import imp = new XMLImport(inputFile, inputFile.getName(), workspace, encoding, maxNumLines);
             worksheet = imp.generateWorksheet();
         } else if (inputType.equalsIgnoreCase("CSV")) {
-            Import fileImport = new CSVFileImport(1, 2, ',', '\"', encoding, -1, inputFile, workspace);
+            CSVFileImport fileImport = new CSVFileImport(1, 2, ',', '\"', encoding, -1, inputFile, workspace);
+            fileImport.setNumThreads(numThreads);
 
             worksheet = fileImport.generateWorksheet();
         }
@@ -78,35 +84,170 @@ public class FileRdfGenerator extends RdfGenerator {
 			throws IOException, JSONException, KarmaException {
 		logger.info("Generating worksheet from the data source ...");
 		Workspace workspace = initializeWorkspace();
-    		
-		Worksheet worksheet;
 		try {
-			worksheet = generateWorksheetFromFile(inputFile, inputType, workspace, encoding, maxNumLines);
-		} catch (ClassNotFoundException e) {
-			throw new KarmaException("Unable to generate worksheet from file : " + e.getMessage());
+			Worksheet worksheet;
+			try {
+				worksheet = generateWorksheetFromFile(inputFile, inputType, workspace, encoding, maxNumLines);
+			} catch (ClassNotFoundException e) {
+				throw new KarmaException("Unable to generate worksheet from file : " + e.getMessage());
+			}
+			logger.info("done");
+			/**
+			 * GENERATE RDF FROM WORKSHEET OBJECT *
+			 */
+			logger.info("Generating RDF...");
+			KR2RMLMapping mapping = KR2RMLMappingCache.getInstance().getMapping(id);
+			
+			// Apply the transformations and generate the rdf
+			generateRDFFromWorksheet(worksheet, workspace, mapping, pw);
+		} finally {
+			this.releaseWorkspace(workspace);
+			removeIdleWorkspaces();
+		}
+	}
+	
+	/**
+	 * Generates the RDF without importing the whole file into a single worksheet. The 
+	 * records are read in windows of <code>batchSize</code> records; each window is imported 
+	 * into a transient worksheet, the transformations of the model are applied to it, its 
+	 * triples are written and the worksheet is dropped before the next window is read. 
+	 * CSV files, JSON arrays and JSON lines files are streamed; XML files are still 
+	 * imported as a whole.
+	 */
+	public void generateRdfInBatches(String inputType, R2RMLMappingIdentifier id,
+			 PrintWriter pw, File inputFile, String encoding, int maxNumLines, int batchSize)
+			throws IOException, JSONException, KarmaException {
+		if (batchSize <= 0 || inputType.equalsIgnoreCase("XML")) {
+			generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+			return;
 		}
-		logger.info("done");
-		/**
-		 * GENERATE RDF FROM WORKSHEET OBJECT *
-		 */
-		logger.info("Generating RDF...");
-		WorksheetR2RMLJenaModelParser parserTest = new WorksheetR2RMLJenaModelParser(id);
-		KR2RMLMapping mapping = parserTest.parse();
 		
-
-		// Gets all the errors generated during the RDF generation
-		ErrorReport errorReport = new ErrorReport();
-
-		this.applyHistoryToWorksheet(workspace, worksheet, mapping);
+		logger.info("Generating RDF in batches of " + batchSize + " records ...");
+		KR2RMLMapping mapping = KR2RMLMappingCache.getInstance().getMapping(id);
 		
-		// RDF generation object initialization
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
-		        workspace.getFactory(), workspace.getOntologyManager(), pw,
-		        mapping, errorReport, false);
-
-		// Generate the rdf
-		rdfGen.generateRDF(false);
-		this.removeWorkspace(workspace);
-		workspace = null;
+		try {
+			if (inputType.equalsIgnoreCase("CSV")) {
+				generateRdfFromCSVInBatches(mapping, pw, inputFile, encoding, maxNumLines, batchSize);
+			} else if (inputType.equalsIgnoreCase("JSON")) {
+				generateRdfFromJSONInBatches(mapping, pw, inputFile, encoding, maxNumLines, batchSize);
+			}
+		} finally {
+			// The workspaces are only reused across the batches of a file
+			removeIdleWorkspaces();
+		}
+		logger.info("done");
+	}
+	
+	private void generateRdfFromCSVInBatches(KR2RMLMapping mapping, PrintWriter pw, 
+			File inputFile, String encoding, int maxNumLines, int batchSize) 
+					throws IOException, JSONException, KarmaException {
+		CSVTokenizer reader = new CSVTokenizer(
+				EncodingDetector.getInputStreamReader(inputFile, encoding), ',', '\"', '\\');
+		Workspace workspace = null;
+		try {
+			String[] columnNames = reader.readNext();
+			if (columnNames == null) {
+				return;
+			}
+			reader.setExpectedNumColumns(columnNames.length);
+			
+			Worksheet wk = null;
+			List<String> headersList = null;
+			int counter = 0;
+			String[] rowValues;
+			while ((rowValues = reader.readNext()) != null) {
+				if (maxNumLines > 0 && counter >= maxNumLines) {
+					break;
+				}
+				if (rowValues.length == 0) {
+					continue;
+				}
+				if (workspace == null) {
+					workspace = initializeWorkspace();
+					wk = workspace.getFactory().createWorksheet(inputFile.getName(), workspace, encoding);
+					wk.getMetadataContainer().getWorksheetProperties().setPropertyValue(
+							Property.sourceType, SourceTypes.CSV.toString());
+					headersList = addHeaders(wk, columnNames, workspace.getFactory());
+				}
+				
+				/** Add the data **/
+				RepFactory factory = workspace.getFactory();
+				Row row = wk.getDataTable().addRow(factory);
+				for (int i = 0; i < rowValues.length && i < headersList.size(); i++) {
+					row.setValue(headersList.get(i), rowValues[i], factory);
+				}
+				counter++;
+				
+				// Generate RDF and drop the worksheet for every batchSize rows
+				if (counter % batchSize == 0) {
+					generateRDFFromWorksheet(wk, workspace, mapping, pw);
+					logger.debug("Done for " + counter + " rows ...");
+					releaseWorkspace(workspace);
+					workspace = null;
+				}
+			}
+			if (workspace != null) {
+				generateRDFFromWorksheet(wk, workspace, mapping, pw);
+			}
+		} finally {
+			if (workspace != null) {
+				releaseWorkspace(workspace);
+			}
+			reader.close();
+		}
+	}
+	
+	private void generateRdfFromJSONInBatches(KR2RMLMapping mapping, PrintWriter pw, 
+			File inputFile, String encoding, int maxNumLines, int batchSize) 
+					throws IOException, JSONException, KarmaException {
+		JsonReader reader = new JsonReader(new BufferedReader(
+				EncodingDetector.getInputStreamReader(inputFile, encoding)));
+		// Allows several top level values
+		reader.setLenient(true);
+		try {
+			// A top level array is streamed element by element, otherwise every top level 
+			// value (JSON lines) is taken as a record
+			try {
+				if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+					reader.beginArray();
+				}
+			} catch (EOFException e) {
+				return;
+			}
+			
+			int counter = 0;
+			while (maxNumLines <= 0 || counter < maxNumLines) {
+				int numRecords = maxNumLines > 0 ? Math.min(batchSize, maxNumLines - counter) : batchSize;
+				Workspace workspace = initializeWorkspace();
+				JsonImport imp;
+				try {
+					imp = new JsonImport(reader, inputFile.getName(), workspace, encoding, numRecords);
+					Worksheet wk = imp.generateWorksheet();
+					if (imp.getNumRecords() > 0) {
+						generateRDFFromWorksheet(wk, workspace, mapping, pw);
+					}
+				} finally {
+					releaseWorkspace(workspace);
+				}
+				counter += imp.getNumRecords();
+				logger.debug("Done for " + counter + " records ...");
+				if (imp.getNumRecords() < numRecords) {
+					break;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private List<String> addHeaders(Worksheet wk, String[] columnNames,
+			RepFactory factory) {
+		HTable headers = wk.getHeaders();
+		List<String> headersList = new ArrayList<String>();
+		for (String columnName : columnNames) {
+			HNode hNode = headers.addHNode(columnName, wk, factory);
+			headersList.add(hNode.getId());
+		}
+		return headersList;
 	}
 }
@@ -2,7 +2,16 @@ package edu.isi.karma.rdf;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONException;
 import org.slf4j.Logger;
@@ -11,9 +20,9 @@ import org.slf4j.LoggerFactory;
 import edu.isi.karma.imp.json.JsonImport;
 import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLMapping;
+import edu.isi.karma.kr2rml.KR2RMLMappingCache;
 import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
-import edu.isi.karma.kr2rml.WorksheetR2RMLJenaModelParser;
 import edu.isi.karma.modeling.semantictypes.SemanticTypeUtil;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
@@ -24,24 +33,30 @@ import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 
 //If running in offline mode, need to set manual.alignment=true in modeling.peoperties
+/**
+ * Generates RDF from JSON messages using the models added by name. The generator 
+ * is thread-safe: the models are parsed once and shared read-only, and every 
+ * request imports its data into a workspace taken from a pool, so concurrent requests 
+ * never share a worksheet. Requests can also be queued on a bounded pool of service 
+ * threads with {@link #submit(String, String, boolean)}.
+ */
 public class JSONRDFGenerator extends RdfGenerator {
 
 	private static Logger logger = LoggerFactory.getLogger(JSONRDFGenerator.class);
-	private HashMap<String, R2RMLMappingIdentifier> modelIdentifiers;
-	private HashMap<String, WorksheetR2RMLJenaModelParser> readModelParsers;
 	
+	public static int DEFAULT_SERVICE_THREADS = Runtime.getRuntime().availableProcessors();
+	public static int DEFAULT_MAX_PENDING_REQUESTS = 1000;
+	
+	private final Map<String, R2RMLMappingIdentifier> modelIdentifiers;
+	private ThreadPoolExecutor serviceExecutor;
 	
 	private JSONRDFGenerator() {
-		this.modelIdentifiers = new HashMap<String, R2RMLMappingIdentifier>();
-		this.readModelParsers = new HashMap<String, WorksheetR2RMLJenaModelParser>();
-		
+		this.modelIdentifiers = new ConcurrentHashMap<String, R2RMLMappingIdentifier>();
+		initOfflineWorkspaceSettings();
 	}
 	
-	private static JSONRDFGenerator instance = null;
+	private static final JSONRDFGenerator instance = new JSONRDFGenerator();
 	public static JSONRDFGenerator getInstance() {
-		if(instance == null) {
-			instance = new JSONRDFGenerator();
-		}
 		return instance;
 	}
 	
@@ -51,47 +66,106 @@ public class JSONRDFGenerator extends RdfGenerator {
 	
 	public void generateRDF(String sourceName, String jsonData, boolean addProvenance, PrintWriter pw) throws KarmaException, JSONException, IOException {
 		logger.debug("Generating rdf for " + sourceName);
-		Workspace workspace = initializeWorkspace();
-		initOfflineWorkspaceSettings(workspace);
-		
 		R2RMLMappingIdentifier id = this.modelIdentifiers.get(sourceName);
 		if(id == null) {
 			throw new KarmaException("Cannot generate RDF. Model named " + sourceName + " does not exist");
 		}
 		
-		//Generate worksheet from the json data
-		Object json = JSONUtil.createJson(jsonData);
-        JsonImport imp = new JsonImport(json, sourceName, workspace, "utf-8", -1);
-        Worksheet worksheet = imp.generateWorksheet();
-        
-		//Check if the parser for this model exists, else create one
-		WorksheetR2RMLJenaModelParser modelParser = readModelParsers.get(sourceName);
-		if(modelParser == null) {
-			modelParser = loadModel(id);
-		}
-		
-        //Generate mappping data for the worksheet using the model parser
-		KR2RMLMapping mapping = modelParser.parse();
+		//The model is parsed on the first request only
+		KR2RMLMapping mapping = KR2RMLMappingCache.getInstance().getMapping(id);
 		
-		applyHistoryToWorksheet(workspace, worksheet, mapping);
-
-		//Generate RDF using the mapping data
-		ErrorReport errorReport = new ErrorReport();
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
-		        workspace.getFactory(), workspace.getOntologyManager(), pw,
-		        mapping, errorReport, addProvenance);
-		rdfGen.generateRDF(true);
-		removeWorkspace(workspace);
+		Workspace workspace = initializeWorkspace();
+		try {
+			//Generate worksheet from the json data
+			Object json = JSONUtil.createJson(jsonData);
+			JsonImport imp = new JsonImport(json, sourceName, workspace, "utf-8", -1);
+			Worksheet worksheet = imp.generateWorksheet();
+			
+			applyHistoryToWorksheet(workspace, worksheet, mapping);
+	
+			//Generate RDF using the mapping data
+			ErrorReport errorReport = new ErrorReport();
+			KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
+			        workspace.getFactory(), workspace.getOntologyManager(), pw,
+			        mapping, errorReport, addProvenance);
+			rdfGen.generateRDF(true);
+		} finally {
+			releaseWorkspace(workspace);
+		}
 		logger.debug("Generated rdf for " + sourceName);
 	}
-
-	private WorksheetR2RMLJenaModelParser loadModel(R2RMLMappingIdentifier modelIdentifier) throws JSONException, KarmaException {
-		WorksheetR2RMLJenaModelParser parser = new WorksheetR2RMLJenaModelParser(modelIdentifier);
-		this.readModelParsers.put(modelIdentifier.getName(), parser);
-		return parser;
+	
+	/**
+	 * Starts the threads that serve the requests queued with {@link #submit(String, String, boolean)}.
+	 * When maxPendingRequests requests are waiting, the submitting thread generates the RDF 
+	 * itself, which slows down the producers instead of letting the queue grow.
+	 */
+	public synchronized void startService(int numThreads, int maxPendingRequests) {
+		if (serviceExecutor != null) {
+			throw new IllegalStateException("The RDF generation service is already started");
+		}
+		serviceExecutor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(maxPendingRequests), 
+				new CallerRunsUnlessShutdownPolicy());
+	}
+	
+	/**
+	 * Runs the request in the submitting thread when the queue is full. Unlike 
+	 * ThreadPoolExecutor.CallerRunsPolicy, which silently drops the request once the 
+	 * executor is shut down and leaves its future incomplete forever, a request 
+	 * submitted during or after {@link #shutdownService()} is rejected.
+	 */
+	private static class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The RDF generation service is shut down");
+			}
+			r.run();
+		}
 	}
 	
-	private void initOfflineWorkspaceSettings(Workspace workspace) {
+	/**
+	 * Stops the service threads once the pending requests are done and drops the 
+	 * pooled workspaces.
+	 */
+	public synchronized void shutdownService() throws InterruptedException {
+		if (serviceExecutor == null) {
+			return;
+		}
+		serviceExecutor.shutdown();
+		serviceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		serviceExecutor = null;
+		removeIdleWorkspaces();
+	}
+	
+	/**
+	 * Queues the generation of the RDF of the JSON data. The service is started with 
+	 * the default settings if needed.
+	 * 
+	 * @return the future RDF in N-Triples, or N-Quads with provenance
+	 * @throws RejectedExecutionException if the service is shut down concurrently
+	 */
+	public Future<String> submit(final String sourceName, final String jsonData, 
+			final boolean addProvenance) {
+		ThreadPoolExecutor executor;
+		synchronized (this) {
+			if (serviceExecutor == null) {
+				startService(DEFAULT_SERVICE_THREADS, DEFAULT_MAX_PENDING_REQUESTS);
+			}
+			executor = serviceExecutor;
+		}
+		return executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				StringWriter sw = new StringWriter();
+				generateRDF(sourceName, jsonData, addProvenance, new PrintWriter(sw));
+				return sw.toString();
+			}
+		});
+	}
+
+	private void initOfflineWorkspaceSettings() {
 		/**
          * CREATE THE REQUIRED KARMA OBJECTS *
          */
@@ -22,6 +22,7 @@
  */
 package edu.isi.karma.rdf;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -39,11 +40,16 @@ import org.apache.commons.cli2.builder.DefaultOptionBuilder;
 import org.apache.commons.cli2.builder.GroupBuilder;
 import org.apache.commons.cli2.commandline.Parser;
 import org.apache.commons.cli2.util.HelpFormatter;
+import org.apache.commons.io.output.NullWriter;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.writer.BinaryRdfSink;
+import edu.isi.karma.kr2rml.writer.DeduplicatingRdfSink;
+import edu.isi.karma.kr2rml.writer.NTriplesRdfSink;
+import edu.isi.karma.kr2rml.writer.RdfSink;
 import edu.isi.karma.modeling.semantictypes.SemanticTypeUtil;
 import edu.isi.karma.util.AbstractJDBCUtil.DBType;
 import edu.isi.karma.util.EncodingDetector;
@@ -85,6 +91,9 @@ public class OfflineRdfGenerator {
             String modelFilePath = (String) cl.getValue("--modelfilepath");
             String modelURLString = (String) cl.getValue("--modelurl");
             String outputFilePath = (String) cl.getValue("--outputfile");
+            String outputFormat = (String) cl.getValue("--outputformat");
+            if (outputFormat == null)
+            	outputFormat = "ntriples";
             if ((modelURLString == null && modelFilePath == null) || outputFilePath == null || inputType == null) {
                 logger.error("Mandatory value missing. Please provide argument value "
                         + "for sourcetype, modelfilepath and outputfile.");
@@ -117,6 +126,13 @@ public class OfflineRdfGenerator {
                         + ". Please choose from: DB, CSV, XML, JSON.");
                 return;
             }
+            
+            if (!outputFormat.equalsIgnoreCase("ntriples")
+            		&& !outputFormat.equalsIgnoreCase("binary")) {
+            	logger.error("Invalid output format: " + outputFormat
+            			+ ". Please choose from: ntriples, binary.");
+            	return;
+            }
 
             /**
              * CREATE THE REQUIRED KARMA OBJECTS *
@@ -126,13 +142,39 @@ public class OfflineRdfGenerator {
             ServletContextParameterMap.setParameterValue(
                     ContextParameter.TRAINING_EXAMPLE_MAX_COUNT, "200");
    
+            // Several tables or partitions are written to shards in the output directory
+            if (inputType.equals("DB") && isPartitionedDatabaseRun(cl)) {
+                SemanticTypeUtil.setSemanticTypeTrainingStatus(false);
+                generateRdfFromDatabaseTables(cl, modelURL, new File(outputFilePath), 
+                		outputFormat.equalsIgnoreCase("binary"));
+                logger.info("RDF shards published at: " + outputFilePath);
+                return;
+            }
 
             /**
              * PREPATRE THE OUTPUT OBJECTS *
              */
-            OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(outputFilePath), "UTF-8");
-            BufferedWriter bw = new BufferedWriter(fw);
-            PrintWriter pw = new PrintWriter(bw);
+            PrintWriter pw = null;
+            RdfSink sink = null;
+            if (outputFormat.equalsIgnoreCase("binary")) {
+            	sink = new BinaryRdfSink(new BufferedOutputStream(new FileOutputStream(outputFilePath)));
+            	// The generators output to the sink, nothing is written to the writer
+            	pw = new PrintWriter(new NullWriter());
+            } else {
+            	OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(outputFilePath), "UTF-8");
+            	BufferedWriter bw = new BufferedWriter(fw);
+            	pw = new PrintWriter(bw);
+            }
+            
+            DeduplicatingRdfSink dedupSink = null;
+            String sDedupMemory = (String) cl.getValue("--dedupmemory");
+            if (sDedupMemory != null) {
+            	if (sink == null)
+            		sink = new NTriplesRdfSink(pw);
+            	dedupSink = new DeduplicatingRdfSink(sink, 
+            			Long.parseLong(sDedupMemory) * 1024 * 1024, null);
+            	sink = dedupSink;
+            }
 
             /**
              * Generate RDF on the source type *
@@ -140,13 +182,19 @@ public class OfflineRdfGenerator {
             SemanticTypeUtil.setSemanticTypeTrainingStatus(false);
             // Database table
             if (inputType.equals("DB")) {
-                generateRdfFromDatabaseTable(cl, modelURL, pw);
+                generateRdfFromDatabaseTable(cl, modelURL, pw, sink);
             } // File based worksheets such as JSON, XML, CSV
             else {
-                generateRdfFromFile(cl, inputType, modelURL, pw);
+                generateRdfFromFile(cl, inputType, modelURL, pw, sink);
             }
+            if (sink != null)
+            	sink.close();
             pw.close();
             logger.info("done");
+            if (dedupSink != null) {
+            	logger.info("Removed " + dedupSink.getNumDuplicates() + " duplicate statements out of " 
+            			+ dedupSink.getNumStatements());
+            }
 
             logger.info("RDF published at: " + outputFilePath);
         } catch (Exception e) {
@@ -155,7 +203,7 @@ public class OfflineRdfGenerator {
     }
 
 	private static void generateRdfFromDatabaseTable(CommandLine cl, URL modelURL,
-			PrintWriter pw) throws IOException, JSONException, KarmaException,
+			PrintWriter pw, RdfSink sink) throws IOException, JSONException, KarmaException,
 			SQLException, ClassNotFoundException {
 		String dbtypeStr = (String) cl.getValue("--dbtype");
 		String hostname = (String) cl.getValue("--hostname");
@@ -199,13 +247,83 @@ public class OfflineRdfGenerator {
 		R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(tablename, modelURL);
 		DatabaseTableRDFGenerator dbRdfGen = new DatabaseTableRDFGenerator(dbType,
 		        hostname, portnumber, username, password, dBorSIDName, tablename, encoding);
+		dbRdfGen.setNumThreads(getNumThreads(cl));
+		dbRdfGen.setRdfSink(sink);
+		dbRdfGen.setMemoryBudget(getMemoryBudget(cl));
 		
 		dbRdfGen.generateRDF(pw, id);
         pw.flush();
 	}
 
+	private static boolean isPartitionedDatabaseRun(CommandLine cl) {
+		String tablename = (String) cl.getValue("--tablename");
+		return (tablename != null && tablename.contains(","))
+				|| cl.getValue("--partitions") != null
+				|| cl.getValue("--connections") != null;
+	}
+
+	private static void generateRdfFromDatabaseTables(CommandLine cl, URL modelURL,
+			File outputDirectory, boolean binaryOutput) throws IOException, KarmaException,
+			SQLException, ClassNotFoundException {
+		String dbtypeStr = (String) cl.getValue("--dbtype");
+		String hostname = (String) cl.getValue("--hostname");
+		String username = (String) cl.getValue("--username");
+		String password = (String) cl.getValue("--password");
+		String dBorSIDName = (String) cl.getValue("--dbname");
+		String tablenames = (String) cl.getValue("--tablename");
+		String encoding = (String) cl.getValue("--encoding");
+		if(encoding == null)
+			encoding = "UTF-8";
+		int portnumber = 0;
+		try {
+		    portnumber = Integer.parseInt(cl.getValue("--portnumber").toString());
+		} catch (Throwable t) {
+		    logger.error("Error occured while parsing value for portnumber."
+		            + " Provided value: " + cl.getValue("--portnumber"));
+		    return;
+		}
+		if (dbtypeStr == null || dbtypeStr.equals("") || hostname == null
+		        || hostname.equals("") || username == null || username.equals("")
+		        || password == null || password.equals("") || dBorSIDName == null
+		        || dBorSIDName.equals("") || tablenames == null || tablenames.equals("")) {
+		    logger.error("A mandatory value is missing for fetching data from "
+		            + "a database. Please provide argument values for dbtype, hostname, "
+		            + "username, password, portnumber, dbname and tablename.");
+		    return;
+		}
+		String partitionKey = (String) cl.getValue("--partitionkey");
+		int numPartitions = getIntValue(cl, "--partitions", 1);
+		if (numPartitions > 1 && partitionKey == null) {
+			logger.error("Please provide the numeric column used to split the tables with --partitionkey.");
+			return;
+		}
+
+		ParallelDatabaseRDFGenerator dbRdfGen = new ParallelDatabaseRDFGenerator(DBType.valueOf(dbtypeStr),
+				hostname, portnumber, username, password, dBorSIDName, encoding);
+		dbRdfGen.setBinaryOutput(binaryOutput);
+		dbRdfGen.setMemoryBudget(getMemoryBudget(cl));
+		for (String tablename : tablenames.split(",")) {
+			tablename = tablename.trim();
+			R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(tablename, modelURL);
+			if (numPartitions > 1) {
+				dbRdfGen.addPartitionedTable(tablename, id, partitionKey, numPartitions);
+			} else {
+				dbRdfGen.addTable(tablename, id);
+			}
+		}
+		dbRdfGen.generateRDF(outputDirectory, getIntValue(cl, "--connections", 1), true);
+	}
+
+	private static int getIntValue(CommandLine cl, String option, int defaultValue) {
+		String value = (String) cl.getValue(option);
+		if (value != null) {
+			return Integer.parseInt(value);
+		}
+		return defaultValue;
+	}
+
 	private static void generateRdfFromFile(CommandLine cl, String inputType,
-			URL modelURL, PrintWriter pw)
+			URL modelURL, PrintWriter pw, RdfSink sink)
 			throws JSONException, IOException, KarmaException,
 			ClassNotFoundException, SQLException {
 		String sourceFilePath = (String) cl.getValue("--filepath");
@@ -232,12 +350,42 @@ public class OfflineRdfGenerator {
 			logger.error("You need to supply a value for '--sourcename'");
 			return;
 		}
+		String sBatchSize = (String) cl.getValue("--batchsize");
+		int batchSize = -1;
+		if(sBatchSize != null) {
+			batchSize = Integer.parseInt(sBatchSize);
+		}
+		
 		R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(sourceName, modelURL);
 		FileRdfGenerator rdfGenerator = new FileRdfGenerator();
-		rdfGenerator.generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+		rdfGenerator.setNumThreads(getNumThreads(cl));
+		rdfGenerator.setRdfSink(sink);
+		rdfGenerator.setMemoryBudget(getMemoryBudget(cl));
+		if(batchSize > 0) {
+			rdfGenerator.generateRdfInBatches(inputType, id, pw, inputFile, encoding, maxNumLines, batchSize);
+		} else {
+			rdfGenerator.generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+		}
         pw.flush();
 	}
 
+	private static int getNumThreads(CommandLine cl) {
+		String sNumThreads = (String) cl.getValue("--threads");
+		int numThreads = 1;
+		if(sNumThreads != null) {
+			numThreads = Integer.parseInt(sNumThreads);
+		}
+		return numThreads;
+	}
+
+	private static long getMemoryBudget(CommandLine cl) {
+		String sMemoryBudget = (String) cl.getValue("--memorybudget");
+		if(sMemoryBudget != null) {
+			return Long.parseLong(sMemoryBudget) * 1024 * 1024;
+		}
+		return -1;
+	}
+
     private static Group createCommandLineOptions() {
         DefaultOptionBuilder obuilder = new DefaultOptionBuilder();
         ArgumentBuilder abuilder = new ArgumentBuilder();
@@ -251,14 +399,22 @@ public class OfflineRdfGenerator {
                 .withOption(buildOption("modelfilepath", "location of the model file", "modelfilepath", obuilder, abuilder))
                 .withOption(buildOption("modelurl", "location of the model", "modelurl", obuilder, abuilder))
                 .withOption(buildOption("sourcename", "name of the source in the model to use", "sourcename", obuilder, abuilder))
-                .withOption(buildOption("outputfile", "location of the output file", "outputfile", obuilder, abuilder))
+                .withOption(buildOption("outputfile", "location of the output file, or of the output directory when a database is written to shards", "outputfile", obuilder, abuilder))
+                .withOption(buildOption("outputformat", "format of the output file. Valid values: ntriples, binary. Default: ntriples", "outputformat", obuilder, abuilder))
+                .withOption(buildOption("dedupmemory", "removes the duplicate triples across rows using at most this many MB of memory. Default: only within a row", "dedupmemory", obuilder, abuilder))
                 .withOption(buildOption("dbtype", "database type. Valid values: Oracle, MySQL, SQLServer, PostGIS", "dbtype", obuilder, abuilder))
                 .withOption(buildOption("hostname", "hostname for database connection", "hostname", obuilder, abuilder))
                 .withOption(buildOption("username", "username for database connection", "username", obuilder, abuilder))
                 .withOption(buildOption("password", "password for database connection", "password", obuilder, abuilder))
                 .withOption(buildOption("portnumber", "portnumber for database connection", "portnumber", obuilder, abuilder))
                 .withOption(buildOption("dbname", "database or SID name for database connection", "dbname", obuilder, abuilder))
-                .withOption(buildOption("tablename", "hostname for database connection", "tablename", obuilder, abuilder))
+                .withOption(buildOption("tablename", "name of the database table, or a comma separated list of tables written to shards in the output directory", "tablename", obuilder, abuilder))
+                .withOption(buildOption("partitions", "number of ranges of the partition key each table is split into, each written to its own shard. Default: 1", "partitions", obuilder, abuilder))
+                .withOption(buildOption("partitionkey", "numeric column, e.g. the primary key, used to split the tables into partitions", "partitionkey", obuilder, abuilder))
+                .withOption(buildOption("connections", "number of database connections used to generate the shards in parallel. Default: 1", "connections", obuilder, abuilder))
+                .withOption(buildOption("batchsize", "number of records of a CSV or JSON file imported and converted at a time. Default: the whole file", "batchsize", obuilder, abuilder))
+                .withOption(buildOption("memorybudget", "MB of heap the cell values of a worksheet may use before they are moved to a memory-mapped file. Default: no limit", "memorybudget", obuilder, abuilder))
+                .withOption(buildOption("threads", "number of threads used to generate the RDF. Default: 1", "threads", obuilder, abuilder))
                 .withOption(obuilder
                 .withLongName("help")
                 .withDescription("print this message")
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullWriter;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.writer.BinaryRdfSink;
+import edu.isi.karma.util.AbstractJDBCUtil;
+import edu.isi.karma.util.AbstractJDBCUtil.DBType;
+import edu.isi.karma.util.JDBCUtilFactory;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Generates the RDF of several database tables in parallel. A large table can be
+ * split into ranges of a numeric key column that are scanned independently. Every
+ * table or range is a partition written to its own shard in the output directory
+ * by one of the worker threads, each of which keeps its own JDBC connection. A JSON
+ * manifest listing the shards can be written once all the partitions are done.
+ * The labels of the blank nodes start with the index of their partition, so the
+ * shards can be loaded together as one document.
+ */
+public class ParallelDatabaseRDFGenerator {
+
+	private static Logger logger = LoggerFactory.getLogger(ParallelDatabaseRDFGenerator.class);
+
+	public static final String MANIFEST_FILE_NAME = "manifest.json";
+
+	private enum ManifestKeys {
+		tables, shards, table, condition, file, rows, millis
+	}
+
+	private final DBType dbType;
+	private final String hostname;
+	private final int portnumber;
+	private final String username;
+	private final String password;
+	private final String dBorSIDName;
+	private final String encoding;
+	private final AbstractJDBCUtil dbUtil;
+	private final List<Partition> partitions = new ArrayList<Partition>();
+
+	private boolean binaryOutput = false;
+	private long memoryBudget = -1;
+
+	public ParallelDatabaseRDFGenerator(DBType dbType, String hostname,
+			int portnumber, String username, String password,
+			String dBorSIDName, String encoding) {
+		this.dbType = dbType;
+		this.hostname = hostname;
+		this.portnumber = portnumber;
+		this.username = username;
+		this.password = password;
+		this.dBorSIDName = dBorSIDName;
+		this.encoding = encoding;
+		this.dbUtil = JDBCUtilFactory.getInstance(dbType);
+	}
+
+	/**
+	 * Writes the shards in the binary format of {@link BinaryRdfSink} instead of N-Triples.
+	 */
+	public void setBinaryOutput(boolean binaryOutput) {
+		this.binaryOutput = binaryOutput;
+	}
+
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Generates the RDF of the whole table in one partition.
+	 */
+	public void addTable(String tablename, R2RMLMappingIdentifier id) {
+		partitions.add(new Partition(tablename, id, null, partitions.size()));
+	}
+
+	/**
+	 * Splits the table into ranges of equal width between the minimum and the maximum
+	 * of the numeric key column, e.g. the primary key. The rows with a null key go to
+	 * the first range. Falls back to one partition if the key is not numeric or the
+	 * table is empty.
+	 */
+	public void addPartitionedTable(String tablename, R2RMLMappingIdentifier id,
+			String keyColumn, int numPartitions) throws SQLException, ClassNotFoundException {
+		List<String> conditions;
+		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
+		try {
+			conditions = getKeyRangeConditions(conn, tablename, keyColumn, numPartitions);
+		} finally {
+			conn.close();
+		}
+		if (conditions == null) {
+			addTable(tablename, id);
+			return;
+		}
+		for (String condition : conditions) {
+			partitions.add(new Partition(tablename, id, condition, partitions.size()));
+		}
+	}
+
+	/**
+	 * @return the conditions selecting the key ranges of the table, or null if the
+	 *         key is not numeric or the table is empty
+	 */
+	static List<String> getKeyRangeConditions(Connection conn, String tablename,
+			String keyColumn, int numPartitions) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try {
+			ResultSet r = stmt.executeQuery("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn
+					+ ") FROM " + tablename);
+			try {
+				if (!r.next() || r.getObject(1) == null) {
+					return null;
+				}
+				return getKeyRangeConditions(keyColumn, r.getLong(1), r.getLong(2), numPartitions);
+			} catch (SQLException e) {
+				logger.warn("Key column " + keyColumn + " of " + tablename
+						+ " is not numeric, the table is not partitioned", e);
+				return null;
+			} finally {
+				r.close();
+			}
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * @return the conditions selecting at most numPartitions ranges of equal width
+	 *         that cover the keys from min to max and the null keys
+	 */
+	static List<String> getKeyRangeConditions(String keyColumn, long min, long max,
+			int numPartitions) {
+		List<String> conditions = new ArrayList<String>();
+		long width = Math.max(1, (max - min) / numPartitions + 1);
+		for (int i = 0; i < numPartitions; i++) {
+			long lower = min + i * width;
+			if (lower > max)
+				break;
+			long upper = lower + width;
+			StringBuilder condition = new StringBuilder();
+			if (i == 0) {
+				condition.append("(").append(keyColumn).append(" < ").append(upper)
+						.append(" OR ").append(keyColumn).append(" IS NULL)");
+			} else {
+				condition.append(keyColumn).append(" >= ").append(lower);
+				if (upper <= max)
+					condition.append(" AND ").append(keyColumn).append(" < ").append(upper);
+			}
+			conditions.add(condition.toString());
+		}
+		return conditions;
+	}
+
+	/**
+	 * Generates the RDF of all the partitions using numConnections threads, each with
+	 * its own database connection.
+	 *
+	 * @return the shards in the order the partitions were added
+	 */
+	public List<File> generateRDF(File outputDirectory, int numConnections, boolean writeManifest)
+			throws IOException, KarmaException, SQLException, ClassNotFoundException {
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			throw new IOException("Unable to create the output directory " + outputDirectory);
+		}
+		final BlockingQueue<Connection> connections = new ArrayBlockingQueue<Connection>(numConnections);
+		for (int i = 0; i < numConnections; i++) {
+			connections.add(dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numConnections);
+		try {
+			List<Future<PartitionResult>> futures = new ArrayList<Future<PartitionResult>>(partitions.size());
+			for (final Partition partition : partitions) {
+				final File shard = new File(outputDirectory, partition.getShardName(binaryOutput));
+				futures.add(executor.submit(new Callable<PartitionResult>() {
+					@Override
+					public PartitionResult call() throws Exception {
+						Connection conn = connections.take();
+						try {
+							return generateRDFForPartition(partition, shard, conn);
+						} finally {
+							// add does not throw when the thread is interrupted, the queue always has room
+							connections.add(conn);
+						}
+					}
+				}));
+			}
+
+			List<PartitionResult> results = new ArrayList<PartitionResult>(futures.size());
+			for (Future<PartitionResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					logger.error("Unable to generate the RDF of a partition", e.getCause());
+					KarmaException ke = new KarmaException("Unable to generate the RDF of a partition: "
+							+ e.getCause());
+					ke.initCause(e.getCause());
+					throw ke;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new KarmaException("Interrupted while generating the RDF");
+				}
+			}
+
+			if (writeManifest) {
+				writeManifest(new File(outputDirectory, MANIFEST_FILE_NAME), results);
+			}
+			List<File> shards = new ArrayList<File>(results.size());
+			for (PartitionResult result : results) {
+				shards.add(result.shard);
+			}
+			return shards;
+		} finally {
+			executor.shutdownNow();
+			try {
+				// The connections are back in the queue once the running partitions stop
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					logger.warn("Waiting for the partitions being generated to stop");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (Connection conn : connections) {
+				conn.close();
+			}
+		}
+	}
+
+	private PartitionResult generateRDFForPartition(Partition partition, File shard,
+			Connection conn) throws IOException, JSONException, KarmaException, SQLException {
+		logger.info("Generating RDF for " + partition.tablename
+				+ (partition.condition != null ? " where " + partition.condition : ""));
+		long start = System.currentTimeMillis();
+
+		DatabaseTableRDFGenerator rdfGen = new DatabaseTableRDFGenerator(dbType, hostname,
+				portnumber, username, password, dBorSIDName, partition.tablename, encoding);
+		rdfGen.setMemoryBudget(memoryBudget);
+		// The blank node labels are only unique within a partition
+		rdfGen.setBlankNodeLabelPrefix("p" + partition.index + "_");
+		PrintWriter pw;
+		BinaryRdfSink sink = null;
+		if (binaryOutput) {
+			sink = new BinaryRdfSink(new BufferedOutputStream(new FileOutputStream(shard)));
+			rdfGen.setRdfSink(sink);
+			// The generator outputs to the sink, nothing is written to the writer
+			pw = new PrintWriter(new NullWriter());
+		} else {
+			pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(shard), "UTF-8")));
+		}
+
+		long numRows;
+		try {
+			numRows = rdfGen.generateRDF(pw, partition.id, conn, partition.condition);
+		} finally {
+			if (sink != null)
+				sink.close();
+			pw.close();
+			rdfGen.removeIdleWorkspaces();
+		}
+		return new PartitionResult(partition, shard, numRows, System.currentTimeMillis() - start);
+	}
+
+	private void writeManifest(File manifestFile, List<PartitionResult> results)
+			throws IOException, KarmaException {
+		try {
+			JSONArray tables = new JSONArray();
+			JSONArray shards = new JSONArray();
+			for (PartitionResult result : results) {
+				JSONObject shard = new JSONObject();
+				shard.put(ManifestKeys.table.name(), result.partition.tablename);
+				if (result.partition.condition != null)
+					shard.put(ManifestKeys.condition.name(), result.partition.condition);
+				shard.put(ManifestKeys.file.name(), result.shard.getName());
+				shard.put(ManifestKeys.rows.name(), result.numRows);
+				shard.put(ManifestKeys.millis.name(), result.millis);
+				shards.put(shard);
+
+				boolean listed = false;
+				for (int i = 0; i < tables.length() && !listed; i++) {
+					listed = tables.getString(i).equals(result.partition.tablename);
+				}
+				if (!listed)
+					tables.put(result.partition.tablename);
+			}
+			JSONObject manifest = new JSONObject();
+			manifest.put(ManifestKeys.tables.name(), tables);
+			manifest.put(ManifestKeys.shards.name(), shards);
+
+			PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+					new FileOutputStream(manifestFile), "UTF-8"));
+			try {
+				pw.println(manifest.toString(2));
+			} finally {
+				pw.close();
+			}
+		} catch (JSONException e) {
+			throw new KarmaException("Unable to write the manifest: " + e.getMessage());
+		}
+	}
+
+	private static class Partition {
+		final String tablename;
+		final R2RMLMappingIdentifier id;
+		// The SQL condition selecting the rows of the partition, null for the whole table
+		final String condition;
+		final int index;
+
+		Partition(String tablename, R2RMLMappingIdentifier id, String condition, int index) {
+			this.tablename = tablename;
+			this.id = id;
+			this.condition = condition;
+			this.index = index;
+		}
+
+		String getShardName(boolean binaryOutput) {
+			String name = tablename.replaceAll("[^\\p{L}\\p{N}_.-]", "_");
+			return String.format("%s-%05d.%s", name, index, binaryOutput ? "krdf" : "nt");
+		}
+	}
+
+	private static class PartitionResult {
+		final Partition partition;
+		final File shard;
+		final long numRows;
+		final long millis;
+
+		PartitionResult(Partition partition, File shard, long numRows, long millis) {
+			this.partition = partition;
+			this.shard = shard;
+			this.numRows = numRows;
+			this.millis = millis;
+		}
+	}
+}
@@ -21,17 +21,27 @@
 
 package edu.isi.karma.rdf;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.isi.karma.controller.command.CommandException;
+import edu.isi.karma.controller.command.CommandFactory;
 import edu.isi.karma.controller.command.Command.CommandTag;
-import edu.isi.karma.controller.history.WorksheetCommandHistoryExecutor;
+import edu.isi.karma.controller.history.CompiledWorksheetHistory;
+import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLMapping;
+import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
+import edu.isi.karma.kr2rml.writer.RdfSink;
 import edu.isi.karma.modeling.ModelingConfiguration;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
@@ -44,33 +54,168 @@ public abstract class RdfGenerator {
 
 	private static Logger logger = LoggerFactory.getLogger(RdfGenerator.class);
 	
+	private static HashMap<String, CommandFactory> commandFactoryMap;
+	
+	// Weak keys, so that a compiled history goes away with its mapping
+	private static final Map<KR2RMLMapping, CompiledWorksheetHistory> compiledHistories = 
+			new WeakHashMap<KR2RMLMapping, CompiledWorksheetHistory>();
+	
+	private final Queue<Workspace> idleWorkspaces = new ConcurrentLinkedQueue<Workspace>();
+	
+	protected int numThreads = 1;
+	protected int rowChunkSize = KR2RMLWorksheetRDFGenerator.DEFAULT_ROW_CHUNK_SIZE;
+	protected RdfSink sink;
+	protected long memoryBudget = -1;
+	protected String blankNodeLabelPrefix = "";
+	
+	/**
+	 * Sets the number of threads used by the KR2RML generator to produce the triples 
+	 * of the worksheet rows.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Sets the number of worksheet rows in each chunk processed by one of the threads.
+	 */
+	public void setRowChunkSize(int rowChunkSize) {
+		this.rowChunkSize = rowChunkSize;
+	}
+	
+	/**
+	 * If set, the RDF is output to the given sink instead of the PrintWriter passed 
+	 * to the generation methods, e.g. to write it in a binary format.
+	 */
+	public void setRdfSink(RdfSink sink) {
+		this.sink = sink;
+	}
+	
+	/**
+	 * Sets the number of bytes the cell values of each worksheet may take on the heap 
+	 * before they are moved to a memory-mapped file. See {@link edu.isi.karma.rep.RepFactory#setMemoryBudget(long)}.
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * See {@link KR2RMLWorksheetRDFGenerator#setBlankNodeLabelPrefix(String)}.
+	 */
+	public void setBlankNodeLabelPrefix(String blankNodeLabelPrefix) {
+		this.blankNodeLabelPrefix = blankNodeLabelPrefix;
+	}
+	
+	/**
+	 * Returns an empty workspace to load the data of one batch. Workspaces given back 
+	 * through {@link #releaseWorkspace(Workspace)} are reused, so only the first batches 
+	 * pay for creating the workspace, its ontology manager and its preferences.
+	 */
 	protected Workspace initializeWorkspace() {
-		
+		Workspace workspace = idleWorkspaces.poll();
+		if (workspace == null) {
+			workspace = createWorkspace();
+		}
+		workspace.getFactory().setMemoryBudget(memoryBudget);
+		return workspace;
+	}
+
+	/**
+	 * Drops the worksheets of the workspace and keeps it for the next batch.
+	 */
+	protected void releaseWorkspace(Workspace workspace) {
+		workspace.clearWorksheets();
+		idleWorkspaces.offer(workspace);
+	}
+
+	/**
+	 * Removes the idle workspaces kept for the next batches.
+	 */
+	public void removeIdleWorkspaces() {
+		Workspace workspace;
+		while ((workspace = idleWorkspaces.poll()) != null) {
+			WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+			WorkspaceRegistry.getInstance().deregister(workspace.getId());
+		}
+	}
+
+	private static Workspace createWorkspace() {
+		HashMap<String, CommandFactory> commandFactories = loadConfiguration();
 		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
-        WorkspaceRegistry.getInstance().register(new ExecutionController(workspace));
-        ModelingConfiguration.load();
-        ModelingConfiguration.setManualAlignment(true);
+		// The history replay looks up the command factories through the registry
+		WorkspaceRegistry.getInstance().register(new ExecutionController(workspace, commandFactories));
+		// Share the repeated values within the columns of the imported worksheets
+		workspace.getFactory().setValueDictionariesEnabled(true);
 		return workspace;
 	}
 
-	protected void removeWorkspace(Workspace workspace) {
-		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
-	    WorkspaceRegistry.getInstance().deregister(workspace.getId());
+	/**
+	 * Loads the modeling configuration and creates the command factories on the first 
+	 * call only.
+	 */
+	private static synchronized HashMap<String, CommandFactory> loadConfiguration() {
+		if (commandFactoryMap == null) {
+			ModelingConfiguration.load();
+			ModelingConfiguration.setManualAlignment(true);
+			commandFactoryMap = ExecutionController.createCommandFactoryMap();
+		}
+		return commandFactoryMap;
 	}
 
 	protected void applyHistoryToWorksheet(Workspace workspace, Worksheet worksheet,
 			KR2RMLMapping mapping) throws JSONException {
-		WorksheetCommandHistoryExecutor wchr = new WorksheetCommandHistoryExecutor(worksheet.getId(), workspace);
 		try
 		{
-			List<CommandTag> tags = new ArrayList<CommandTag>();
-			tags.add(CommandTag.Transformation);
-			wchr.executeCommandsByTags(tags, mapping.getWorksheetHistory());
+			getCompiledHistory(mapping).execute(workspace, worksheet.getId());
 		}
-		catch (CommandException | KarmaException e)
+		catch (KarmaException e)
 		{
 			logger.error("Unable to execute column transformations", e);
 		}
 	}
 	
+	/**
+	 * Returns the transformations of the mapping, compiled on the first call for 
+	 * the mapping.
+	 */
+	private static CompiledWorksheetHistory getCompiledHistory(KR2RMLMapping mapping) 
+			throws JSONException {
+		synchronized (compiledHistories) {
+			CompiledWorksheetHistory history = compiledHistories.get(mapping);
+			if (history == null) {
+				List<CommandTag> tags = new ArrayList<CommandTag>();
+				tags.add(CommandTag.Transformation);
+				history = CompiledWorksheetHistory.compile(tags, 
+						mapping.getWorksheetHistory(), loadConfiguration());
+				compiledHistories.put(mapping, history);
+			}
+			return history;
+		}
+	}
+	
+	protected void generateRDFFromWorksheet(Worksheet wk, 
+			Workspace workspace, KR2RMLMapping mapping, PrintWriter pw) 
+					throws IOException, JSONException, KarmaException {
+		// Gets all the errors generated during the RDF generation
+		ErrorReport errorReport = new ErrorReport();
+		
+		this.applyHistoryToWorksheet(workspace, wk, mapping);
+
+		// RDF generation object initialization
+		KR2RMLWorksheetRDFGenerator rdfGen;
+		if (sink != null) {
+			rdfGen = new KR2RMLWorksheetRDFGenerator(wk, workspace.getFactory(), 
+					workspace.getOntologyManager(), sink, mapping, errorReport, false);
+		} else {
+			rdfGen = new KR2RMLWorksheetRDFGenerator(wk, workspace.getFactory(), 
+					workspace.getOntologyManager(), pw, mapping, errorReport, false);
+		}
+		rdfGen.setNumThreads(numThreads);
+		rdfGen.setRowChunkSize(rowChunkSize);
+		rdfGen.setBlankNodeLabelPrefix(blankNodeLabelPrefix);
+
+		// Generate the rdf
+		rdfGen.generateRDF(false);
+	}
+	
 }
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only store of cell values in a temporary file that is memory-mapped in 
+ * segments of {@link #SEGMENT_SIZE} bytes. The values moved here are out of the Java 
+ * heap and are paged in by the operating system when they are read.
+ */
+class CellValueSpillStore {
+
+	private static Logger logger = LoggerFactory.getLogger(CellValueSpillStore.class);
+	
+	static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private int positionInLastSegment = SEGMENT_SIZE;
+	
+	CellValueSpillStore() throws IOException {
+		this.file = File.createTempFile("karma-cells", ".bin");
+		this.file.deleteOnExit();
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
+		logger.info("Spilling cell values to " + file.getAbsolutePath());
+	}
+	
+	/**
+	 * @return the value stored off the heap, or null if the value is too large to be stored.
+	 */
+	synchronized CellValue store(String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		if (bytes.length > SEGMENT_SIZE) {
+			return null;
+		}
+		if (segments.isEmpty() || positionInLastSegment + bytes.length > SEGMENT_SIZE) {
+			long start = (long) segments.size() * SEGMENT_SIZE;
+			segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_SIZE));
+			positionInLastSegment = 0;
+		}
+		int segment = segments.size() - 1;
+		ByteBuffer buffer = segments.get(segment).duplicate();
+		buffer.position(positionInLastSegment);
+		buffer.put(bytes);
+		SpilledCellValue cellValue = new SpilledCellValue(this, segment, positionInLastSegment, 
+				bytes.length);
+		positionInLastSegment += bytes.length;
+		return cellValue;
+	}
+	
+	String read(int segment, int offset, int length) {
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = segments.get(segment).duplicate();
+		}
+		byte[] bytes = new byte[length];
+		buffer.position(offset);
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+	
+	synchronized void close() {
+		segments.clear();
+		try {
+			channel.close();
+			randomAccessFile.close();
+		} catch (IOException e) {
+			logger.error("Unable to close " + file.getAbsolutePath(), e);
+		}
+		if (!file.delete()) {
+			logger.warn("Unable to delete " + file.getAbsolutePath());
+		}
+	}
+	
+	/**
+	 * A cell value read from the spill store every time it is accessed.
+	 */
+	static class SpilledCellValue extends CellValue {
+		private final CellValueSpillStore store;
+		private final int segment;
+		private final int offset;
+		private final int length;
+		
+		SpilledCellValue(CellValueSpillStore store, int segment, int offset, int length) {
+			this.store = store;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+		
+		@Override
+		public String asString() {
+			return store.read(segment, offset, length);
+		}
+	}
+}
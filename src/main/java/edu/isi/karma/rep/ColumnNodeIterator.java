@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the nodes of a column of a table, given by an HNodePath, in the
+ * order of {@link Table#collectNodes(HNodePath, java.util.Collection)}. The path 
+ * is turned into an array of HNode ids once, and the rows of the nested tables 
+ * are read in place, without copying them. Only the top-level rows in the range
+ * [startIndex, endIndex) are visited, so that a large table can be split in 
+ * ranges traversed by different threads, as long as it is not modified.
+ */
+public class ColumnNodeIterator implements Iterator<Node> {
+
+	// The HNode id at every level of the path
+	private final String[] hNodeIds;
+
+	// The table and the index of the next row at every level
+	private final Table[] tables;
+	private final int[] rowIndexes;
+
+	private final int endIndex;
+	private int level;
+	private Node next;
+
+	ColumnNodeIterator(Table table, HNodePath path, int startIndex, int endIndex) {
+		List<String> ids = new ArrayList<String>();
+		for (HNodePath p = path; p != null && !p.isEmpty(); p = p.getRest()) {
+			ids.add(p.getFirst().getId());
+		}
+		this.hNodeIds = ids.toArray(new String[ids.size()]);
+		this.tables = new Table[hNodeIds.length];
+		this.rowIndexes = new int[hNodeIds.length];
+		this.endIndex = Math.min(endIndex, table.getNumRows());
+		if (hNodeIds.length == 0) {
+			this.level = -1;
+		} else {
+			this.level = 0;
+			tables[0] = table;
+			rowIndexes[0] = Math.max(startIndex, 0);
+		}
+		advance();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public Node next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		Node n = next;
+		advance();
+		return n;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void advance() {
+		next = null;
+		while (level >= 0) {
+			Table table = tables[level];
+			int end = level == 0 ? endIndex : table.getNumRows();
+			if (rowIndexes[level] >= end) {
+				level--;
+				continue;
+			}
+			Node n = table.getRow(rowIndexes[level]++).getNode(hNodeIds[level]);
+			if (n == null) {
+				continue;
+			}
+			if (level == hNodeIds.length - 1) {
+				next = n;
+				return;
+			}
+			if (n.hasNestedTable()) {
+				level++;
+				tables[level] = n.getNestedTable();
+				rowIndexes[level] = 0;
+			}
+		}
+	}
+}
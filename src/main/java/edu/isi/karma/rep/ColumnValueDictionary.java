@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps one shared {@link StringCellValue} per distinct value of a column, so that 
+ * the nodes of a column with few distinct values (countries, status codes, ...) do not 
+ * each hold their own copy. A column that turns out to have more than 
+ * <code>maxDistinctValues</code> values stops being encoded and releases its dictionary, 
+ * as sharing would not save memory for it.
+ */
+public class ColumnValueDictionary {
+
+	public static int DEFAULT_MAX_DISTINCT_VALUES = 10000;
+	
+	private final String hNodeId;
+	private final int maxDistinctValues;
+	private Map<String, StringCellValue> values = new HashMap<String, StringCellValue>();
+	private boolean highCardinality = false;
+	
+	ColumnValueDictionary(String hNodeId, int maxDistinctValues) {
+		this.hNodeId = hNodeId;
+		this.maxDistinctValues = maxDistinctValues;
+	}
+	
+	public String getHNodeId() {
+		return hNodeId;
+	}
+	
+	/**
+	 * @return the shared cell value for the given value, or a new one if the column 
+	 * has too many distinct values to be encoded.
+	 */
+	public synchronized StringCellValue getCellValue(String value) {
+		if (highCardinality) {
+			return new StringCellValue(value);
+		}
+		StringCellValue cellValue = values.get(value);
+		if (cellValue == null) {
+			if (values.size() >= maxDistinctValues) {
+				highCardinality = true;
+				values = null;
+				return new StringCellValue(value);
+			}
+			cellValue = new StringCellValue(value);
+			values.put(value, cellValue);
+		}
+		return cellValue;
+	}
+	
+	/**
+	 * @return the number of distinct values stored in the column so far, 
+	 * or -1 if the column has too many distinct values to be encoded.
+	 */
+	public synchronized int getDistinctCount() {
+		return highCardinality ? -1 : values.size();
+	}
+	
+	public synchronized boolean isHighCardinality() {
+		return highCardinality;
+	}
+	
+	/**
+	 * @return the distinct values stored in the column so far, empty if the column has 
+	 * too many distinct values to be encoded. Values that were removed from the column 
+	 * are still included. The collection is a copy, so it does not change when values
+	 * are added to the column.
+	 */
+	public synchronized Collection<StringCellValue> getDistinctValues() {
+		if (highCardinality) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<StringCellValue>(values.values());
+	}
+}
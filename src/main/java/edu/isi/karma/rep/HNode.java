@@ -44,6 +44,9 @@ public class HNode extends RepEntity implements Comparable<HNode> {
 	// The name of the column I represent.
 	private String columnName;
 
+	// The HTable I belong to, notified when my name changes.
+	private HTable hTable = null;
+
 	// A nested table, possibly null.
 	private HTable nestedTable = null;
 
@@ -68,7 +71,15 @@ public class HNode extends RepEntity implements Comparable<HNode> {
 	}
 
 	public void setColumnName(String columnName) {
+		String oldColumnName = this.columnName;
 		this.columnName = columnName;
+		if (hTable != null) {
+			hTable.columnNameChanged(this, oldColumnName);
+		}
+	}
+
+	void setHTable(HTable hTable) {
+		this.hTable = hTable;
 	}
 
 	/**
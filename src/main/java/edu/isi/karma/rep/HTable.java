@@ -51,6 +51,10 @@ public class HTable extends RepEntity {
 
 	private ArrayList<String> orderedNodeIds = new ArrayList<String>();
 
+	// My columns by name, kept up to date when columns are added, renamed or
+	// removed. When several columns have the same name, it has one of them.
+	private final Map<String, HNode> nodesByColumnName = new HashMap<String, HNode>();
+
 	// mariam
 	/**
 	 * the HNode that contains this table (useful for backwards traversing)
@@ -87,12 +91,7 @@ public class HTable extends RepEntity {
 	}
 
 	public HNode getHNodeFromColumnName(String columnName) {
-		for (HNode n : nodes.values()) {
-			if (columnName.equals(n.getColumnName())) {
-				return n;
-			}
-		}
-		return null;
+		return nodesByColumnName.get(columnName);
 	}
 
 	// mariam
@@ -135,12 +134,8 @@ public class HTable extends RepEntity {
 	 *         worksheets that do not contain nested tables.
 	 */
 	public String getHNodeIdFromColumnName(String columnName) {
-		for (Map.Entry<String, HNode> n : nodes.entrySet()) {
-			if (columnName.equals(n.getValue().getColumnName())) {
-				return n.getKey();
-			}
-		}
-		return null;
+		HNode n = nodesByColumnName.get(columnName);
+		return n == null ? null : n.getId();
 	}
 
 	/**
@@ -166,7 +161,7 @@ public class HTable extends RepEntity {
 	public HNode addHNode(String columnName, boolean automaticallyAdded,
 			Worksheet worksheet, RepFactory factory) {
 		HNode hn = factory.createHNode(id, columnName, automaticallyAdded);
-		nodes.put(hn.getId(), hn);
+		putHNode(hn);
 		orderedNodeIds.add(hn.getId());
 		worksheet.addNodeToDataTable(hn, factory);
 		return hn;
@@ -206,7 +201,7 @@ public class HTable extends RepEntity {
 			}
 		} else {
 			HNode newNode = factory.createHNode(getId(), columnName, false);
-			nodes.put(newNode.getId(), newNode);
+			putHNode(newNode);
 			int index = orderedNodeIds.indexOf(hNodeId);
 
 			if (index == orderedNodeIds.size() - 1)
@@ -224,7 +219,7 @@ public class HTable extends RepEntity {
 			String columnName, Worksheet worksheet, boolean b) throws KarmaException {
 
 		HNode hn = factory.createHNode(id, columnName, false);
-		nodes.put(hn.getId(), hn);
+		putHNode(hn);
 		//if hNodeId==null add new node at the beginning
 		if(hNodeId==null){
 			orderedNodeIds.add(0,hn.getId());
@@ -251,11 +246,51 @@ public class HTable extends RepEntity {
 	//mariam 2012-11-30
 	public void removeHNode(String hNodeId,Worksheet worksheet){
 
-		nodes.remove(hNodeId);
+		HNode hn = nodes.remove(hNodeId);
 		orderedNodeIds.remove(hNodeId);
+		if (hn != null) {
+			hn.setHTable(null);
+			removeFromColumnNameIndex(hn, hn.getColumnName());
+		}
 		worksheet.removeNodeFromDataTable(hNodeId);
 	}
 
+	private void putHNode(HNode hn) {
+		nodes.put(hn.getId(), hn);
+		hn.setHTable(this);
+		addToColumnNameIndex(hn);
+	}
+
+	/**
+	 * Called by the HNode when its column name changes.
+	 */
+	void columnNameChanged(HNode hn, String oldColumnName) {
+		removeFromColumnNameIndex(hn, oldColumnName);
+		addToColumnNameIndex(hn);
+	}
+
+	private void addToColumnNameIndex(HNode hn) {
+		String columnName = hn.getColumnName();
+		if (columnName != null && !nodesByColumnName.containsKey(columnName)) {
+			nodesByColumnName.put(columnName, hn);
+		}
+	}
+
+	private void removeFromColumnNameIndex(HNode hn, String columnName) {
+		if (columnName == null || nodesByColumnName.get(columnName) != hn) {
+			return;
+		}
+		nodesByColumnName.remove(columnName);
+		// Another column may have the same name
+		for (String hNodeId : orderedNodeIds) {
+			HNode n = nodes.get(hNodeId);
+			if (n != null && n != hn && columnName.equals(n.getColumnName())) {
+				nodesByColumnName.put(columnName, n);
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Returns ordered nodeIds.
 	 * 
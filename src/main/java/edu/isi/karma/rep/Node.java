@@ -124,6 +124,13 @@ public class Node extends RepEntity implements Neighbor {
 		}
 	}
 
+	/**
+	 * Replaces the value with an equal one stored differently, keeping the status.
+	 */
+	void replaceValue(CellValue value) {
+		this.value = value;
+	}
+
 	public void clearValue(NodeStatus status) {
 		// pedro 2012-09-15: this was wrong because it was setting the value to
 		// null.
@@ -132,7 +139,7 @@ public class Node extends RepEntity implements Neighbor {
 	}
 
 	public void setValue(String value, NodeStatus status, RepFactory factory) {
-		setValue(new StringCellValue(value), status, factory);
+		setValue(factory.getCellValue(hNodeId, value), status, factory);
 	}
 
 	public Table getNestedTable() {
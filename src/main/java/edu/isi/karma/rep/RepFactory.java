@@ -20,16 +20,24 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * @author szekely
  * 
  */
 public class RepFactory {
 
+	private static Logger logger = LoggerFactory.getLogger(RepFactory.class);
+	
+	// Approximate heap size of a String and its StringCellValue, without the characters
+	private static final int CELL_VALUE_OVERHEAD = 80;
 
 	private final Map<String, HNode> hNodes = new HashMap<String, HNode>(100);
 	private final Map<String, HTable> hTables = new HashMap<String, HTable>(10);
@@ -37,6 +45,14 @@ public class RepFactory {
 	private final Map<String, Table> tables = new HashMap<String, Table>(10);
 	private final Map<String, Row> rows = new HashMap<String, Row>(1000);
 	private final Map<String, Node> nodes = new HashMap<String, Node>(10000);
+	private final Map<String, RowLayout> rowLayouts = new HashMap<String, RowLayout>(10);
+	private final Map<String, ColumnValueDictionary> valueDictionaries = new HashMap<String, ColumnValueDictionary>(100);
+	private boolean valueDictionariesEnabled = false;
+	private long memoryBudget = -1;
+	private long heapValueBytes = 0;
+	// The values are spilled when heapValueBytes exceeds this
+	private long spillThreshold = -1;
+	private CellValueSpillStore spillStore;
 	private int id = 0;
 	
 	public Worksheet createWorksheet(String tableName, Workspace workspace, String encoding) {
@@ -111,6 +127,144 @@ public class RepFactory {
 		return rows.get(id);
 	}
 
+	/**
+	 * When enabled, the string values set in the nodes are shared per column through 
+	 * a {@link ColumnValueDictionary}. Disabled by default.
+	 */
+	public void setValueDictionariesEnabled(boolean enabled) {
+		this.valueDictionariesEnabled = enabled;
+	}
+	
+	public boolean isValueDictionariesEnabled() {
+		return valueDictionariesEnabled;
+	}
+	
+	/**
+	 * @return the dictionary of the values of the column, or null if the column has no 
+	 * dictionary.
+	 */
+	public synchronized ColumnValueDictionary getValueDictionary(String hNodeId) {
+		return valueDictionaries.get(hNodeId);
+	}
+	
+	/**
+	 * @return the cell value to store for the given value in a node of the column, 
+	 * shared with the other nodes of the column if the value dictionaries are enabled.
+	 */
+	CellValue getCellValue(String hNodeId, String value) {
+		if (!valueDictionariesEnabled) {
+			accountCellValue(value);
+			return new StringCellValue(value);
+		}
+		ColumnValueDictionary dictionary;
+		synchronized (this) {
+			dictionary = valueDictionaries.get(hNodeId);
+			if (dictionary == null) {
+				dictionary = new ColumnValueDictionary(hNodeId, 
+						ColumnValueDictionary.DEFAULT_MAX_DISTINCT_VALUES);
+				valueDictionaries.put(hNodeId, dictionary);
+			}
+		}
+		CellValue cellValue = dictionary.getCellValue(value);
+		if (dictionary.isHighCardinality()) {
+			accountCellValue(value);
+		}
+		return cellValue;
+	}
+	
+	/**
+	 * Sets the approximate number of bytes that the cell values of the workspace may 
+	 * take on the heap. When the budget is exceeded, the values of the rows added so far 
+	 * are moved to a memory-mapped file and read back from it when they are accessed. 
+	 * A negative budget, the default, keeps all the values on the heap.
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		this.spillThreshold = memoryBudget;
+	}
+	
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	private void accountCellValue(String value) {
+		if (memoryBudget < 0) {
+			return;
+		}
+		heapValueBytes += getHeapSize(value);
+		if (heapValueBytes > spillThreshold) {
+			spillCellValues();
+		}
+	}
+	
+	/**
+	 * @return the approximate number of heap bytes taken by a cell value, 0 for a 
+	 *         null value, e.g. an SQL NULL
+	 */
+	static long getHeapSize(String value) {
+		if (value == null) {
+			return 0;
+		}
+		return CELL_VALUE_OVERHEAD + 2L * value.length();
+	}
+	
+	private synchronized void spillCellValues() {
+		try {
+			if (spillStore == null) {
+				spillStore = new CellValueSpillStore();
+			}
+			long spilledBytes = 0;
+			for (Table table : tables.values()) {
+				spilledBytes += table.spillCellValues(spillStore, this);
+			}
+			heapValueBytes -= spilledBytes;
+			logger.info("Moved " + spilledBytes + " bytes of cell values off the heap");
+		} catch (IOException e) {
+			logger.error("Unable to spill the cell values, keeping them on the heap", e);
+			memoryBudget = -1;
+			return;
+		}
+		if (heapValueBytes > memoryBudget) {
+			// The values that cannot be spilled, short values and values shared through a 
+			// dictionary, exceed the budget. Spill again once a quarter of the budget of 
+			// new values was added rather than for every value.
+			logger.warn("The cell values that cannot be moved off the heap take " 
+					+ heapValueBytes + " bytes, more than the budget of " + memoryBudget);
+			spillThreshold = heapValueBytes + Math.max(1, memoryBudget / 4);
+		} else {
+			spillThreshold = memoryBudget;
+		}
+	}
+	
+	/**
+	 * Forgets all the worksheets and their tables, rows and nodes. The settings of the 
+	 * factory are kept and new ids continue to be unique.
+	 */
+	public synchronized void clear() {
+		hNodes.clear();
+		hTables.clear();
+		worksheets.clear();
+		tables.clear();
+		rows.clear();
+		nodes.clear();
+		rowLayouts.clear();
+		valueDictionaries.clear();
+		heapValueBytes = 0;
+		spillThreshold = memoryBudget;
+		releaseSpillStore();
+	}
+	
+	/**
+	 * Deletes the file holding the values moved off the heap. The workspace can not 
+	 * be used afterwards.
+	 */
+	public synchronized void releaseSpillStore() {
+		if (spillStore != null) {
+			spillStore.close();
+			spillStore = null;
+		}
+	}
+
 	HTable createHTable(String id, String tableName) {
 		HTable ht = new HTable(id, tableName);
 		hTables.put(id, ht);
@@ -134,7 +288,7 @@ public class RepFactory {
 	}
 
 	Row createRow(String id, String hTableId, String worksheetId) {
-		Row r = new Row(id);
+		Row r = new Row(id, getRowLayout(hTableId));
 		rows.put(id, r);
 
 		HTable ht = hTables.get(hTableId);
@@ -145,6 +299,19 @@ public class RepFactory {
 
 		return r;
 	}
+	
+	/**
+	 * @return the layout shared by the rows of the tables of the given HTable.
+	 */
+	RowLayout getRowLayout(String hTableId) {
+		RowLayout layout = rowLayouts.get(hTableId);
+		if (layout == null) {
+			layout = new RowLayout();
+			rowLayouts.put(hTableId, layout);
+		}
+		return layout;
+	}
+	
 	Row createRow(String hTableId, String worksheetId) {
 		String id = getNewId("R");
 		return createRow(id, hTableId, worksheetId);
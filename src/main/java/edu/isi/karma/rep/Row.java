@@ -24,9 +24,15 @@
 package edu.isi.karma.rep;
 
 import java.io.PrintWriter;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,9 +46,15 @@ public class Row extends RepEntity implements Neighbor {
 	private static Logger logger = LoggerFactory.getLogger(Row.class
 			.getSimpleName());
 
-	// My nodes, columns containing cells or nested tables, a map from HNode ids
-	// to Node.
-	private final Map<String, Node> nodes = new HashMap<String, Node>();
+	// My nodes, columns containing cells or nested tables, indexed by the slot
+	// of their HNode in the layout shared by the rows of my HTable.
+	private final RowLayout layout;
+	private Node[] nodes = EMPTY_NODES;
+	// The number of slots holding a node
+	private int numNodes = 0;
+	private Collection<Node> nodesView;
+	
+	private static final Node[] EMPTY_NODES = new Node[0];
 
 	// mariam
 	/**
@@ -50,18 +62,27 @@ public class Row extends RepEntity implements Neighbor {
 	 */
 	private Table belongsToTable;
 
-	Row(String id) {
+	Row(String id, RowLayout layout) {
 		super(id);
+		this.layout = layout;
 	}
 
 	public Node getNode(String hNodeId) {
-		return nodes.get(hNodeId);
+		int slot = layout.getSlot(hNodeId);
+		if (slot < 0 || slot >= nodes.length) {
+			return null;
+		}
+		return nodes[slot];
 	}
 
 	// mariam
 	public void removeNode(String hNodeId) {
-		nodes.remove(hNodeId);
-		for (Node n : nodes.values()) {
+		int slot = layout.getSlot(hNodeId);
+		if (slot >= 0 && slot < nodes.length && nodes[slot] != null) {
+			nodes[slot] = null;
+			numNodes--;
+		}
+		for (Node n : getNodes()) {
 			Table nestedTable = n.getNestedTable();
 			if (nestedTable != null) {
 				nestedTable.removeNodeFromDataTable(hNodeId);
@@ -69,8 +90,14 @@ public class Row extends RepEntity implements Neighbor {
 		}
 	}
 
+	/**
+	 * Returns a read-only view of my nodes, in the order of the slots.
+	 */
 	public Collection<Node> getNodes() {
-		return nodes.values();
+		if (nodesView == null) {
+			nodesView = new NodesCollection();
+		}
+		return nodesView;
 	}
 
 	// mariam
@@ -80,7 +107,7 @@ public class Row extends RepEntity implements Neighbor {
 	 * @return all nodes and associated HNodeIds.
 	 */
 	public Map<String, Node> getNodesMap() {
-		return nodes;
+		return new NodesMap();
 	}
 
 	public void setBelongsToTable(Table t) {
@@ -98,7 +125,14 @@ public class Row extends RepEntity implements Neighbor {
 	// ///////////////
 
 	void addNode(Node node) {
-		nodes.put(node.getHNodeId(), node);
+		int slot = layout.getOrAddSlot(node.getHNodeId());
+		if (slot >= nodes.length) {
+			nodes = Arrays.copyOf(nodes, Math.max(slot + 1, layout.size()));
+		}
+		if (nodes[slot] == null) {
+			numNodes++;
+		}
+		nodes[slot] = node;
 		// mariam
 		node.setBelongsToRow(this);
 	}
@@ -157,7 +191,7 @@ public class Row extends RepEntity implements Neighbor {
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix + "__");
 		pw.println("/" + id);
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			n.prettyPrint(prefix, pw, factory);
 		}
 	}
@@ -165,7 +199,7 @@ public class Row extends RepEntity implements Neighbor {
 	// mariam
 	public String toString() {
 		String s = "ROW:\n";
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			s += n.toString();
 		}
 		return s;
@@ -180,7 +214,7 @@ public class Row extends RepEntity implements Neighbor {
 		} else {
 			// We don't know where the nested table is, so we have to
 			// try all of them.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNodeToDataTable(newHNode, factory);
@@ -211,7 +245,7 @@ public class Row extends RepEntity implements Neighbor {
 		} else {
 			// The node may be in one of the nested tables. We have to look for
 			// it.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNestedTableToDataTable(hNode, factory);
@@ -223,15 +257,16 @@ public class Row extends RepEntity implements Neighbor {
 	@Override
 	public boolean canReachNeighbor(String hNodeId) {
 
-		return nodes.containsKey(hNodeId)
+		return getNode(hNodeId) != null
 				|| (belongsToTable.getNestedTableInNode() != null && belongsToTable
 						.getNestedTableInNode().canReachNeighbor(hNodeId));
 	}
 
 	@Override
 	public Node getNeighbor(String hNodeId) {
-		if (nodes.containsKey(hNodeId)) {
-			return nodes.get(hNodeId);
+		Node node = getNode(hNodeId);
+		if (node != null) {
+			return node;
 		} else if (belongsToTable.getNestedTableInNode() != null) {
 			return belongsToTable.getNestedTableInNode().getNeighbor(hNodeId);
 		}
@@ -251,4 +286,105 @@ public class Row extends RepEntity implements Neighbor {
 		}
 		return null;
 	}
+
+	/**
+	 * Read-only view of the nodes of the row by HNode id, in the order of the slots.
+	 */
+	private class NodesMap extends AbstractMap<String, Node> {
+
+		@Override
+		public Node get(Object hNodeId) {
+			return hNodeId instanceof String ? getNode((String) hNodeId) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object hNodeId) {
+			return get(hNodeId) != null;
+		}
+
+		@Override
+		public Collection<Node> values() {
+			return getNodes();
+		}
+
+		@Override
+		public Set<Map.Entry<String, Node>> entrySet() {
+			return new AbstractSet<Map.Entry<String, Node>>() {
+				@Override
+				public Iterator<Map.Entry<String, Node>> iterator() {
+					final Iterator<Node> it = new NodesIterator();
+					return new Iterator<Map.Entry<String, Node>>() {
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						@Override
+						public Map.Entry<String, Node> next() {
+							Node n = it.next();
+							return new AbstractMap.SimpleImmutableEntry<String, Node>(n.getHNodeId(), n);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return numNodes;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Read-only view of the nodes of the row over the slot array.
+	 */
+	private class NodesCollection extends AbstractCollection<Node> {
+
+		@Override
+		public Iterator<Node> iterator() {
+			return new NodesIterator();
+		}
+
+		@Override
+		public int size() {
+			return numNodes;
+		}
+	}
+
+	private class NodesIterator implements Iterator<Node> {
+		private final Node[] slots = nodes;
+		private int next = advance(0);
+
+		private int advance(int from) {
+			while (from < slots.length && slots[from] == null) {
+				from++;
+			}
+			return from;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < slots.length;
+		}
+
+		@Override
+		public Node next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node n = slots[next];
+			next = advance(next + 1);
+			return n;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a slot to every HNode of an HTable. All the rows of the tables defined by 
+ * the HTable share the same layout and keep their nodes in an array indexed by slot, 
+ * instead of each row keeping its own map from HNode ids to nodes. Slots are never 
+ * reused, the slot of a removed HNode stays empty in the rows.
+ */
+class RowLayout {
+
+	private final Map<String, Integer> slots = new HashMap<String, Integer>();
+	private final List<String> hNodeIds = new ArrayList<String>();
+	
+	/**
+	 * @return the slot of the HNode or -1 if the HNode has no slot in this layout.
+	 */
+	int getSlot(String hNodeId) {
+		Integer slot = slots.get(hNodeId);
+		return slot == null ? -1 : slot;
+	}
+	
+	int getOrAddSlot(String hNodeId) {
+		Integer slot = slots.get(hNodeId);
+		if (slot == null) {
+			slot = hNodeIds.size();
+			slots.put(hNodeId, slot);
+			hNodeIds.add(hNodeId);
+		}
+		return slot;
+	}
+	
+	int size() {
+		return hNodeIds.size();
+	}
+}
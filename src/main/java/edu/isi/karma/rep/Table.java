@@ -23,10 +23,15 @@
  */
 package edu.isi.karma.rep;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +47,9 @@ public class Table extends RepEntity {
 	private static Logger logger = LoggerFactory.getLogger(Table.class
 			.getSimpleName());
 
+	// Shorter values take less memory on the heap than a reference to the spill store
+	private static final int MIN_SPILLED_VALUE_LENGTH = 16;
+
 	// The worksheet where I am defined.
 	private final String worksheetId;
 
@@ -51,6 +59,9 @@ public class Table extends RepEntity {
 	// My rows.
 	private final ArrayList<Row> rows = new ArrayList<Row>();
 
+	// The rows before this index had their values moved to the spill store.
+	private int numSpilledRows = 0;
+
 	// mariam
 	/**
 	 * The node that this table is a nested table in.
@@ -131,17 +142,83 @@ public class Table extends RepEntity {
 	 *            , first row at index 0.
 	 * @param count
 	 * @return the requested number of rows or less if the count or startIndex
-	 *         are out of bounds.
+	 *         are out of bounds. The list is a read-only view of the rows of 
+	 *         the table, and does not change when rows are added.
+	 */
+	public List<Row> getRows(int startIndex, int count) {
+		if (rows.size() == 0) {
+			return Collections.emptyList();
+		}
+		int fromIndex = Math.min(startIndex, rows.size() - 1);
+		int toIndex = Math.min(startIndex + count, rows.size());
+		if (fromIndex >= toIndex) {
+			return Collections.emptyList();
+		}
+		return new RowRange(fromIndex, toIndex);
+	}
+
+	/**
+	 * A range of my rows. Rows are only ever appended, so the rows in the range
+	 * stay the same.
+	 */
+	private class RowRange extends AbstractList<Row> implements RandomAccess {
+		private final int fromIndex;
+		private final int size;
+
+		RowRange(int fromIndex, int toIndex) {
+			this.fromIndex = fromIndex;
+			this.size = toIndex - fromIndex;
+		}
+
+		@Override
+		public Row get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return rows.get(fromIndex + index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Moves the string values of the rows that were not spilled yet to the spill store.
+	 * Nested tables are spilled separately. Short values and values shared through a 
+	 * column dictionary are kept on the heap.
+	 * 
+	 * @return the number of heap bytes of the values moved, as counted by 
+	 *         {@link RepFactory#getHeapSize(String)}
 	 */
-	public ArrayList<Row> getRows(int startIndex, int count) {
-		ArrayList<Row> result = new ArrayList<Row>();
-		if (rows.size() > 0) {
-			for (int i = Math.min(startIndex, rows.size() - 1); i < Math.min(
-					startIndex + count, rows.size()); i++) {
-				result.add(rows.get(i));
+	long spillCellValues(CellValueSpillStore store, RepFactory factory)
+			throws IOException {
+		long spilledBytes = 0;
+		for (int i = numSpilledRows; i < rows.size(); i++) {
+			for (Node n : rows.get(i).getNodes()) {
+				if (n.hasNestedTable() || !(n.getValue() instanceof StringCellValue)) {
+					continue;
+				}
+				CellValue value = n.getValue();
+				String stringValue = value.asString();
+				if (value.isEmptyValue() || stringValue == null
+						|| stringValue.length() < MIN_SPILLED_VALUE_LENGTH) {
+					continue;
+				}
+				ColumnValueDictionary dictionary = factory.getValueDictionary(n.getHNodeId());
+				if (dictionary != null && !dictionary.isHighCardinality()) {
+					continue;
+				}
+				CellValue spilledValue = store.store(stringValue);
+				if (spilledValue != null) {
+					n.replaceValue(spilledValue);
+					spilledBytes += RepFactory.getHeapSize(stringValue);
+				}
 			}
 		}
-		return result;
+		numSpilledRows = rows.size();
+		return spilledBytes;
 	}
 
 	@Override
@@ -155,6 +232,40 @@ public class Table extends RepEntity {
 		}
 	}
 
+	Row getRow(int index) {
+		return rows.get(index);
+	}
+
+	/**
+	 * @param path
+	 *            Path to a given column
+	 * @return the nodes of the table that satisfy the given path, read as they 
+	 *         are iterated
+	 */
+	public Iterable<Node> getColumnNodes(HNodePath path) {
+		return getColumnNodes(path, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param path
+	 *            Path to a given column
+	 * @param startIndex
+	 *            first row at index 0.
+	 * @param endIndex
+	 *            the index after the last row
+	 * @return the nodes of the table that satisfy the given path, in the given
+	 *         range of rows of this table
+	 */
+	public Iterable<Node> getColumnNodes(final HNodePath path,
+			final int startIndex, final int endIndex) {
+		return new Iterable<Node>() {
+			@Override
+			public Iterator<Node> iterator() {
+				return new ColumnNodeIterator(Table.this, path, startIndex, endIndex);
+			}
+		};
+	}
+
 	/**
 	 * Populates the nodes Collection (present in the argument) with nodes from
 	 * the table that satisfy the given path.
@@ -168,75 +279,16 @@ public class Table extends RepEntity {
 		if (nodes == null) {
 			nodes = new ArrayList<Node>();
 		}
-		collectNodes(path, nodes, rows);
-	}
-
-	private void collectNodes(HNodePath path, Collection<Node> nodes,
-			List<Row> rows) {
-		RowIterator: for (Row r : rows) {
-
-			Node n = r.getNode(path.getFirst().getId());
-			if (n == null) {
-				continue RowIterator;
-			}
-			// Check if the path has only one HNode
-			if (path.getRest() == null || path.getRest().isEmpty()) {
-				nodes.add(n);
-				continue RowIterator;
-			}
-
-			// Check if the node has a nested table
-			if (n.hasNestedTable()) {
-				int numRows = n.getNestedTable().getNumRows();
-				if (numRows == 0)
-					continue RowIterator;
-
-				List<Row> rowsNestedTable = n.getNestedTable().getRows(0,
-						numRows);
-				if (rowsNestedTable != null && rowsNestedTable.size() != 0) {
-					collectNodes(path.getRest(), nodes, rowsNestedTable);
-					continue RowIterator;
-				}
-			}
-
+		for (Node n : getColumnNodes(path)) {
+			nodes.add(n);
 		}
 	}
 
 	public void setCollectedNodeValues(HNodePath path, List<String> nodes,
 			RepFactory factory) {
-		setCollectedNodeValues(path, nodes, rows, 0, factory);
-	}
-
-	private void setCollectedNodeValues(HNodePath path, List<String> nodes,
-			List<Row> rows, int nodeIdx, RepFactory factory) {
-
-		RowIterator: for (Row r : rows) {
-
-			Node n = r.getNode(path.getFirst().getId());
-			if (n == null) {
-				continue RowIterator;
-			}
-			// Check if the path has only one HNode
-			if (path.getRest() == null || path.getRest().isEmpty()) {
-				n.setValue(nodes.get(nodeIdx++), NodeStatus.original, factory);
-				continue RowIterator;
-			}
-
-			// Check if the node has a nested table
-			if (n.hasNestedTable()) {
-				int numRows = n.getNestedTable().getNumRows();
-				if (numRows == 0)
-					continue RowIterator;
-
-				List<Row> rowsNestedTable = n.getNestedTable().getRows(0,
-						numRows);
-				if (rowsNestedTable != null && rowsNestedTable.size() != 0) {
-					setCollectedNodeValues(path.getRest(), nodes,
-							rowsNestedTable, nodeIdx, factory);
-					continue RowIterator;
-				}
-			}
-
+		int nodeIdx = 0;
+		for (Node n : getColumnNodes(path)) {
+			n.setValue(nodes.get(nodeIdx++), NodeStatus.original, factory);
 		}
 	}
 
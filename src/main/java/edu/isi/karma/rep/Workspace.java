@@ -102,6 +102,16 @@ public class Workspace extends Entity {
 	public Collection<Worksheet> getWorksheets() {
 		return worksheets.values();
 	}
+	
+	/**
+	 * Removes all the worksheets, their data and the command history. The ontologies 
+	 * and preferences are kept, so the workspace can be reused to load new data.
+	 */
+	public void clearWorksheets() {
+		worksheets.clear();
+		commandHistory.clear();
+		factory.clear();
+	}
 
 	public RepFactory getFactory() {
 		return factory;
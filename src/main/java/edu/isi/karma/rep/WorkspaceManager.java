@@ -20,8 +20,8 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -32,7 +32,7 @@ public class WorkspaceManager {
 	
 	private int nextId = 1;
 	
-	private final Map<String, Workspace> workspaces = new HashMap<String, Workspace>();
+	private final Map<String, Workspace> workspaces = new ConcurrentHashMap<String, Workspace>();
 	
 	private static WorkspaceManager singleton = new WorkspaceManager();
 	
@@ -58,12 +58,15 @@ public class WorkspaceManager {
 		return wsp;
 	}
 	
-	public String getNewId(String prefix) {
+	public synchronized String getNewId(String prefix) {
 		return prefix + (nextId++);
 	}
 	
 	public void removeWorkspace(String workspaceId) {
-		workspaces.remove(workspaceId);
+		Workspace workspace = workspaces.remove(workspaceId);
+		if (workspace != null) {
+			workspace.getFactory().releaseSpillStore();
+		}
 	}
 	
 	public Workspace getWorkspace(String workspaceId) {
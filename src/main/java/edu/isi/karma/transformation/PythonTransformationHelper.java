@@ -22,16 +22,93 @@
 package edu.isi.karma.transformation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.python.core.PyCode;
 import org.python.core.PyObject;
 import org.python.core.PyType;
+import org.python.util.PythonInterpreter;
 
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.Worksheet;
 
 public class PythonTransformationHelper {
+	
+	private static final int MAX_COMPILED_STATEMENTS = 1000;
+	
+	/**
+	 * Statements compiled once and executed in the interpreters of all the threads, 
+	 * e.g. the transform methods replayed from the history of a model.
+	 */
+	private static final Map<String, PyCode> compiledStatements = new ConcurrentHashMap<String, PyCode>();
+	
+	/**
+	 * Creating an interpreter and running the imports is much slower than running 
+	 * a transformation, so when a history is replayed offline each thread keeps one 
+	 * with the imports and the getValue method already defined. Jython interpreters 
+	 * can not be shared between threads.
+	 */
+	private static final ThreadLocal<PythonInterpreter> interpreters = new ThreadLocal<PythonInterpreter>() {
+		@Override
+		protected PythonInterpreter initialValue() {
+			return new PythonTransformationHelper().createInterpreter();
+		}
+	};
+	
+	private static final ThreadLocal<Boolean> reuseInterpreters = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+	
+	/**
+	 * Makes {@link #getInterpreter()} return the interpreter kept by the current thread 
+	 * instead of a new one. Only the offline replay of a history turns this on, the 
+	 * commands run from the UI do not share the state of their interpreters.
+	 * @return the previous setting, to be restored when the replay is done
+	 */
+	public static boolean setReuseInterpreters(boolean reuse) {
+		boolean previous = reuseInterpreters.get();
+		reuseInterpreters.set(reuse);
+		return previous;
+	}
+	
+	/**
+	 * @return an interpreter where the imports and the getValue method are defined
+	 */
+	public PythonInterpreter getInterpreter() {
+		if (reuseInterpreters.get()) {
+			return interpreters.get();
+		}
+		return createInterpreter();
+	}
+	
+	private PythonInterpreter createInterpreter() {
+		PythonInterpreter interpreter = new PythonInterpreter();
+		interpreter.exec(getImportStatements());
+		interpreter.exec(getGetValueDefStatement(new HashMap<String, String>()));
+		return interpreter;
+	}
+	
+	/**
+	 * Compiles the statement or returns the code compiled for it before.
+	 */
+	public PyCode compile(PythonInterpreter interpreter, String statement) {
+		PyCode code = compiledStatements.get(statement);
+		if (code == null) {
+			code = interpreter.compile(statement);
+			if (compiledStatements.size() >= MAX_COMPILED_STATEMENTS) {
+				compiledStatements.clear();
+			}
+			compiledStatements.put(statement, code);
+		}
+		return code;
+	}
+	
 	public String getPyObjectValueAsString(PyObject obj) {
 		if (obj == null)
 			return "";
@@ -41,6 +41,18 @@ public abstract class AbstractJDBCUtil {
 		Oracle, MySQL, SQLServer, PostGIS, Sybase
 	}
 
+	/**
+	 * The number of rows fetched at a time by the statements that read whole tables.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 10000;
+
+	/**
+	 * The number of rows sent to the database at a time when inserting the rows of a worksheet.
+	 */
+	public static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+
+	private int insertBatchSize = DEFAULT_INSERT_BATCH_SIZE;
+
 	protected abstract String getDriver();
 	protected abstract String getConnectStringTemplate();
 	/**
@@ -121,11 +133,100 @@ public abstract class AbstractJDBCUtil {
 		return vals;
 	}
 	
+	/**
+	 * The fetch size that makes the driver stream the rows of a forward-only,
+	 * read-only result set instead of loading them all when the query is executed.
+	 */
+	public int getFetchSize() {
+		return DEFAULT_FETCH_SIZE;
+	}
+
+	/**
+	 * Creates a statement whose result sets are read with a cursor, {@link #getFetchSize()}
+	 * rows at a time, to read tables that do not fit in memory. Auto-commit is turned off 
+	 * on the connection, as some drivers, e.g. PostgreSQL, only use a cursor inside a 
+	 * transaction.
+	 */
+	public Statement createStreamingStatement(Connection conn) throws SQLException {
+		conn.setAutoCommit(false);
+		Statement s = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		s.setFetchSize(getFetchSize());
+		return s;
+	}
+
+	public int getInsertBatchSize() {
+		return insertBatchSize;
+	}
+
+	/**
+	 * Sets the number of rows sent at a time by the inserters created afterwards.
+	 */
+	public void setInsertBatchSize(int insertBatchSize) {
+		if (insertBatchSize <= 0) {
+			throw new IllegalArgumentException("The insert batch size must be positive: " 
+					+ insertBatchSize);
+		}
+		this.insertBatchSize = insertBatchSize;
+	}
+
+	/**
+	 * Creates an inserter that sends the rows to the table in batches of 
+	 * {@link #getInsertBatchSize()} rows. By default the rows are inserted with 
+	 * a prepared statement; subclasses can use a faster path of the database.
+	 * 
+	 * @param columnNames
+	 * 	the names of the columns of the inserted values
+	 * @param columnTypes
+	 * 	the java.sql.Types of the columns, used to insert null values
+	 */
+	public BatchInserter createBatchInserter(Connection conn, String tableName, 
+			List<String> columnNames, int[] columnTypes) throws SQLException {
+		String insertQ = "insert into " + prepareName(tableName) + "(" 
+				+ getColumnList(columnNames) + ") values (";
+		for (int i = 0; i < columnNames.size(); i++) {
+			insertQ += (i > 0 ? ",?" : "?");
+		}
+		insertQ += ")";
+		logger.debug("insertQ " + insertQ);
+		return new PreparedStatementBatchInserter(conn, insertQ, columnTypes, getInsertBatchSize());
+	}
+
+	/**
+	 * @return the escaped column names separated by commas
+	 */
+	protected String getColumnList(List<String> columnNames) {
+		StringBuilder columns = new StringBuilder();
+		for (String columnName : columnNames) {
+			if (columns.length() > 0) {
+				columns.append(',');
+			}
+			columns.append(prepareName(columnName));
+		}
+		return columns.toString();
+	}
+
 	/*
 	 * Only warn about SQL exception once. //Pedro
 	 */
 	private static boolean warnedSqlException = false;
 	
+	/**
+	 * @return the value of the column of the current row as a string, or "SQLException"
+	 * if it cannot be read
+	 */
+	public String getValue(ResultSet r, int column) {
+		try {
+			return r.getString(column);
+		} catch (SQLException e) {
+			if (!warnedSqlException) {
+				logger.warn(e.getMessage());
+				warnedSqlException = true;
+			}
+			return "SQLException";
+		}
+	}
+	
 	protected ArrayList<ArrayList<String>> parseResultSetIntoArrayListOfRows(ResultSet r) throws SQLException {
 		ArrayList<ArrayList<String>> vals = new ArrayList<ArrayList<String>>();
 
@@ -142,18 +243,7 @@ public abstract class AbstractJDBCUtil {
 		while (r.next()) {
 			ArrayList<String> row = new ArrayList<String>();
 			for (int i = 1; i <= meta.getColumnCount(); i++) {
-
-				String val;
-				try {
-					val = r.getString(i);
-				} catch (SQLException e) {
-					if (!warnedSqlException) {
-						logger.warn(e.getMessage());
-						warnedSqlException = true;
-					}
-					val = "SQLException";
-				}
-				row.add(val);
+				row.add(getValue(r, i));
 			}
 			vals.add(row);
 		}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.util;
+
+import java.sql.SQLException;
+
+/**
+ * Inserts rows in a database table in batches. Created by 
+ * {@link AbstractJDBCUtil#createBatchInserter}. The rows are inserted all at once 
+ * by {@link #finish()}: if it is not called or fails, none of them is.
+ */
+public interface BatchInserter {
+
+	/**
+	 * Adds a row to the current batch, which is sent to the database once it is full.
+	 * The values are copied before the method returns, so the array can be reused.
+	 * 
+	 * @param values
+	 * 	one value for every column: a String, a Number or null
+	 */
+	public void addRow(Object[] values) throws SQLException;
+
+	/**
+	 * Sends the rows of the last batch to the database and commits all the rows.
+	 */
+	public void finish() throws SQLException;
+
+	/**
+	 * Releases the resources of the inserter. If the rows were not committed by 
+	 * {@link #finish()}, they are rolled back.
+	 */
+	public void close() throws SQLException;
+}
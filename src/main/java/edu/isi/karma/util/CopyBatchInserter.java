@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.util;
+
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Inserts the rows with the PostgreSQL COPY command. The rows are written as CSV 
+ * records, batchSize rows at a time, in a single COPY, so they are all inserted 
+ * or none is.
+ */
+class CopyBatchInserter implements BatchInserter {
+
+	// The driver always sets the client encoding to UTF-8
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final CopyIn copyIn;
+	private final int batchSize;
+	private final StringBuilder buffer = new StringBuilder();
+	private int numPendingRows = 0;
+
+	CopyBatchInserter(PGConnection conn, String copyQuery, int batchSize) throws SQLException {
+		this.copyIn = conn.getCopyAPI().copyIn(copyQuery);
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public void addRow(Object[] values) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				buffer.append(',');
+			}
+			Object value = values[i];
+			// An unquoted empty value is NULL
+			if (value instanceof Number) {
+				buffer.append(value.toString());
+			} else if (value != null) {
+				buffer.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+			}
+		}
+		buffer.append('\n');
+		if (++numPendingRows == batchSize) {
+			writeBatch();
+		}
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		writeBatch();
+		copyIn.endCopy();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (copyIn.isActive()) {
+			copyIn.cancelCopy();
+		}
+	}
+
+	private void writeBatch() throws SQLException {
+		if (numPendingRows > 0) {
+			byte[] bytes = buffer.toString().getBytes(UTF8);
+			copyIn.writeToCopy(bytes, 0, bytes.length);
+			buffer.setLength(0);
+			numPendingRows = 0;
+		}
+	}
+}
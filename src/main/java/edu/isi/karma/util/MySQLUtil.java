@@ -37,8 +37,9 @@ public class MySQLUtil extends AbstractJDBCUtil {
 		"com.mysql.jdbc.Driver";
 	
 	//default port is 3306
+	//rewriteBatchedStatements makes the driver send a batch of inserts as multi-row inserts
 	static final String CONNECT_STRING_TEMPLATE = 
-		"jdbc:mysql://host:port/dbname?user=username&password=pwd";
+		"jdbc:mysql://host:port/dbname?rewriteBatchedStatements=true&user=username&password=pwd";
 		
 	@Override
 	public ArrayList<String> getListOfTables(Connection conn) 
@@ -77,6 +78,15 @@ public class MySQLUtil extends AbstractJDBCUtil {
 		return vals;
 	}
 
+	/**
+	 * Connector/J reads the whole result set unless the fetch size is Integer.MIN_VALUE,
+	 * which streams it row by row.
+	 */
+	@Override
+	public int getFetchSize() {
+		return Integer.MIN_VALUE;
+	}
+
 	@Override
 	public String prepareName(String name) {
 		String s = name;
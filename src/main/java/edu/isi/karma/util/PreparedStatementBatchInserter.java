@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts the rows with a prepared statement, executing a JDBC batch every batchSize 
+ * rows. All the rows are inserted in one transaction, committed by {@link #finish()}, 
+ * so like a COPY they are all inserted or none is.
+ */
+class PreparedStatementBatchInserter implements BatchInserter {
+
+	private final Connection conn;
+	private final PreparedStatement stmt;
+	private final int[] columnTypes;
+	private final int batchSize;
+	private final boolean autoCommit;
+	private int numPendingRows = 0;
+	private boolean committed = false;
+
+	PreparedStatementBatchInserter(Connection conn, String insertQuery, 
+			int[] columnTypes, int batchSize) throws SQLException {
+		this.conn = conn;
+		this.columnTypes = columnTypes;
+		this.batchSize = batchSize;
+		this.autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+		this.stmt = conn.prepareStatement(insertQuery);
+	}
+
+	@Override
+	public void addRow(Object[] values) throws SQLException {
+		for (int i = 0; i < columnTypes.length; i++) {
+			if (values[i] == null) {
+				stmt.setNull(i + 1, columnTypes[i]);
+			} else {
+				stmt.setObject(i + 1, values[i]);
+			}
+		}
+		stmt.addBatch();
+		if (++numPendingRows == batchSize) {
+			executeBatch();
+		}
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		if (numPendingRows > 0) {
+			executeBatch();
+		}
+		conn.commit();
+		committed = true;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			stmt.close();
+		} finally {
+			try {
+				if (!committed) {
+					conn.rollback();
+				}
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	private void executeBatch() throws SQLException {
+		stmt.executeBatch();
+		numPendingRows = 0;
+	}
+}
@@ -183,15 +183,25 @@ public class ExecutionController {
 
     private static Logger logger = LoggerFactory
             .getLogger(ExecutionController.class);
-    private final HashMap<String, CommandFactory> commandFactoryMap = new HashMap<String, CommandFactory>();
+    private final HashMap<String, CommandFactory> commandFactoryMap;
     private final Workspace workspace;
 
     public ExecutionController(Workspace workspace) {
+        this(workspace, createCommandFactoryMap());
+    }
+
+    /**
+     * Creates a controller that uses the given command factories. The factories are 
+     * stateless, so a map created once by {@link #createCommandFactoryMap()} can be 
+     * shared by the controllers of many short-lived workspaces.
+     */
+    public ExecutionController(Workspace workspace, HashMap<String, CommandFactory> commandFactoryMap) {
         this.workspace = workspace;
-        initializeCommandFactoryMap();
+        this.commandFactoryMap = commandFactoryMap;
     }
 
-    private void initializeCommandFactoryMap() {
+    public static HashMap<String, CommandFactory> createCommandFactoryMap() {
+        HashMap<String, CommandFactory> commandFactoryMap = new HashMap<String, CommandFactory>();
         // TODO: there must be a way to do this using Reflection with all
         // subclasses of CommandFactory.
         commandFactoryMap.put(EditCellCommand.class.getSimpleName(),
@@ -326,6 +336,7 @@ public class ExecutionController {
                 new TestSPARQLEndPointCommandFactory());
         commandFactoryMap.put(LoadAdditionalWorksheetRowsCommand.class.getSimpleName(),
                 new LoadAdditionalWorksheetRowsCommandFactory());
+        return commandFactoryMap;
     }
 
     public Workspace getWorkspace() {
@@ -82,6 +82,17 @@ public class KarmaServlet extends HttpServlet {
 			crfModelFile = new File(ServletContextParameterMap.getParameterValue(ContextParameter.USER_DIRECTORY_PATH) + 
 					"CRF_Models/"+workspace.getId()+"_CRFModel.txt");
 		}
+		/* Move the cell values off the heap when the workspace exceeds its memory budget, in MB */
+		String memoryBudget = ServletContextParameterMap.getParameterValue(ContextParameter.WORKSPACE_MEMORY_BUDGET);
+		if (!memoryBudget.trim().isEmpty()) {
+			try {
+				long budget = Long.parseLong(memoryBudget.trim());
+				workspace.getFactory().setMemoryBudget(budget < 0 ? -1 : budget * 1024 * 1024);
+			} catch (NumberFormatException e) {
+				logger.error("Invalid WORKSPACE_MEMORY_BUDGET: " + memoryBudget);
+			}
+		}
+		
 		/* Read and populate CRF Model from a file */
 		if(!crfModelFile.exists())
 			crfModelFile.createNewFile();
@@ -37,7 +37,7 @@ public class ServletContextParameterMap {
 		PRELOADED_ONTOLOGY_DIRECTORY, POLYGON_CLASS, SRID_PROPERTY, 
 		SRID_CLASS, AUTO_MODEL_URI, PYTHON_SCRIPTS_DIRECTORY,
 		KML_CUSTOMIZATION_CLASS, KML_CATEGORY_PROPERTY,KML_LABEL_PROPERTY,
-		CLEANING_SERVICE_URL, JETTY_PORT, JETTY_HOST
+		CLEANING_SERVICE_URL, JETTY_PORT, JETTY_HOST, WORKSPACE_MEMORY_BUDGET
 	}
 
 	public static void setParameterValue(ContextParameter param, String value) {
@@ -0,0 +1,112 @@
+package edu.isi.karma.imp.csv;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Compares the time to split the records of a generated CSV file with the
+ * {@link CSVTokenizer} and with the previous import path, which read the file
+ * line by line and created a CSVReader for every line. Not run with the unit
+ * tests.
+ *
+ * Arguments: [number of rows] [number of columns]
+ */
+public class CSVImportBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int numColumns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		File csvFile = File.createTempFile("karma-benchmark", ".csv");
+		csvFile.deleteOnExit();
+		writeFile(csvFile, numRows, numColumns);
+		System.out.println(String.format("%d rows, %d columns, %.1f MB", numRows,
+				numColumns, csvFile.length() / (1024.0 * 1024.0)));
+
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			long numFields = readLinePerLine(csvFile);
+			report("CSVReader per line", numFields, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			numFields = readTokenizer(csvFile);
+			report("CSVTokenizer", numFields, System.nanoTime() - start);
+		}
+	}
+
+	private static void writeFile(File csvFile, int numRows, int numColumns) throws Exception {
+		PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(csvFile), "UTF-8")));
+		try {
+			for (int c = 0; c < numColumns; c++) {
+				pw.print(c == 0 ? "" : ",");
+				pw.print("column" + c);
+			}
+			pw.print('\n');
+			for (int r = 0; r < numRows; r++) {
+				for (int c = 0; c < numColumns; c++) {
+					pw.print(c == 0 ? "" : ",");
+					// Every third column is quoted and contains the separator
+					if (c % 3 == 2) {
+						pw.print("\"value " + r + ", " + c + "\"");
+					} else {
+						pw.print(r * numColumns + c);
+					}
+				}
+				pw.print('\n');
+			}
+		} finally {
+			pw.close();
+		}
+	}
+
+	private static long readLinePerLine(File csvFile) throws Exception {
+		BufferedReader br = new BufferedReader(new InputStreamReader(
+				new FileInputStream(csvFile), "UTF-8"));
+		long numFields = 0;
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				CSVReader reader = new CSVReader(new StringReader(line), ',', '"', '\\');
+				String[] rowValues = reader.readNext();
+				if (rowValues != null) {
+					numFields += rowValues.length;
+				}
+				reader.close();
+			}
+		} finally {
+			br.close();
+		}
+		return numFields;
+	}
+
+	private static long readTokenizer(File csvFile) throws Exception {
+		CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+				new FileInputStream(csvFile), "UTF-8"), ',', '"', '\\');
+		long numFields = 0;
+		try {
+			String[] rowValues;
+			while ((rowValues = tokenizer.readNext()) != null) {
+				numFields += rowValues.length;
+			}
+		} finally {
+			tokenizer.close();
+		}
+		return numFields;
+	}
+
+	private static void report(String label, long numFields, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.println(String.format("%-20s %12.0f fields/s (%d fields in %.2fs)",
+				label, numFields / seconds, numFields, seconds));
+	}
+}
@@ -0,0 +1,66 @@
+package edu.isi.karma.imp.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class CSVTokenizerTest {
+
+	private CSVTokenizer tokenizer(String csv) {
+		return new CSVTokenizer(new StringReader(csv), ',', '"', '\\');
+	}
+
+	@Test
+	public void simpleRecordsTest() throws IOException {
+		CSVTokenizer t = tokenizer("a,b,c\n1,,3\r\n4,5,6");
+		assertArrayEquals(new String[] {"a", "b", "c"}, t.readNext());
+		assertArrayEquals(new String[] {"1", "", "3"}, t.readNext());
+		assertArrayEquals(new String[] {"4", "5", "6"}, t.readNext());
+		assertNull(t.readNext());
+	}
+
+	@Test
+	public void quotedFieldsTest() throws IOException {
+		CSVTokenizer t = tokenizer("\"a,b\",\"say \"\"hi\"\"\", \"c\"\n");
+		assertArrayEquals(new String[] {"a,b", "say \"hi\"", "c"}, t.readNext());
+		assertNull(t.readNext());
+	}
+
+	@Test
+	public void quotedLineBreakTest() throws IOException {
+		CSVTokenizer t = tokenizer("1,\"first line\r\nsecond line\",3\n4,5,6\n");
+		assertArrayEquals(new String[] {"1", "first line\r\nsecond line", "3"}, t.readNext());
+		assertArrayEquals(new String[] {"4", "5", "6"}, t.readNext());
+		assertNull(t.readNext());
+	}
+
+	@Test
+	public void escapeCharacterTest() throws IOException {
+		CSVTokenizer t = tokenizer("\"a\\\"b\",c\\d,\"e\\\\f\"\n");
+		assertArrayEquals(new String[] {"a\"b", "c\\d", "e\\f"}, t.readNext());
+	}
+
+	@Test
+	public void emptyLineTest() throws IOException {
+		CSVTokenizer t = tokenizer("a\n\nb\n");
+		assertArrayEquals(new String[] {"a"}, t.readNext());
+		assertEquals(0, t.readNext().length);
+		assertArrayEquals(new String[] {"b"}, t.readNext());
+		assertNull(t.readNext());
+	}
+
+	@Test
+	public void longFieldTest() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+		CSVTokenizer t = tokenizer("x,\"" + value + "\"\n");
+		assertArrayEquals(new String[] {"x", value.toString()}, t.readNext());
+	}
+}
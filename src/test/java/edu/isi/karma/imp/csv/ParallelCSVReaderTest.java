@@ -0,0 +1,97 @@
+package edu.isi.karma.imp.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCSVReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Quoted line breaks, \r line ends, doubled and escaped quotes, and white space
+	// before an opening quote, which is only dropped if it is white space
+	private static final String[] RECORDS = {
+		"1,\"first\nsecond\",3\n",
+		"2,\"a\r\nb\r\nc\",\"\"\r\n",
+		"3,\"say \"\"hi\"\"\nbye\",x\r",
+		"4, \t\"quoted\nafter blanks\",y\n",
+		"5,\u3000\"quoted\nafter an ideographic space\",z\n",
+		"6,\u00a0\"not \"quoted\nrecord\n",
+		"7,\"escaped \\\" quote\n\",\\\"\n",
+		"\n",
+		"8,a\"b,\"c\"\"\"\r\n",
+	};
+
+	@Test
+	public void utf8ChunkBoundariesTest() throws IOException {
+		assertSameRecords(writeFile(Charset.forName("UTF-8")), Charset.forName("UTF-8"));
+	}
+
+	@Test
+	public void singleByteChunkBoundariesTest() throws IOException {
+		assertSameRecords(writeFile(Charset.forName("ISO-8859-1")), Charset.forName("ISO-8859-1"));
+	}
+
+	/**
+	 * Reads the file with chunks of every size up to a few records, so that the
+	 * chunks are cut on every byte of the records.
+	 */
+	private void assertSameRecords(File csvFile, Charset charset) throws IOException {
+		List<String[]> expected = new ArrayList<String[]>();
+		CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+				new FileInputStream(csvFile), charset), ',', '"', '\\');
+		try {
+			String[] record;
+			while ((record = tokenizer.readNext()) != null) {
+				expected.add(record);
+			}
+		} finally {
+			tokenizer.close();
+		}
+
+		for (int chunkSize = 1; chunkSize <= 128; chunkSize++) {
+			ParallelCSVReader reader = new ParallelCSVReader(csvFile, charset, ',', '"', '\\', 2, chunkSize);
+			try {
+				for (String[] record : expected) {
+					assertArrayEquals("Chunks of " + chunkSize + " bytes", record, reader.readNext());
+				}
+				assertNull(reader.readNext());
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private File writeFile(Charset charset) throws IOException {
+		File csvFile = folder.newFile();
+		OutputStream out = new FileOutputStream(csvFile);
+		try {
+			for (int i = 0; i < 20; i++) {
+				for (String record : RECORDS) {
+					if (!charset.newEncoder().canEncode(record)) {
+						// Latin-1 has no ideographic space
+						record = record.replace('\u3000', '\u000b');
+					}
+					out.write(record.getBytes(charset.name()));
+				}
+			}
+		} finally {
+			out.close();
+		}
+		return csvFile;
+	}
+}
@@ -0,0 +1,168 @@
+package edu.isi.karma.imp.excel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+/**
+ * The workbooks are written with the POI user model, so that both the .xls and
+ * the .xlsx event readers read the same sheets.
+ */
+public class ExcelFileImportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Workspace workspace;
+
+	@Before
+	public void setUp() {
+		workspace = WorkspaceManager.getInstance().createWorkspace();
+	}
+
+	@Test
+	public void xlsSheetsTest() throws Exception {
+		assertSheets(writeSheets(new HSSFWorkbook(), "people.xls"));
+	}
+
+	@Test
+	public void xlsxSheetsTest() throws Exception {
+		assertSheets(writeSheets(new XSSFWorkbook(), "people.xlsx"));
+	}
+
+	@Test
+	public void xlsMaxNumLinesTest() throws Exception {
+		assertMaxNumLines(writeLongSheets(new HSSFWorkbook(), "long.xls"));
+	}
+
+	@Test
+	public void xlsxMaxNumLinesTest() throws Exception {
+		assertMaxNumLines(writeLongSheets(new XSSFWorkbook(), "long.xlsx"));
+	}
+
+	private void assertSheets(File excelFile) throws Exception {
+		List<Worksheet> worksheets = new ExcelFileImport(excelFile, workspace, "UTF-8", -1)
+				.generateWorksheets();
+
+		// The empty sheet has no worksheet
+		assertEquals(2, worksheets.size());
+
+		Worksheet people = worksheets.get(0);
+		assertEquals("people_People", people.getTitle());
+		assertEquals("[name, age, member]", getColumnNames(people).toString());
+		assertEquals("[[Ann, 31, TRUE], [Bob, , FALSE], [Carl, 2.5, ]]",
+				getValues(people).toString());
+
+		// The first row is not the first row of the sheet, so it is not a header row
+		Worksheet noHeader = worksheets.get(1);
+		assertEquals("people_No header", noHeader.getTitle());
+		assertEquals("[Column_1, Column_2]", getColumnNames(noHeader).toString());
+		assertEquals("[[a, 1], [b, 2]]", getValues(noHeader).toString());
+	}
+
+	private void assertMaxNumLines(File excelFile) throws Exception {
+		List<Worksheet> worksheets = new ExcelFileImport(excelFile, workspace, "UTF-8", 10)
+				.generateWorksheets();
+
+		// The sheets after the one that reaches maxNumLines are still imported
+		assertEquals(2, worksheets.size());
+		assertEquals("[[0], [1], [2], [3], [4], [5], [6], [7], [8], [9]]",
+				getValues(worksheets.get(0)).toString());
+		assertEquals(10, worksheets.get(1).getDataTable().getNumRows());
+	}
+
+	private File writeSheets(Workbook workbook, String fileName) throws IOException {
+		Sheet people = workbook.createSheet("People");
+		setRow(people, 0, "name", "age", "member");
+		org.apache.poi.ss.usermodel.Row ann = people.createRow(1);
+		ann.createCell(0).setCellValue("Ann");
+		ann.createCell(1).setCellValue(31);
+		ann.createCell(2).setCellValue(true);
+		org.apache.poi.ss.usermodel.Row bob = people.createRow(2);
+		bob.createCell(0).setCellValue("Bob");
+		// No age
+		bob.createCell(2).setCellValue(false);
+		org.apache.poi.ss.usermodel.Row carl = people.createRow(3);
+		carl.createCell(0).setCellValue("Carl");
+		carl.createCell(1).setCellValue(2.5);
+		carl.createCell(2).setCellValue("");
+
+		workbook.createSheet("Empty");
+
+		Sheet noHeader = workbook.createSheet("No header");
+		setRow(noHeader, 1, "a", "1");
+		setRow(noHeader, 2, "b", "2");
+
+		return write(workbook, fileName);
+	}
+
+	private File writeLongSheets(Workbook workbook, String fileName) throws IOException {
+		for (String sheetName : new String[] { "First", "Second" }) {
+			Sheet sheet = workbook.createSheet(sheetName);
+			setRow(sheet, 0, "id");
+			for (int i = 0; i < 1000; i++) {
+				setRow(sheet, i + 1, String.valueOf(i));
+			}
+		}
+		return write(workbook, fileName);
+	}
+
+	private static void setRow(Sheet sheet, int rowIndex, String... values) {
+		org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowIndex);
+		for (int i = 0; i < values.length; i++) {
+			row.createCell(i).setCellValue(values[i]);
+		}
+	}
+
+	private File write(Workbook workbook, String fileName) throws IOException {
+		File file = folder.newFile(fileName);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static List<String> getColumnNames(Worksheet worksheet) {
+		List<String> names = new ArrayList<String>();
+		for (HNode hNode : worksheet.getHeaders().getSortedHNodes()) {
+			names.add(hNode.getColumnName());
+		}
+		return names;
+	}
+
+	private static List<List<String>> getValues(Worksheet worksheet) {
+		List<HNode> hNodes = worksheet.getHeaders().getSortedHNodes();
+		List<List<String>> values = new ArrayList<List<String>>();
+		for (Row row : worksheet.getDataTable().getRows(0, worksheet.getDataTable().getNumRows())) {
+			List<String> rowValues = new ArrayList<String>();
+			for (HNode hNode : hNodes) {
+				rowValues.add(row.getNode(hNode.getId()).getValue().asString());
+			}
+			values.add(rowValues);
+		}
+		return values;
+	}
+}
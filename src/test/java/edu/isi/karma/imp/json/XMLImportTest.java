@@ -0,0 +1,161 @@
+package edu.isi.karma.imp.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.json.XML;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.Node;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Table;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+public class XMLImportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Workspace workspace;
+
+	@Before
+	public void setUp() {
+		workspace = WorkspaceManager.getInstance().createWorkspace();
+	}
+
+	@Test
+	public void recordsTest() throws Exception {
+		assertSameAsJsonConversion("<people>"
+				+ "<person id=\"1\"><name>Ann</name><age>31</age></person>"
+				+ "<person id=\"2\"><name>Bob</name><email>bob@example.com</email><email>b@example.com</email></person>"
+				+ "<person id=\"3\"/>"
+				+ "</people>");
+	}
+
+	@Test
+	public void nestedListsTest() throws Exception {
+		assertSameAsJsonConversion("<library>"
+				+ "<shelf><book><title>A</title><author>X</author><author>Y</author></book></shelf>"
+				+ "<shelf><book><title>B</title><author>Z</author></book><book><title>C</title></book></shelf>"
+				+ "<shelf/>"
+				+ "</library>");
+	}
+
+	@Test
+	public void mixedValuesTest() throws Exception {
+		// A key that is a text in one element and an object or a list in the others
+		assertSameAsJsonConversion("<r>"
+				+ "<item><v>text</v></item>"
+				+ "<item><v unit=\"kg\">4.5</v></item>"
+				+ "<item><v>1</v><v><w>2</w></v></item>"
+				+ "<item><v/><v>true</v></item>"
+				+ "<item><v></v></item>"
+				+ "</r>");
+	}
+
+	@Test
+	public void textAndAttributesTest() throws Exception {
+		assertSameAsJsonConversion("<doc xmlns:x=\"http://example.com/\" lang=\"en\">"
+				+ "<x:title>Title</x:title>"
+				+ "<p>text <b>bold</b></p>"
+				+ "<code><![CDATA[a < b]]></code>"
+				+ "</doc>");
+	}
+
+	@Test
+	public void textRootTest() throws Exception {
+		assertSameAsJsonConversion("<value>42</value>");
+		assertSameAsJsonConversion("<empty/>");
+	}
+
+	@Test
+	public void maxNumLinesTest() throws Exception {
+		StringBuilder xml = new StringBuilder("<records>");
+		for (int i = 0; i < 1000; i++) {
+			xml.append("<record><id>").append(i).append("</id></record>");
+		}
+		// Only read if the import does not stop at maxNumLines
+		xml.append("<record><id>malformed</record>");
+
+		XMLImport imp = new XMLImport(writeFile(xml.toString()), "records", workspace, "UTF-8", 10);
+		Worksheet worksheet = imp.generateWorksheet();
+
+		Table records = getNestedTable(getNestedTable(worksheet.getDataTable(), worksheet.getHeaders(), "records"),
+				worksheet.getHeaders().getHNodeFromColumnName("records").getNestedTable(), "record");
+		assertTrue(records.getNumRows() > 0);
+		assertTrue(records.getNumRows() < 10);
+	}
+
+	private void assertSameAsJsonConversion(String xml) throws Exception {
+		JsonImport jsonImport = new JsonImport(XML.toJSONObject(xml), "json", workspace, "UTF-8", -1);
+		Worksheet expected = jsonImport.generateWorksheet();
+
+		XMLImport xmlImport = new XMLImport(writeFile(xml), "xml", workspace, "UTF-8", -1);
+		Worksheet actual = xmlImport.generateWorksheet();
+
+		assertEquals(toString(expected.getDataTable(), expected.getHeaders()),
+				toString(actual.getDataTable(), actual.getHeaders()));
+	}
+
+	/**
+	 * Prints the rows in order and their columns sorted by name, as the XML import
+	 * adds the columns in the order of the document.
+	 */
+	private static String toString(Table table, HTable headers) {
+		StringBuilder out = new StringBuilder("[");
+		List<HNode> hNodes = headers.getSortedHNodes();
+		Collections.sort(hNodes, new Comparator<HNode>() {
+			@Override
+			public int compare(HNode h1, HNode h2) {
+				return h1.getColumnName().compareTo(h2.getColumnName());
+			}
+		});
+		for (Row row : table.getRows(0, table.getNumRows())) {
+			out.append("{");
+			for (HNode hNode : hNodes) {
+				Node node = row.getNode(hNode.getId());
+				out.append(hNode.getColumnName()).append("=");
+				if (hNode.hasNestedTable()) {
+					out.append(toString(node.getNestedTable(), hNode.getNestedTable()));
+				} else if (node.getValue() != null) {
+					out.append(node.getValue().asString());
+				}
+				out.append(";");
+			}
+			out.append("}");
+		}
+		return out.append("]").toString();
+	}
+
+	private static Table getNestedTable(Table table, HTable headers, String columnName) {
+		HNode hNode = headers.getHNodeFromColumnName(columnName);
+		return table.getRows(0, 1).get(0).getNode(hNode.getId()).getNestedTable();
+	}
+
+	private File writeFile(String xml) throws IOException {
+		File file = folder.newFile();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(xml);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+}
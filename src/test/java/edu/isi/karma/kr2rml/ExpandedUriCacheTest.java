@@ -0,0 +1,49 @@
+package edu.isi.karma.kr2rml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ExpandedUriCacheTest {
+
+	@Test
+	public void hitsAndMissesTest() {
+		ExpandedUriCache cache = new ExpandedUriCache(10);
+		assertNull(cache.get("rdf:type"));
+		cache.put("rdf:type", "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>");
+		assertEquals("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>", cache.get("rdf:type"));
+		assertEquals("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>", cache.get("rdf:type"));
+		assertNull(cache.get("rdfs:label"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void leastRecentlyUsedEvictionTest() {
+		ExpandedUriCache cache = new ExpandedUriCache(2);
+		cache.put("a", "<a>");
+		cache.put("b", "<b>");
+		// Makes b the least recently used
+		assertEquals("<a>", cache.get("a"));
+		cache.put("c", "<c>");
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("<a>", cache.get("a"));
+		assertEquals("<c>", cache.get("c"));
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void emptyCacheTest() {
+		ExpandedUriCache cache = new ExpandedUriCache(0);
+		cache.put("a", "<a>");
+		assertEquals(0, cache.size());
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+}
@@ -0,0 +1,239 @@
+package edu.isi.karma.kr2rml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.SemanticTypeUtil;
+import edu.isi.karma.rdf.FileRdfGenerator;
+import edu.isi.karma.util.EncodingDetector;
+import edu.isi.karma.util.JSONUtil;
+import edu.isi.karma.webserver.ServletContextParameterMap;
+import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
+
+/**
+ * Compares the triples generated by running the execution plans of the test models
+ * with the triples that their mappings define for the values of the input files.
+ */
+public class KR2RMLMappingExecutionPlanTest {
+
+	private static final String RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+	private static final String RDFS = "http://www.w3.org/2000/01/rdf-schema#";
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+	private static final String SYLL = "http://lod.isi.edu/ontology/syllabus/";
+	private static final String DCTERMS = "http://purl.org/dc/terms/";
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		ServletContextParameterMap.setParameterValue(
+				ContextParameter.USER_DIRECTORY_PATH, "src/main/webapp/");
+		ServletContextParameterMap.setParameterValue(
+				ContextParameter.TRAINING_EXAMPLE_MAX_COUNT, "200");
+		SemanticTypeUtil.setSemanticTypeTrainingStatus(false);
+	}
+
+	/**
+	 * A flat worksheet, the people are linked to their depiction, homepage and mailbox.
+	 */
+	@Test
+	public void peopleTest() throws Exception {
+		Set<String> triples = generateTriples("people.json", "people-model");
+
+		for (JSONObject person : getPeople()) {
+			String personUri = getPersonUri(person);
+			for (String triple : getPersonTriples(person, personUri)) {
+				assertTrue(triple, triples.contains(triple));
+			}
+			String mailbox = uri("mailto:" + person.getString("email"));
+			assertTrue(triples.contains(triple(personUri, uri(FOAF + "mbox"), mailbox)));
+			assertTrue(triples.contains(triple(mailbox, RDF_TYPE,
+					uri("http://www.w3.org/2002/07/owl#Thing"))));
+			assertTrue(triples.contains(triple(mailbox, uri(RDFS + "label"),
+					literal(person.getString("email")))));
+		}
+	}
+
+	/**
+	 * The people model with blank nodes for the mailboxes, labelled with the id of the
+	 * email cell of each row.
+	 */
+	@Test
+	public void blankNodeTest() throws Exception {
+		Set<String> triples = generateTriples("people.json", "people-blank-node-model");
+
+		Set<String> blankNodes = new HashSet<String>();
+		List<JSONObject> people = getPeople();
+		for (JSONObject person : people) {
+			String personUri = getPersonUri(person);
+			for (String triple : getPersonTriples(person, personUri)) {
+				assertTrue(triple, triples.contains(triple));
+			}
+			String mailbox = getObject(triples, personUri, uri(FOAF + "mbox"));
+			assertNotNull(personUri, mailbox);
+			assertTrue(mailbox, mailbox.startsWith(KR2RMLWorksheetRDFGenerator.BLANK_NODE_PREFIX
+					+ "owl_Thing2_"));
+			assertTrue(triples.contains(triple(mailbox, RDF_TYPE,
+					uri("http://www.w3.org/2002/07/owl#Thing"))));
+			assertTrue(triples.contains(triple(mailbox, uri(RDFS + "label"),
+					literal(person.getString("email")))));
+			blankNodes.add(mailbox);
+		}
+		assertEquals(people.size(), blankNodes.size());
+		for (String triple : triples) {
+			assertFalse(triple, triple.contains("<mailto:"));
+		}
+	}
+
+	/**
+	 * A single top level row, the lectures are rows of a nested table.
+	 */
+	@Test
+	public void nestedTableTest() throws Exception {
+		Set<String> triples = generateTriples("cs548-events.json", "cs548-events-model");
+
+		JSONObject events = (JSONObject) JSONUtil.createJson(EncodingDetector.getString(
+				new File(getTestDataFolder() + "/cs548-events.json"), "utf-8"));
+		JSONArray lectures = events.getJSONArray("lectures");
+		Set<String> lectureUris = new HashSet<String>();
+		for (int i = 0; i < lectures.length(); i++) {
+			JSONObject lecture = lectures.getJSONObject(i);
+			// The triples of a lecture have the subject generated from the same nested row
+			String lectureUri = getSubject(triples, uri(DCTERMS + "identifier"),
+					literal(lecture.getString("id")));
+			assertNotNull(lecture.getString("id"), lectureUri);
+			assertTrue(triples.contains(triple(lectureUri, RDF_TYPE, uri(SYLL + "Lecture"))));
+			if (!lecture.optString("title").isEmpty()) {
+				assertTrue(triples.contains(triple(lectureUri, uri(DCTERMS + "title"),
+						literal(lecture.getString("title")))));
+			}
+			if (!lecture.optString("description").isEmpty()) {
+				assertTrue(triples.contains(triple(lectureUri, uri(DCTERMS + "description"),
+						literal(lecture.getString("description")))));
+			}
+			lectureUris.add(lectureUri);
+		}
+		assertEquals(lectures.length(), lectureUris.size());
+	}
+
+	private List<String> getPersonTriples(JSONObject person, String personUri)
+			throws JSONException {
+		List<String> triples = new ArrayList<String>();
+		String name = person.getString("name");
+		triples.add(triple(personUri, RDF_TYPE, uri(SYLL + "Person")));
+		triples.add(triple(personUri, uri(FOAF + "name"), literal(name)));
+		triples.add(triple(personUri, uri(FOAF + "lastName"),
+				literal(name.substring(name.lastIndexOf(' ') + 1))));
+		triples.add(triple(personUri, uri(FOAF + "title"), literal(person.getString("title"))));
+		if (person.has("twitter")) {
+			triples.add(triple(personUri, uri(SYLL + "twitterId"),
+					literal(person.getString("twitter"))));
+		}
+		String depiction = uri(person.getString("depiction"));
+		triples.add(triple(personUri, uri(FOAF + "depiction"), depiction));
+		triples.add(triple(depiction, RDF_TYPE, uri(FOAF + "Image")));
+		if (person.has("homepage")) {
+			String homepage = uri(person.getString("homepage"));
+			triples.add(triple(personUri, uri(FOAF + "homepage"), homepage));
+			triples.add(triple(homepage, RDF_TYPE, uri(FOAF + "Document")));
+		}
+		return triples;
+	}
+
+	private String getPersonUri(JSONObject person) throws JSONException {
+		String name = person.getString("name");
+		return uri("http://lod.isi.edu/cs548/person/" + name.substring(name.lastIndexOf(' ') + 1));
+	}
+
+	private List<JSONObject> getPeople() throws Exception {
+		JSONArray array = (JSONArray) JSONUtil.createJson(EncodingDetector.getString(
+				new File(getTestDataFolder() + "/people.json"), "utf-8"));
+		List<JSONObject> people = new ArrayList<JSONObject>();
+		for (int i = 0; i < array.length(); i++) {
+			people.add(array.getJSONObject(i));
+		}
+		return people;
+	}
+
+	private Set<String> generateTriples(String fileName, String modelName) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(modelName,
+				new File(getTestDataFolder() + "/" + modelName + ".ttl").toURI().toURL());
+		StringWriter sw = new StringWriter();
+		new FileRdfGenerator().generateRdf("json", modelIdentifier, new PrintWriter(sw),
+				new File(getTestDataFolder() + "/" + fileName), "utf-8", 0);
+
+		Set<String> triples = new HashSet<String>();
+		for (String line : sw.toString().split("\r?\n")) {
+			if (!line.isEmpty()) {
+				triples.add(line);
+			}
+		}
+		assertFalse(triples.isEmpty());
+		return triples;
+	}
+
+	/**
+	 * @return the object of the only triple with the given subject and predicate,
+	 * or null if there is none
+	 */
+	private static String getObject(Set<String> triples, String subject, String predicate) {
+		String object = null;
+		String prefix = subject + " " + predicate + " ";
+		for (String triple : triples) {
+			if (triple.startsWith(prefix)) {
+				assertNull(triple, object);
+				object = triple.substring(prefix.length(), triple.length() - " .".length());
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * @return the subject of the only triple with the given predicate and object,
+	 * or null if there is none
+	 */
+	private static String getSubject(Set<String> triples, String predicate, String object) {
+		String subject = null;
+		String suffix = " " + predicate + " " + object + " .";
+		for (String triple : triples) {
+			if (triple.endsWith(suffix)) {
+				assertNull(triple, subject);
+				subject = triple.substring(0, triple.length() - suffix.length());
+			}
+		}
+		return subject;
+	}
+
+	private static String triple(String subject, String predicate, String object) {
+		return subject + " " + predicate + " " + object + " .";
+	}
+
+	private static String uri(String uri) {
+		return "<" + uri + ">";
+	}
+
+	private static String literal(String value) {
+		return "\"" + StringEscapeUtils.escapeJava(value) + "\"";
+	}
+
+	private String getTestDataFolder() {
+		return getClass().getClassLoader().getResource(".").getPath()
+				+ "/../../src/test/karma-data";
+	}
+}
@@ -0,0 +1,72 @@
+package edu.isi.karma.kr2rml.writer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class BufferedRdfSinkTest {
+
+	private static final String NL = System.getProperty("line.separator");
+
+	@Test
+	public void replayOrderTest() throws IOException {
+		BufferedRdfSink buffer = new BufferedRdfSink();
+		buffer.outputTripleWithURIObject("<s1>", "<p>", "_:b1");
+		buffer.outputTripleWithLiteralObject("_:b1", "<p>", "a \"b\"", null);
+		buffer.finishRow();
+		buffer.outputQuadWithLiteralObject("<s2>", "<p>", "c", "http://www.w3.org/2001/XMLSchema#int", "g");
+		buffer.outputTripleWithLiteralObject("<s2>", "<p>", "d", "");
+		buffer.finishRow();
+
+		StringWriter out = new StringWriter();
+		NTriplesRdfSink sink = new NTriplesRdfSink(out);
+		// Nothing reaches the other sink before the replay
+		sink.flush();
+		assertEquals("", out.toString());
+
+		buffer.replayTo(sink);
+		sink.close();
+		assertEquals("<s1> <p> _:b1 ." + NL
+				+ "_:b1 <p> \"a \\\"b\\\"\" ." + NL
+				+ NL
+				+ "<s2> <p> \"c\"^^<http://www.w3.org/2001/XMLSchema#int> <g> ." + NL
+				+ "<s2> <p> \"d\" ." + NL
+				+ NL, out.toString());
+	}
+
+	@Test
+	public void replayEmptiesBufferTest() throws IOException {
+		BufferedRdfSink buffer = new BufferedRdfSink();
+		buffer.outputTripleWithURIObject("<s1>", "<p>", "<o>");
+		StringWriter first = new StringWriter();
+		NTriplesRdfSink firstSink = new NTriplesRdfSink(first);
+		buffer.replayTo(firstSink);
+		firstSink.close();
+
+		buffer.outputTripleWithURIObject("<s2>", "<p>", "<o>");
+		StringWriter second = new StringWriter();
+		NTriplesRdfSink secondSink = new NTriplesRdfSink(second);
+		buffer.replayTo(secondSink);
+		secondSink.close();
+
+		assertEquals("<s1> <p> <o> ." + NL, first.toString());
+		assertEquals("<s2> <p> <o> ." + NL, second.toString());
+	}
+
+	@Test
+	public void nullComponentsTest() throws IOException {
+		// The literal type is kept as given, null or empty
+		BufferedRdfSink buffer = new BufferedRdfSink();
+		buffer.outputTripleWithLiteralObject("<s>", "<p>", "v", null);
+		buffer.outputQuadWithLiteralObject("<s>", "<p>", "v", null, "g");
+
+		StringWriter out = new StringWriter();
+		NTriplesRdfSink sink = new NTriplesRdfSink(out);
+		buffer.replayTo(sink);
+		sink.close();
+		assertEquals("<s> <p> \"v\" ." + NL + "<s> <p> \"v\" <g> ." + NL, out.toString());
+	}
+}
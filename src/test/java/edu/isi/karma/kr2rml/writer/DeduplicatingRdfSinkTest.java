@@ -0,0 +1,161 @@
+package edu.isi.karma.kr2rml.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeduplicatingRdfSinkTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File spillDirectory;
+	private RecordingSink recorder;
+
+	@Before
+	public void setUp() throws IOException {
+		spillDirectory = folder.newFolder();
+		recorder = new RecordingSink();
+	}
+
+	@Test
+	public void inMemoryTest() throws IOException {
+		DeduplicatingRdfSink sink = new DeduplicatingRdfSink(recorder);
+		sink.outputTripleWithURIObject("<s>", "<p>", "<o>");
+		sink.outputTripleWithURIObject("<s>", "<p>", "<o>");
+		sink.outputTripleWithURIObject("<s>", "<p>", "<o2>");
+		sink.finishRow();
+		sink.outputTripleWithURIObject("<s>", "<p>", "<o>");
+		sink.close();
+
+		assertEquals("[U <s> <p> <o>, U <s> <p> <o2>]", recorder.statements.toString());
+		assertEquals(1, recorder.numRows);
+		assertEquals(4, sink.getNumStatements());
+		assertEquals(2, sink.getNumDuplicates());
+	}
+
+	@Test
+	public void statementKindsTest() throws IOException {
+		DeduplicatingRdfSink sink = new DeduplicatingRdfSink(recorder);
+		// The same strings as different kinds of statements, literal types and graphs
+		sink.outputTripleWithURIObject("<s>", "<p>", "o");
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "o", null);
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "o", "");
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "o", "xsd:string");
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "o", null, "<g1>");
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "o", null, "<g2>");
+		// The terms are not simply concatenated
+		sink.outputTripleWithURIObject("<s>", "<p><o>", "");
+		sink.outputTripleWithURIObject("<s><p>", "<o>", "");
+
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "o", "xsd:string");
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "o", null, "<g2>");
+		sink.close();
+
+		assertEquals(8, recorder.statements.size());
+		assertEquals(2, sink.getNumDuplicates());
+	}
+
+	/**
+	 * With the smallest memory budget the table of hashes holds 48 hashes, so that it is
+	 * spilled many times and the spilled runs are merged into runs of several blocks.
+	 */
+	@Test
+	public void spilledRunsTest() throws IOException {
+		DeduplicatingRdfSink sink = new DeduplicatingRdfSink(recorder, 0, spillDirectory);
+		Set<String> expected = new LinkedHashSet<String>();
+		int numStatements = 0;
+		for (int i = 0; i < 3000; i++) {
+			output(sink, i);
+			expected.add(statement(i));
+			numStatements++;
+			// Statements of the previous rows, in memory or spilled long ago
+			if (i % 3 == 0) {
+				output(sink, i / 2);
+				output(sink, i - 1 < 0 ? 0 : i - 1);
+				numStatements += 2;
+			}
+			sink.finishRow();
+		}
+		assertTrue(spillDirectory.list().length > 0);
+
+		// Everything again
+		for (int i = 2999; i >= 0; i--) {
+			output(sink, i);
+			numStatements++;
+		}
+		sink.close();
+
+		assertEquals(new ArrayList<String>(expected), recorder.statements);
+		assertEquals(numStatements, sink.getNumStatements());
+		assertEquals(numStatements - expected.size(), sink.getNumDuplicates());
+		// The spilled runs are deleted
+		assertEquals(0, spillDirectory.list().length);
+	}
+
+	private static void output(RdfSink sink, int i) {
+		switch (i % 3) {
+		case 0:
+			sink.outputTripleWithURIObject("<s" + i + ">", "<p>", "<o" + (i / 3) + ">");
+			break;
+		case 1:
+			sink.outputTripleWithLiteralObject("<s" + i + ">", "<p>", "value " + i, "xsd:string");
+			break;
+		default:
+			sink.outputQuadWithLiteralObject("<s" + i + ">", "<p>", "value " + i, null, "<g>");
+		}
+	}
+
+	private static String statement(int i) {
+		RecordingSink recorder = new RecordingSink();
+		output(recorder, i);
+		return recorder.statements.get(0);
+	}
+
+	private static class RecordingSink implements RdfSink {
+		final List<String> statements = new ArrayList<String>();
+		int numRows = 0;
+
+		@Override
+		public void outputTripleWithURIObject(String subject, String predicate, String object) {
+			statements.add("U " + subject + " " + predicate + " " + object);
+		}
+
+		@Override
+		public void outputTripleWithLiteralObject(String subject, String predicate,
+				String value, String literalType) {
+			statements.add("L " + subject + " " + predicate + " " + value + " " + literalType);
+		}
+
+		@Override
+		public void outputQuadWithLiteralObject(String subject, String predicate,
+				String value, String literalType, String graph) {
+			statements.add("Q " + subject + " " + predicate + " " + value + " " + literalType
+					+ " " + graph);
+		}
+
+		@Override
+		public void finishRow() {
+			numRows++;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package edu.isi.karma.kr2rml.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NTriplesRdfSinkTest {
+
+	private static final String NL = System.getProperty("line.separator");
+
+	private StringWriter out;
+	private NTriplesRdfSink sink;
+
+	@Before
+	public void setUp() {
+		out = new StringWriter();
+		sink = new NTriplesRdfSink(out);
+	}
+
+	@Test
+	public void uriTripleTest() throws IOException {
+		sink.outputTripleWithURIObject("<http://example.org/s>", "<http://example.org/p>",
+				"<http://example.org/o>");
+		sink.close();
+
+		assertEquals("<http://example.org/s> <http://example.org/p> <http://example.org/o> ." + NL,
+				out.toString());
+	}
+
+	@Test
+	public void blankNodeTest() throws IOException {
+		// The blank node labels are written as given by the generator
+		sink.outputTripleWithURIObject("_:Person1_N12", "<http://example.org/p>", "_:Document1_N13");
+		sink.outputTripleWithLiteralObject("_:Document1_N13", "<http://example.org/p>", "a", null);
+		sink.close();
+
+		assertEquals("_:Person1_N12 <http://example.org/p> _:Document1_N13 ." + NL
+				+ "_:Document1_N13 <http://example.org/p> \"a\" ." + NL, out.toString());
+	}
+
+	@Test
+	public void literalTypeTest() throws IOException {
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "1", null);
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "2", "");
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "3",
+				"http://www.w3.org/2001/XMLSchema#int");
+		sink.close();
+
+		assertEquals("<s> <p> \"1\" ." + NL
+				+ "<s> <p> \"2\" ." + NL
+				+ "<s> <p> \"3\"^^<http://www.w3.org/2001/XMLSchema#int> ." + NL, out.toString());
+	}
+
+	@Test
+	public void quadTest() throws IOException {
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "v", null, "http://example.org/g");
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "v", "http://www.w3.org/2001/XMLSchema#string",
+				"http://example.org/g");
+		sink.close();
+
+		assertEquals("<s> <p> \"v\" <http://example.org/g> ." + NL
+				+ "<s> <p> \"v\"^^<http://www.w3.org/2001/XMLSchema#string> <http://example.org/g> ." + NL,
+				out.toString());
+	}
+
+	@Test
+	public void escapingTest() throws IOException {
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "say \"hi\"\\", null);
+		sink.outputTripleWithLiteralObject("<s>", "<p>", "line 1\nline 2\r\tend", null);
+		sink.outputQuadWithLiteralObject("<s>", "<p>", "Jos\u00e9 \u6771\u4eac", null, "g");
+		sink.close();
+
+		assertEquals("<s> <p> \"say \\\"hi\\\"\\\\\" ." + NL
+				+ "<s> <p> \"line 1\\nline 2\\r\\tend\" ." + NL
+				+ "<s> <p> \"Jos\\u00E9 \\u6771\\u4EAC\" <g> ." + NL, out.toString());
+	}
+
+	@Test
+	public void finishRowTest() throws IOException {
+		sink.outputTripleWithURIObject("<s1>", "<p>", "<o>");
+		sink.finishRow();
+		sink.outputTripleWithURIObject("<s2>", "<p>", "<o>");
+		sink.finishRow();
+		sink.close();
+
+		assertEquals("<s1> <p> <o> ." + NL + NL + "<s2> <p> <o> ." + NL + NL, out.toString());
+	}
+
+	@Test
+	public void bufferTest() throws IOException {
+		// Nothing is written until the buffer grows beyond the threshold
+		sink.outputTripleWithURIObject("<s>", "<p>", "<o>");
+		assertEquals("", out.toString());
+
+		StringBuilder expected = new StringBuilder("<s> <p> <o> ." + NL);
+		int i = 0;
+		while (out.toString().isEmpty()) {
+			sink.outputTripleWithURIObject("<s" + i + ">", "<p>", "<o>");
+			expected.append("<s" + i + "> <p> <o> ." + NL);
+			i++;
+		}
+		assertEquals(expected.toString(), out.toString());
+		assertTrue(out.toString().length() > NTriplesRdfSink.FLUSH_THRESHOLD);
+
+		sink.outputTripleWithURIObject("<last>", "<p>", "<o>");
+		expected.append("<last> <p> <o> ." + NL);
+		sink.flush();
+		assertEquals(expected.toString(), out.toString());
+	}
+}
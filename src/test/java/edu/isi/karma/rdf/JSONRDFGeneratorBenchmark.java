@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
+import edu.isi.karma.webserver.SampleDataFactory;
+
+/**
+ * Measures the throughput of the {@link JSONRDFGenerator} on messages built by
+ * {@link SampleDataFactory#getSampleJsonString(int)}, first on the calling thread
+ * and then through the service with an increasing number of threads. Not run
+ * with the unit tests.
+ *
+ * Arguments: [rows per message] [number of messages] [max threads]
+ */
+public class JSONRDFGeneratorBenchmark {
+
+	private static final String MODEL_NAME = "sample-json-model";
+
+	public static void main(String[] args) throws Exception {
+		int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int numMessages = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		JSONRDFGenerator rdfGen = JSONRDFGenerator.getInstance();
+		rdfGen.addModel(new R2RMLMappingIdentifier(MODEL_NAME,
+				new File("src/test/karma-data/sample-json-model.ttl").toURI().toURL()));
+		String jsonData = SampleDataFactory.getSampleJsonString(numRows);
+
+		// Warm up the JIT, the model cache and the workspace pool
+		runSequential(rdfGen, jsonData, numMessages / 10 + 1);
+
+		long start = System.nanoTime();
+		long numLines = runSequential(rdfGen, jsonData, numMessages);
+		report("calling thread", numMessages, numLines, System.nanoTime() - start);
+
+		for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+			rdfGen.startService(numThreads, numThreads * 4);
+			start = System.nanoTime();
+			numLines = runService(rdfGen, jsonData, numMessages);
+			long elapsed = System.nanoTime() - start;
+			rdfGen.shutdownService();
+			report(numThreads + " service thread(s)", numMessages, numLines, elapsed);
+		}
+	}
+
+	private static long runSequential(JSONRDFGenerator rdfGen, String jsonData,
+			int numMessages) throws Exception {
+		long numLines = 0;
+		for (int i = 0; i < numMessages; i++) {
+			StringWriter sw = new StringWriter();
+			rdfGen.generateRDF(MODEL_NAME, jsonData, false, new PrintWriter(sw));
+			numLines += countLines(sw.toString());
+		}
+		return numLines;
+	}
+
+	private static long runService(JSONRDFGenerator rdfGen, String jsonData,
+			int numMessages) throws Exception {
+		List<Future<String>> results = new ArrayList<Future<String>>(numMessages);
+		for (int i = 0; i < numMessages; i++) {
+			results.add(rdfGen.submit(MODEL_NAME, jsonData, false));
+		}
+		long numLines = 0;
+		for (Future<String> result : results) {
+			numLines += countLines(result.get());
+		}
+		return numLines;
+	}
+
+	private static int countLines(String rdf) {
+		int count = 0;
+		for (int i = 0; i < rdf.length(); i++) {
+			if (rdf.charAt(i) == '\n') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void report(String label, int numMessages, long numLines, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.println(String.format("%-24s %8.1f messages/s %10.1f triples/s (%d triples in %.2fs)",
+				label, numMessages / seconds, numLines / seconds, numLines, seconds));
+	}
+}
@@ -0,0 +1,99 @@
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParallelDatabaseRDFGeneratorTest {
+
+	@Test
+	public void keyRangesTest() {
+		// Width of 25, the first range also has the null keys and the last one is open
+		assertEquals(Arrays.asList("(id < 26 OR id IS NULL)", "id >= 26 AND id < 51",
+				"id >= 51 AND id < 76", "id >= 76"),
+				ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", 1, 100, 4));
+		assertEquals(Arrays.asList("(id < 0 OR id IS NULL)", "id >= 0"),
+				ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", -10, 9, 2));
+	}
+
+	@Test
+	public void fewerKeysThanPartitionsTest() {
+		assertEquals(Arrays.asList("(id < 2 OR id IS NULL)", "id >= 2 AND id < 3", "id >= 3"),
+				ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", 1, 3, 10));
+		assertEquals(Arrays.asList("(id < 6 OR id IS NULL)"),
+				ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", 5, 5, 4));
+	}
+
+	@Test
+	public void onePartitionTest() {
+		assertEquals(Arrays.asList("(id < 101 OR id IS NULL)"),
+				ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", 1, 100, 1));
+	}
+
+	@Test
+	public void numericKeyTest() throws SQLException {
+		ResultSet r = mock(ResultSet.class);
+		when(r.next()).thenReturn(true);
+		when(r.getObject(1)).thenReturn(Long.valueOf(1));
+		when(r.getLong(1)).thenReturn(1L);
+		when(r.getLong(2)).thenReturn(100L);
+		Statement stmt = mockStatement(r);
+
+		List<String> conditions = ParallelDatabaseRDFGenerator.getKeyRangeConditions(
+				mockConnection(stmt), "people", "id", 4);
+		assertEquals(ParallelDatabaseRDFGenerator.getKeyRangeConditions("id", 1, 100, 4), conditions);
+		verify(r).close();
+		verify(stmt).close();
+	}
+
+	@Test
+	public void emptyTableTest() throws SQLException {
+		ResultSet r = mock(ResultSet.class);
+		when(r.next()).thenReturn(true);
+		when(r.getObject(1)).thenReturn(null);
+		Statement stmt = mockStatement(r);
+
+		assertNull(ParallelDatabaseRDFGenerator.getKeyRangeConditions(
+				mockConnection(stmt), "people", "id", 4));
+		verify(r).close();
+		verify(stmt).close();
+	}
+
+	@Test
+	public void notNumericKeyTest() throws SQLException {
+		ResultSet r = mock(ResultSet.class);
+		when(r.next()).thenReturn(true);
+		when(r.getObject(1)).thenReturn("Ann");
+		when(r.getLong(1)).thenThrow(new SQLException("Not a number: Ann"));
+		Statement stmt = mockStatement(r);
+
+		assertNull(ParallelDatabaseRDFGenerator.getKeyRangeConditions(
+				mockConnection(stmt), "people", "name", 4));
+		verify(r).close();
+		verify(stmt).close();
+	}
+
+	private static Statement mockStatement(ResultSet r) throws SQLException {
+		Statement stmt = mock(Statement.class);
+		when(stmt.executeQuery("SELECT MIN(id), MAX(id) FROM people")).thenReturn(r);
+		when(stmt.executeQuery("SELECT MIN(name), MAX(name) FROM people")).thenReturn(r);
+		return stmt;
+	}
+
+	private static Connection mockConnection(Statement stmt) throws SQLException {
+		Connection conn = mock(Connection.class);
+		when(conn.createStatement()).thenReturn(stmt);
+		return conn;
+	}
+}
@@ -2,6 +2,8 @@ package edu.isi.karma.rdf;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -10,6 +12,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import edu.isi.karma.kr2rml.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.writer.BinaryRdfReader;
+import edu.isi.karma.kr2rml.writer.BinaryRdfSink;
+import edu.isi.karma.kr2rml.writer.NTriplesRdfSink;
 import edu.isi.karma.modeling.semantictypes.SemanticTypeUtil;
 import edu.isi.karma.webserver.ServletContextParameterMap;
 import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
@@ -60,6 +65,103 @@ public class TestFileRdfGenerator {
 	}
 	
 	
+	@Test
+	public void testScheduleRDFPyTranformInBatches() {
+		try {
+
+			String filename = getTestDataFolder() + "/schedule.csv";
+			System.out.println("Load file: " + filename);
+			
+			FileRdfGenerator rdfGen = new FileRdfGenerator();
+			R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+					"schedule-model", new File(getTestDataFolder()
+							+ "/schedule-model.txt").toURI().toURL());
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			
+			rdfGen.generateRdfInBatches("csv", modelIdentifier, pw, new File(filename), 
+					"utf-8", 0, 7);
+			
+			String rdf = sw.toString();
+			assertNotEquals(rdf.length(), 0);
+			String[] lines = rdf.split("\n");
+			assertEquals(275, lines.length);
+			
+			int idx = rdf.indexOf("hasEventDate> \"2014-01-13\" .");
+			assertNotEquals(idx, -1);
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		}
+	}
+	
+	
+	@Test
+	public void testScheduleRDFPyTranformBinaryOutput() {
+		try {
+
+			String filename = getTestDataFolder() + "/schedule.csv";
+			System.out.println("Load file: " + filename);
+			
+			FileRdfGenerator rdfGen = new FileRdfGenerator();
+			R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+					"schedule-model", new File(getTestDataFolder()
+							+ "/schedule-model.txt").toURI().toURL());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			BinaryRdfSink sink = new BinaryRdfSink(bytes);
+			rdfGen.setRdfSink(sink);
+			
+			rdfGen.generateRdf("csv", modelIdentifier, new PrintWriter(new StringWriter()), 
+					new File(filename), "utf-8", 0);
+			sink.close();
+			
+			// Convert back to N-Triples
+			StringWriter sw = new StringWriter();
+			BinaryRdfReader reader = new BinaryRdfReader(new ByteArrayInputStream(bytes.toByteArray()));
+			reader.read(new NTriplesRdfSink(sw));
+			
+			String rdf = sw.toString();
+			assertNotEquals(rdf.length(), 0);
+			String[] lines = rdf.split("\n");
+			assertEquals(275, lines.length);
+			
+			int idx = rdf.indexOf("hasEventDate> \"2014-01-13\" .");
+			assertNotEquals(idx, -1);
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		}
+	}
+	
+	
+	@Test
+	public void testCWeb2RDFInParallel() {
+		try {
+			String filename = getTestDataFolder() + "/cbev2.WebConAltNames.csv";
+			System.out.println("Load file: " + filename);
+
+			R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+					"cbev2.WebConAltNames-model", new File(getTestDataFolder()
+							+ "/cbev2.WebConAltNames-model.ttl").toURI().toURL());
+			StringWriter sw = new StringWriter();
+			new FileRdfGenerator().generateRdf("csv", modelIdentifier, new PrintWriter(sw),
+					new File(filename), "utf-8", 0);
+			String rdf = sw.toString();
+
+			// Many chunks of a few rows, the output keeps the order of the rows
+			FileRdfGenerator rdfGen = new FileRdfGenerator();
+			rdfGen.setNumThreads(4);
+			rdfGen.setRowChunkSize(7);
+			StringWriter parallelSw = new StringWriter();
+			rdfGen.generateRdf("csv", modelIdentifier, new PrintWriter(parallelSw),
+					new File(filename), "utf-8", 0);
+
+			assertEquals(599, rdf.split("\n").length);
+			assertEquals(rdf, parallelSw.toString());
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+
 	@Test
 	public void testCWeb2RDFPyTransform() {
 		//
@@ -94,6 +196,35 @@ public class TestFileRdfGenerator {
 		}
 	}
 
+	@Test
+	public void testPeopleJSONInBatches() {
+		try {
+			String filename = getTestDataFolder() + "/people.json";
+			System.out.println("Load file: " + filename);
+			
+			FileRdfGenerator rdfGen = new FileRdfGenerator();
+			R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+					"people-model", new File(getTestDataFolder()
+							+ "/people-model.ttl").toURI().toURL());
+			StringWriter sw = new StringWriter();
+			rdfGen.generateRdf("json", modelIdentifier, new PrintWriter(sw), 
+					new File(filename), "utf-8", 0);
+			String rdf = sw.toString();
+			assertNotEquals(rdf.length(), 0);
+			assertNotEquals(rdf.indexOf("\"Pedro Szekely\""), -1);
+			
+			// The same triples when the array is read a few records at a time
+			StringWriter batchSw = new StringWriter();
+			rdfGen.generateRdfInBatches("json", modelIdentifier, new PrintWriter(batchSw), 
+					new File(filename), "utf-8", 0, 2);
+			String batchRdf = batchSw.toString();
+			assertEquals(rdf.split("\n").length, batchRdf.split("\n").length);
+			assertNotEquals(batchRdf.indexOf("\"Pedro Szekely\""), -1);
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
 	private String getRootFolder() {
 		return getClass().getClassLoader().getResource(".").getPath()
 				+ "/../../";
@@ -28,6 +28,9 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -153,6 +156,45 @@ public class TestJSONRDFGenerator {
 		}
 	}
 
+	/**
+	 * Test method for
+	 * {@link edu.isi.karma.rdf.JSONRDFGenerator#submit(java.lang.String, java.lang.String, boolean)}
+	 * .
+	 */
+	@Test
+	public void testSubmitConcurrentRequests() {
+		try {
+
+			String peopleData = EncodingDetector.getString(new File(
+					getTestDataFolder() + "/people.json"), "utf-8");
+			String eventsData = EncodingDetector.getString(new File(
+					getTestDataFolder() + "/cs548-events.json"), "utf-8");
+
+			rdfGen.startService(4, 2);
+			List<Future<String>> peopleRdf = new ArrayList<Future<String>>();
+			List<Future<String>> eventsRdf = new ArrayList<Future<String>>();
+			for (int i = 0; i < 10; i++) {
+				peopleRdf.add(rdfGen.submit("people-model", peopleData, true));
+				eventsRdf.add(rdfGen.submit("cs548-events-model", eventsData, true));
+			}
+
+			for (Future<String> rdf : peopleRdf) {
+				assertEquals(102, rdf.get().split("\n").length);
+			}
+			for (Future<String> rdf : eventsRdf) {
+				assertEquals(234, rdf.get().split("\n").length);
+			}
+		} catch (Exception e) {
+			fail("Execption: " + e.getMessage());
+		} finally {
+			try {
+				rdfGen.shutdownService();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	/**
 	 * Test method for
 	 * {@link edu.isi.karma.rdf.JSONRDFGenerator#generateRDF(java.lang.String, java.lang.String, boolean, java.io.PrintWriter)}
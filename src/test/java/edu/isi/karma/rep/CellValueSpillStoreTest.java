@@ -0,0 +1,93 @@
+package edu.isi.karma.rep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.isi.karma.rep.CellValueSpillStore.SpilledCellValue;
+
+public class CellValueSpillStoreTest {
+
+	@Test
+	public void storeAndReadTest() throws Exception {
+		CellValueSpillStore store = new CellValueSpillStore();
+		try {
+			String[] values = { "", "a", "caf\u00e9 \u6771\u4eac", longValue(0) };
+			List<CellValue> cellValues = new ArrayList<CellValue>();
+			for (String value : values) {
+				cellValues.add(store.store(value));
+			}
+			// Read in another order than the values were stored
+			for (int i = values.length - 1; i >= 0; i--) {
+				assertTrue(cellValues.get(i) instanceof SpilledCellValue);
+				assertEquals(values[i], cellValues.get(i).asString());
+				assertEquals(values[i], cellValues.get(i).asString());
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void heapSizeTest() {
+		assertEquals(0, RepFactory.getHeapSize(null));
+		assertTrue(RepFactory.getHeapSize("") > 0);
+		assertEquals(RepFactory.getHeapSize("") + 20, RepFactory.getHeapSize("0123456789"));
+	}
+
+	/**
+	 * Adds rows past the memory budget, so that the long values of the rows added
+	 * before are moved to the spill store, and reads them back.
+	 */
+	@Test
+	public void spillAndReadBackTest() {
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		RepFactory factory = workspace.getFactory();
+		factory.setMemoryBudget(2000);
+		try {
+			Worksheet worksheet = factory.createWorksheet("spilled", workspace, "UTF-8");
+			HNode id = worksheet.getHeaders().addHNode("id", worksheet, factory);
+			HNode text = worksheet.getHeaders().addHNode("text", worksheet, factory);
+			HNode nullable = worksheet.getHeaders().addHNode("nullable", worksheet, factory);
+
+			Table dataTable = worksheet.getDataTable();
+			for (int i = 0; i < 100; i++) {
+				Row row = dataTable.addRow(factory);
+				row.setValue(id.getId(), String.valueOf(i), factory);
+				row.setValue(text.getId(), longValue(i), factory);
+				// An SQL NULL read from a database
+				row.setValue(nullable.getId(), (String) null, factory);
+			}
+
+			int numSpilled = 0;
+			for (int i = 0; i < 100; i++) {
+				Row row = dataTable.getRow(i);
+				CellValue value = row.getNode(text.getId()).getValue();
+				if (value instanceof SpilledCellValue) {
+					numSpilled++;
+				}
+				assertEquals(longValue(i), value.asString());
+				// The short and the null values stay on the heap
+				assertEquals(String.valueOf(i), row.getNode(id.getId()).getValue().asString());
+				assertTrue(row.getNode(id.getId()).getValue() instanceof StringCellValue);
+				assertNull(row.getNode(nullable.getId()).getValue().asString());
+			}
+			assertTrue(numSpilled > 0);
+		} finally {
+			factory.releaseSpillStore();
+		}
+	}
+
+	private static String longValue(int i) {
+		StringBuilder value = new StringBuilder("value " + i + ":");
+		while (value.length() < 100) {
+			value.append(" \u00e9t\u00e9");
+		}
+		return value.toString();
+	}
+}
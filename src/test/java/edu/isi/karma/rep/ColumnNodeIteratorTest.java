@@ -0,0 +1,174 @@
+package edu.isi.karma.rep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnNodeIteratorTest {
+
+	private RepFactory factory;
+	private Table dataTable;
+	private HNodePath namePath;
+	private HNodePath valuePath;
+	private HNodePath tagPath;
+
+	/**
+	 * A table with a column nested two levels deep:
+	 *
+	 * <pre>
+	 * name | items
+	 *      | value | tags
+	 *      |       | tag
+	 * a    | v0    | t0, t1
+	 *      | v1    |
+	 * b    (no items node)
+	 * c    (no items)
+	 * d    | v3    | t3
+	 * </pre>
+	 */
+	@Before
+	public void setUp() {
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		factory = workspace.getFactory();
+		Worksheet worksheet = factory.createWorksheet("columns", workspace, "UTF-8");
+		HTable headers = worksheet.getHeaders();
+		HNode name = headers.addHNode("name", worksheet, factory);
+		HNode items = headers.addHNode("items", worksheet, factory);
+		HTable itemHeaders = items.addNestedTable("items", worksheet, factory);
+		HNode value = itemHeaders.addHNode("value", worksheet, factory);
+		HNode tags = itemHeaders.addHNode("tags", worksheet, factory);
+		HTable tagHeaders = tags.addNestedTable("tags", worksheet, factory);
+		HNode tag = tagHeaders.addHNode("tag", worksheet, factory);
+
+		namePath = new HNodePath(name);
+		valuePath = new HNodePath(Arrays.asList(items, value));
+		tagPath = new HNodePath(Arrays.asList(items, tags, tag));
+
+		dataTable = worksheet.getDataTable();
+		Row a = dataTable.addRow(factory).setValue(name.getId(), "a", factory);
+		Row v0 = addItem(a, items, value, "v0");
+		addTag(v0, tags, tag, "t0");
+		addTag(v0, tags, tag, "t1");
+		addItem(a, items, value, "v1");
+
+		Row b = dataTable.addRow(factory).setValue(name.getId(), "b", factory);
+		b.removeNode(items.getId());
+
+		dataTable.addRow(factory).setValue(name.getId(), "c", factory);
+
+		Row d = dataTable.addRow(factory).setValue(name.getId(), "d", factory);
+		Row v3 = addItem(d, items, value, "v3");
+		addTag(v3, tags, tag, "t3");
+	}
+
+	@Test
+	public void topLevelColumnTest() {
+		assertEquals(Arrays.asList("a", "b", "c", "d"), getValues(dataTable.getColumnNodes(namePath)));
+	}
+
+	@Test
+	public void nestedColumnsTest() {
+		assertEquals(Arrays.asList("v0", "v1", "v3"), getValues(dataTable.getColumnNodes(valuePath)));
+		// Skips the missing items node, the empty nested tables and the item without tags
+		assertEquals(Arrays.asList("t0", "t1", "t3"), getValues(dataTable.getColumnNodes(tagPath)));
+	}
+
+	@Test
+	public void sameNodesAsCollectNodesTest() {
+		List<Node> nodes = new ArrayList<Node>();
+		dataTable.collectNodes(tagPath, nodes);
+		Iterator<Node> it = dataTable.getColumnNodes(tagPath).iterator();
+		for (Node n : nodes) {
+			assertSame(n, it.next());
+		}
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void emptyPathTest() {
+		assertFalse(dataTable.getColumnNodes(new HNodePath()).iterator().hasNext());
+	}
+
+	@Test
+	public void rowRangesTest() {
+		assertEquals(Arrays.asList("t0", "t1"), getValues(dataTable.getColumnNodes(tagPath, 0, 1)));
+		assertEquals(Arrays.asList("t3"), getValues(dataTable.getColumnNodes(tagPath, 1, 4)));
+		assertEquals(Arrays.asList("b", "c"), getValues(dataTable.getColumnNodes(namePath, 1, 3)));
+		// Out of range bounds are clipped to the rows of the table
+		assertEquals(Arrays.asList("a", "b", "c", "d"),
+				getValues(dataTable.getColumnNodes(namePath, -1, 100)));
+		assertEquals(new ArrayList<String>(), getValues(dataTable.getColumnNodes(tagPath, 2, 2)));
+		assertEquals(new ArrayList<String>(), getValues(dataTable.getColumnNodes(tagPath, 4, 100)));
+
+		// The ranges split the column without overlapping
+		List<String> values = new ArrayList<String>();
+		for (int start = 0; start < dataTable.getNumRows(); start += 2) {
+			values.addAll(getValues(dataTable.getColumnNodes(tagPath, start, start + 2)));
+		}
+		assertEquals(Arrays.asList("t0", "t1", "t3"), values);
+	}
+
+	@Test
+	public void earlyStopTest() {
+		Iterator<Node> it = dataTable.getColumnNodes(tagPath).iterator();
+		assertEquals("t0", it.next().getValue().asString());
+		// A new iteration starts over
+		assertEquals("t0", dataTable.getColumnNodes(tagPath).iterator().next().getValue().asString());
+		assertEquals("t1", it.next().getValue().asString());
+		assertEquals("t3", it.next().getValue().asString());
+		assertFalse(it.hasNext());
+		try {
+			it.next();
+			fail("next() after the last node");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+		try {
+			it.remove();
+			fail("remove() is not supported");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * The values are taken in order across the nested tables, the index used to
+	 * restart in every nested table.
+	 */
+	@Test
+	public void setCollectedNodeValuesTest() {
+		dataTable.setCollectedNodeValues(tagPath, Arrays.asList("x", "y", "z"), factory);
+		assertEquals(Arrays.asList("x", "y", "z"), getValues(dataTable.getColumnNodes(tagPath)));
+
+		dataTable.setCollectedNodeValues(valuePath, Arrays.asList("p", "q", "r"), factory);
+		assertEquals(Arrays.asList("p", "q", "r"), getValues(dataTable.getColumnNodes(valuePath)));
+	}
+
+	private Row addItem(Row row, HNode items, HNode value, String itemValue) {
+		return row.getNode(items.getId()).getNestedTable().addRow(factory)
+				.setValue(value.getId(), itemValue, factory);
+	}
+
+	private void addTag(Row item, HNode tags, HNode tag, String tagValue) {
+		item.getNode(tags.getId()).getNestedTable().addRow(factory)
+				.setValue(tag.getId(), tagValue, factory);
+	}
+
+	private static List<String> getValues(Iterable<Node> nodes) {
+		List<String> values = new ArrayList<String>();
+		for (Node n : nodes) {
+			values.add(n.getValue().asString());
+		}
+		return values;
+	}
+}
@@ -0,0 +1,102 @@
+package edu.isi.karma.rep;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time and the memory allocated to traverse a worksheet with a
+ * nested table through {@link Table#getRows(int, int)}, which returns views of
+ * the rows, and through copies of the rows as getRows used to return. The
+ * allocated bytes are only reported on JVMs that count them per thread. Not
+ * run with the unit tests.
+ *
+ * Arguments: [number of rows] [number of nested rows per row] [iterations]
+ */
+public class TableRowsBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int numNestedRows = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int numIterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		RepFactory factory = workspace.getFactory();
+		Worksheet worksheet = factory.createWorksheet("benchmark", workspace, "UTF-8");
+		Table dataTable = createRows(worksheet, factory, numRows, numNestedRows);
+		System.out.println(String.format("%d rows, %d nested rows per row", numRows,
+				numNestedRows));
+
+		for (int i = 0; i < 3; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			long count = 0;
+			for (int j = 0; j < numIterations; j++) {
+				count += traverse(dataTable, false);
+			}
+			report("copied rows", count, System.nanoTime() - start, allocatedBytes() - bytes);
+
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			count = 0;
+			for (int j = 0; j < numIterations; j++) {
+				count += traverse(dataTable, true);
+			}
+			report("row views", count, System.nanoTime() - start, allocatedBytes() - bytes);
+		}
+	}
+
+	private static Table createRows(Worksheet worksheet, RepFactory factory,
+			int numRows, int numNestedRows) {
+		HTable headers = worksheet.getHeaders();
+		HNode name = headers.addHNode("name", worksheet, factory);
+		HNode items = headers.addHNode("items", worksheet, factory);
+		HTable itemHeaders = items.addNestedTable("items", worksheet, factory);
+		HNode value = itemHeaders.addHNode("value", worksheet, factory);
+
+		Table dataTable = worksheet.getDataTable();
+		for (int i = 0; i < numRows; i++) {
+			Row row = dataTable.addRow(factory);
+			row.setValue(name.getId(), "row " + i, factory);
+			Table nestedTable = row.getNode(items.getId()).getNestedTable();
+			for (int j = 0; j < numNestedRows; j++) {
+				nestedTable.addRow(factory).setValue(value.getId(), String.valueOf(j), factory);
+			}
+		}
+		return dataTable;
+	}
+
+	/**
+	 * @return the number of nested rows visited
+	 */
+	private static long traverse(Table table, boolean views) {
+		long count = 0;
+		for (Row row : getRows(table, views)) {
+			for (Node n : row.getNodes()) {
+				if (n.hasNestedTable()) {
+					count += getRows(n.getNestedTable(), views).size();
+				}
+			}
+		}
+		return count;
+	}
+
+	private static List<Row> getRows(Table table, boolean views) {
+		List<Row> rows = table.getRows(0, table.getNumRows());
+		return views ? rows : new ArrayList<Row>(rows);
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static void report(String label, long count, long elapsedNanos, long bytes) {
+		System.out.println(String.format("%-12s %8.1f ms, %10.1f MB allocated (%d nested rows)",
+				label, elapsedNanos / 1e6, bytes / (1024.0 * 1024.0), count));
+	}
+}